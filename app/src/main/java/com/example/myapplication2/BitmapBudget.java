@@ -0,0 +1,83 @@
+package com.example.myapplication2;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import com.example.myapplication2.imaging.MemoryBudget;
+
+// 全局位图内存预算（见 MemoryBudget）：上限按堆大小确定，低内存设备更小
+// 放不下新的位图时先清理位图池，再淘汰处理结果的内存缓存（磁盘缓存还在），仍然不够时缩小解码尺寸
+// 淘汰的位图释放后进入位图池，总量不变，所以淘汰缓存后要再清理一次池
+public class BitmapBudget {
+    private static final String TAG = "BitmapBudget";
+
+    // 解码尺寸降级时的最小边长
+    private static final int MIN_DECODE_EDGE = 256;
+
+    private static final MemoryBudget budget = new MemoryBudget(Runtime.getRuntime().maxMemory() * 3 / 8);
+
+    static {
+        budget.addReclaimer(BitmapBudget::trimPool);
+        budget.addReclaimer(ProcessedImageCache::trimMemory);
+        budget.addReclaimer(BitmapBudget::trimPool);
+    }
+
+    // 在 Activity 中调用；低内存设备上同时缩小位图池和内存缓存的上限
+    public static void init(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am != null && am.isLowRamDevice()) {
+            long limit = Runtime.getRuntime().maxMemory() / 4;
+            budget.setLimit(limit);
+            BitmapPool.setMaxBytes(limit / 4);
+            ProcessedImageCache.setMaxMemoryBytes((int) Math.min(limit / 4, Integer.MAX_VALUE));
+        }
+        Log.d(TAG, "位图内存上限: " + (budget.getLimit() / 1024) + "KB");
+    }
+
+    public static void charge(MemoryBudget.Gauge gauge, long bytes) {
+        budget.charge(gauge, bytes);
+    }
+
+    public static void discharge(MemoryBudget.Gauge gauge, long bytes) {
+        budget.discharge(gauge, bytes);
+    }
+
+    public static void set(MemoryBudget.Gauge gauge, long bytes) {
+        budget.set(gauge, bytes);
+    }
+
+    public static MemoryBudget.Level level() {
+        return budget.level();
+    }
+
+    // 准备解码一张最大为 targetSize 的位图：放不下时逐次把边长减半，直到放得下或到达最小边长
+    // 结果应按返回的尺寸缓存；targetSize 为 null（固定采样率）时原样返回
+    public static ImageProcessor.TargetSize fitTarget(ImageProcessor.TargetSize targetSize) {
+        if (targetSize == null) {
+            return null;
+        }
+        ImageProcessor.TargetSize fitted = targetSize;
+        while (!budget.makeRoom(bytesFor(fitted))
+                && Math.min(fitted.maxWidth, fitted.maxHeight) / 2 >= MIN_DECODE_EDGE) {
+            fitted = new ImageProcessor.TargetSize(fitted.maxWidth / 2, fitted.maxHeight / 2);
+        }
+        if (fitted != targetSize) {
+            Log.w(TAG, "内存紧张，解码尺寸 " + targetSize + " -> " + fitted + ": " + budget);
+        }
+        return fitted;
+    }
+
+    public static String stats() {
+        return budget.toString();
+    }
+
+    private static void trimPool(long bytes) {
+        BitmapPool.trimToSize(Math.max(0, BitmapPool.getCurrentBytes() - bytes));
+    }
+
+    // ARGB_8888 的最大占用
+    private static long bytesFor(ImageProcessor.TargetSize targetSize) {
+        return (long) targetSize.maxWidth * targetSize.maxHeight * 4;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.myapplication2;
+
+import android.graphics.Bitmap;
+
+import com.example.myapplication2.imaging.MemoryBudget;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 带引用计数的位图：每个持有者 acquire 一次、用完 release 一次，创建者持有第一个引用
+// 最后一次 release 时归还位图池（不可变的直接回收），占用的字节数按阶段计入 BitmapBudget
+// 全部释放后不能再使用之前 get() 取得的位图
+public final class BitmapHandle {
+    private final Bitmap bitmap;
+    private final MemoryBudget.Gauge gauge;
+    private final long bytes;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    private BitmapHandle(Bitmap bitmap, MemoryBudget.Gauge gauge) {
+        this.bitmap = bitmap;
+        this.gauge = gauge;
+        this.bytes = bitmap.getAllocationByteCount();
+        BitmapBudget.charge(gauge, bytes);
+    }
+
+    // 接管位图，之后由引用计数决定何时回收；bitmap 为 null 时返回 null
+    public static BitmapHandle wrap(Bitmap bitmap, MemoryBudget.Gauge gauge) {
+        return bitmap != null ? new BitmapHandle(bitmap, gauge) : null;
+    }
+
+    public Bitmap get() {
+        if (refs.get() <= 0) {
+            throw new IllegalStateException("位图已释放");
+        }
+        return bitmap;
+    }
+
+    public long getByteCount() {
+        return bytes;
+    }
+
+    // 增加一个持有者；已全部释放时返回 null（例如刚被缓存淘汰）
+    public BitmapHandle tryAcquire() {
+        int current;
+        do {
+            current = refs.get();
+            if (current <= 0) {
+                return null;
+            }
+        } while (!refs.compareAndSet(current, current + 1));
+        return this;
+    }
+
+    public BitmapHandle acquire() {
+        if (tryAcquire() == null) {
+            throw new IllegalStateException("位图已释放");
+        }
+        return this;
+    }
+
+    public void release() {
+        int remaining = refs.decrementAndGet();
+        if (remaining > 0) {
+            return;
+        }
+        if (remaining < 0) {
+            throw new IllegalStateException("位图重复释放");
+        }
+        BitmapBudget.discharge(gauge, bytes);
+        BitmapPool.put(bitmap);
+    }
+}
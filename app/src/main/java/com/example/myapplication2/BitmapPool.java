@@ -0,0 +1,152 @@
+package com.example.myapplication2;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.example.myapplication2.imaging.MemoryBudget;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+// 可变位图复用池：按占用字节数匹配，总字节数有上限，超出时按最久未用淘汰
+// 取出的位图会通过 reconfigure 调整为请求的尺寸，也可作为解码时的 inBitmap
+// 闲置的字节数计入 BitmapBudget 的 POOL
+public class BitmapPool {
+    private static final String TAG = "BitmapPool";
+
+    // 取出的位图允许比需要的字节数多出的比例（1/4）
+    private static final int MAX_WASTE_SHIFT = 2;
+
+    // 最近归还的在队尾
+    private static final LinkedList<Bitmap> pool = new LinkedList<>();
+    private static long maxBytes = Runtime.getRuntime().maxMemory() / 8;
+    private static long currentBytes;
+    private static long hits;
+    private static long misses;
+
+    public static synchronized void setMaxBytes(long bytes) {
+        maxBytes = bytes;
+        trimToSize(maxBytes);
+    }
+
+    public static synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    // 取一个指定尺寸的可变位图，池中没有合适的则新建；内容未清空
+    public static Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(byteCount(width, height, config));
+        if (bitmap != null) {
+            try {
+                bitmap.reconfigure(width, height, config);
+                return bitmap;
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "位图复用失败: " + e.getMessage());
+                bitmap.recycle();
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    // 归还位图，调用方之后不能再使用它
+    public static synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        // 重复归还时位图已在池中，不能回收，否则之后会被取出一个已回收的位图
+        if (pool.contains(bitmap)) {
+            return;
+        }
+        long size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        pool.addLast(bitmap);
+        currentBytes += size;
+        trimToSize(maxBytes);
+    }
+
+    // 为解码设置 inBitmap，需先用 inJustDecodeBounds 得到 outWidth/outHeight
+    public static void prepareForDecode(BitmapFactory.Options options) {
+        int sample = Math.max(options.inSampleSize, 1);
+        int width = (options.outWidth + sample - 1) / sample;
+        int height = (options.outHeight + sample - 1) / sample;
+        if (options.inScaled && options.inDensity > 0 && options.inTargetDensity > 0) {
+            // 密度缩放在解码时完成，按缩放后的尺寸匹配
+            float scale = (float) options.inTargetDensity / options.inDensity;
+            width = (int) (width * scale + 0.5f);
+            height = (int) (height * scale + 0.5f);
+        }
+        Bitmap.Config config = options.inPreferredConfig != null
+                ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+
+        options.inMutable = true;
+        options.inBitmap = take(byteCount(width, height, config));
+    }
+
+    // 解码失败时归还 inBitmap
+    public static void releaseDecodeTarget(BitmapFactory.Options options) {
+        if (options.inBitmap != null) {
+            put(options.inBitmap);
+            options.inBitmap = null;
+        }
+    }
+
+    // 淘汰最久未用的位图，直到总字节数不超过 size
+    public static synchronized void trimToSize(long size) {
+        Iterator<Bitmap> it = pool.iterator();
+        while (currentBytes > size && it.hasNext()) {
+            Bitmap bitmap = it.next();
+            currentBytes -= bitmap.getAllocationByteCount();
+            it.remove();
+            bitmap.recycle();
+        }
+        BitmapBudget.set(MemoryBudget.Gauge.POOL, currentBytes);
+    }
+
+    public static void clear() {
+        trimToSize(0);
+    }
+
+    public static synchronized String stats() {
+        return "BitmapPool{" + (currentBytes / 1024) + "KB/" + (maxBytes / 1024) + "KB"
+                + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+
+    // 找一个字节数在 [needed, needed * 1.25] 内、最近归还的位图
+    private static synchronized Bitmap take(long needed) {
+        long maxSize = needed + (needed >> MAX_WASTE_SHIFT);
+        Iterator<Bitmap> it = pool.descendingIterator();
+        while (it.hasNext()) {
+            Bitmap bitmap = it.next();
+            long size = bitmap.getAllocationByteCount();
+            if (size >= needed && size <= maxSize) {
+                it.remove();
+                currentBytes -= size;
+                hits++;
+                BitmapBudget.set(MemoryBudget.Gauge.POOL, currentBytes);
+                return bitmap;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    private static long byteCount(int width, int height, Bitmap.Config config) {
+        int bytesPerPixel;
+        switch (config) {
+            case ALPHA_8:
+                bytesPerPixel = 1;
+                break;
+            case RGB_565:
+            case ARGB_4444:
+                bytesPerPixel = 2;
+                break;
+            default:
+                bytesPerPixel = 4;
+        }
+        return (long) width * height * bytesPerPixel;
+    }
+}
@@ -23,7 +23,11 @@ import android.widget.Button;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import com.example.myapplication2.trace.PipelineTrace;
+import com.example.myapplication2.trace.Stage;
 import com.example.myapplication2.utils.FileUtils;
+import com.example.myapplication2.utils.HttpUtils;
+import com.example.myapplication2.utils.PipelineTracer;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -45,6 +49,8 @@ public class CameraActivity extends AppCompatActivity {
     private Size previewSize;
     private Handler backgroundHandler;
     private HandlerThread backgroundThread;
+    // 按下拍照时开始的追踪，在后台线程的 onImageAvailable 中读取
+    private volatile PipelineTrace captureTrace;
 
     private static final SparseIntArray ORIENTATIONS = new SparseIntArray();
 
@@ -78,6 +84,8 @@ public class CameraActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        // 相机打开期间先建立到识别服务器的连接
+        HttpUtils.warmUp();
         startBackgroundThread();
         if (textureView.isAvailable()) {
             openCamera();
@@ -95,6 +103,9 @@ public class CameraActivity extends AppCompatActivity {
 
     private void takePicture() {
         if (cameraDevice == null) return;
+        // 服务端可能已关闭空闲连接，拍照时再预连接一次，和拍照、处理并行进行
+        HttpUtils.warmUp();
+        captureTrace = PipelineTracer.begin(Stage.CAPTURE);
 
         try {
             CaptureRequest.Builder captureBuilder =
@@ -254,6 +265,8 @@ public class CameraActivity extends AppCompatActivity {
                     try {
                         image = reader.acquireLatestImage();
                         if (image != null) {
+                            PipelineTrace trace = captureTrace;
+                            PipelineTracer.mark(trace, Stage.CAPTURE);
                             ByteBuffer buffer = image.getPlanes()[0].getBuffer();
                             byte[] bytes = new byte[buffer.remaining()];
                             buffer.get(bytes);
@@ -263,10 +276,14 @@ public class CameraActivity extends AppCompatActivity {
                             try (FileOutputStream output = new FileOutputStream(imageFile)) {
                                 output.write(bytes);
                             }
+                            PipelineTracer.mark(trace, Stage.JPEG_WRITE);
 
                             // 返回结果
                             Intent resultIntent = new Intent();
                             resultIntent.putExtra("photo_path", imageFile.getAbsolutePath());
+                            if (trace != null) {
+                                resultIntent.putExtra(PipelineTracer.EXTRA_TRACE_ID, trace.getId());
+                            }
                             setResult(RESULT_OK, resultIntent);
                             finish();
                         }
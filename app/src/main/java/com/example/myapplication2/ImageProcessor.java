@@ -2,240 +2,342 @@ package com.example.myapplication2;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
-import android.graphics.Matrix;
-import android.graphics.Paint;
 import android.media.ExifInterface;
 import android.util.Log;
+
+import com.example.myapplication2.imaging.BoxBlur;
+import com.example.myapplication2.imaging.BufferPool;
+import com.example.myapplication2.imaging.Cancellation;
+import com.example.myapplication2.imaging.ColorChain;
+import com.example.myapplication2.imaging.DecodeTarget;
+import com.example.myapplication2.imaging.EffectPipeline;
+import com.example.myapplication2.imaging.MemoryBudget;
+import com.example.myapplication2.imaging.Orientation;
+import com.example.myapplication2.imaging.ProcessType;
+import com.example.myapplication2.imaging.Sharpen;
+
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
 
 public class ImageProcessor {
     private static final String TAG = "ImageProcessor";
 
-    public enum ProcessType {
-        GRAYSCALE,      // 灰度化
-        SEPIA,          // 怀旧效果
-        INVERT,         // 反色
-        BLUR,           // 模糊
-        SHARPEN,        // 锐化
-        BRIGHTNESS,     // 亮度调整
-        CONTRAST        // 对比度调整
-    }
+    // 解码目标尺寸：输出（旋转后）不超过 maxWidth x maxHeight，且尽量贴近该尺寸
+    public static final class TargetSize {
+        public static final TargetSize UPLOAD = new TargetSize(1024, 1024);     // 上传识别
+        public static final TargetSize PREVIEW = new TargetSize(2048, 2048);    // 屏幕预览
+        public static final TargetSize THUMBNAIL = new TargetSize(256, 256);    // 缩略图
 
-    // 处理图片
-    public static Bitmap processImage(String imagePath, ProcessType processType) {
-        try {
-            Bitmap originalBitmap = loadCorrectlyOrientedBitmap(imagePath);
-            if (originalBitmap == null) {
-                Log.e(TAG, "无法加载图片: " + imagePath);
-                return null;
-            }
+        public final int maxWidth;
+        public final int maxHeight;
 
-            Bitmap processedBitmap = null;
-
-            switch (processType) {
-                case GRAYSCALE:
-                    processedBitmap = toGrayscale(originalBitmap);
-                    break;
-                case SEPIA:
-                    processedBitmap = toSepia(originalBitmap);
-                    break;
-                case INVERT:
-                    processedBitmap = invertColors(originalBitmap);
-                    break;
-                case BLUR:
-                    processedBitmap = applyBlur(originalBitmap);
-                    break;
-                case SHARPEN:
-                    processedBitmap = sharpenImage(originalBitmap);
-                    break;
-                case BRIGHTNESS:
-                    processedBitmap = adjustBrightness(originalBitmap, 1.2f);
-                    break;
-                case CONTRAST:
-                    processedBitmap = adjustContrast(originalBitmap, 1.5f);
-                    break;
-                default:
-                    processedBitmap = originalBitmap;
+        public TargetSize(int maxWidth, int maxHeight) {
+            if (maxWidth <= 0 || maxHeight <= 0) {
+                throw new IllegalArgumentException("目标尺寸无效: " + maxWidth + "x" + maxHeight);
             }
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
 
-            return processedBitmap;
-
-        } catch (Exception e) {
-            Log.e(TAG, "图片处理错误: " + e.getMessage());
-            return null;
+        @Override
+        public String toString() {
+            return maxWidth + "x" + maxHeight;
         }
     }
 
-    // 正确加载旋转的图片
-    private static Bitmap loadCorrectlyOrientedBitmap(String imagePath) {
-        try {
-            // 首先获取图片旋转信息
-            ExifInterface exif = new ExifInterface(imagePath);
-            int orientation = exif.getAttributeInt(
-                    ExifInterface.TAG_ORIENTATION,
-                    ExifInterface.ORIENTATION_NORMAL
-            );
-
-            // 加载原始图片
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inSampleSize = 2; // 缩小尺寸以提高性能
-
-            Bitmap bitmap = BitmapFactory.decodeFile(imagePath, options);
-            if (bitmap == null) {
-                return null;
-            }
-
-            // 根据旋转信息旋转图片
-            Matrix matrix = new Matrix();
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    matrix.postRotate(90);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    matrix.postRotate(180);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    matrix.postRotate(270);
-                    break;
-                default:
-                    return bitmap;
-            }
+    // 未指定目标尺寸时的固定采样率
+    private static final int DEFAULT_SAMPLE_SIZE = 2;
 
-            return Bitmap.createBitmap(bitmap, 0, 0,
-                    bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    // 解码结果：未旋转的位图及其 EXIF 方向，方向变换留到像素处理时完成
+    private static class Decoded {
+        final Bitmap bitmap;
+        final int orientation;
 
-        } catch (IOException e) {
-            Log.e(TAG, "读取图片EXIF信息错误: " + e.getMessage());
-            return BitmapFactory.decodeFile(imagePath);
+        Decoded(Bitmap bitmap, int orientation) {
+            this.bitmap = bitmap;
+            this.orientation = orientation;
         }
     }
 
-    // 转换为灰度图
-    private static Bitmap toGrayscale(Bitmap original) {
-        Bitmap result = Bitmap.createBitmap(original.getWidth(),
-                original.getHeight(), Bitmap.Config.ARGB_8888);
-
-        Canvas canvas = new Canvas(result);
-        Paint paint = new Paint();
-
-        ColorMatrix matrix = new ColorMatrix();
-        matrix.setSaturation(0);
-
-        ColorMatrixColorFilter filter = new ColorMatrixColorFilter(matrix);
-        paint.setColorFilter(filter);
-
-        canvas.drawBitmap(original, 0, 0, paint);
-        return result;
+    // 处理图片（固定半尺寸解码）
+    public static Bitmap processImage(String imagePath, ProcessType... processTypes) {
+        return processImage(imagePath, (TargetSize) null, processTypes);
     }
 
-    // 怀旧效果
-    private static Bitmap toSepia(Bitmap original) {
-        Bitmap result = Bitmap.createBitmap(original.getWidth(),
-                original.getHeight(), Bitmap.Config.ARGB_8888);
+    // 处理图片，支持多个效果按顺序叠加；相邻的颜色类效果会合并成一次像素遍历
+    // targetSize 不为 null 时按目标尺寸解码，避免解码远多于需要的像素
+    public static Bitmap processImage(String imagePath, TargetSize targetSize, ProcessType... processTypes) {
+        return processImage(imagePath, targetSize, Cancellation.NONE, processTypes);
+    }
 
-        Canvas canvas = new Canvas(result);
-        Paint paint = new Paint();
+    // cancellation 在解码后和每个效果之间检查，已取消时返回 null
+    public static Bitmap processImage(String imagePath, TargetSize targetSize, Cancellation cancellation,
+                                      ProcessType... processTypes) {
+        // 开头连续的颜色类效果与方向变换合并在同一遍中完成
+        ColorChain leading = new ColorChain();
+        int first = 0;
+        while (first < processTypes.length && EffectPipeline.toColorOp(processTypes[first]) != null) {
+            leading.then(EffectPipeline.toColorOp(processTypes[first]));
+            first++;
+        }
+        return processDecoded(imagePath, targetSize, leading,
+                Arrays.copyOfRange(processTypes, first, processTypes.length), cancellation);
+    }
 
-        ColorMatrix matrix = new ColorMatrix();
-        matrix.setScale(1f, 0.95f, 0.82f, 1.0f); // 棕褐色调
-        matrix.postConcat(getSaturationMatrix(0.5f)); // 降低饱和度
+    // 带缓存的处理：同一张图、同样的效果链和目标尺寸再次处理时直接返回缓存结果
+    // 返回的位图可能被缓存共享，调用方不能修改它，用完后 release
+    // 位图内存紧张时（见 BitmapBudget）按缩小后的尺寸处理，结果也按实际尺寸缓存
+    public static BitmapHandle processImageCached(String imagePath, TargetSize targetSize,
+                                                  ProcessType... processTypes) {
+        return processImageCached(imagePath, targetSize, Cancellation.NONE, processTypes);
+    }
 
-        ColorMatrixColorFilter filter = new ColorMatrixColorFilter(matrix);
-        paint.setColorFilter(filter);
+    public static BitmapHandle processImageCached(String imagePath, TargetSize targetSize, Cancellation cancellation,
+                                                  ProcessType... processTypes) {
+        BitmapHandle cached = ProcessedImageCache.get(imagePath, variantOf(processTypes, targetSize));
+        // 没有原尺寸的结果时，内存紧张下缩小尺寸处理过的结果也可以用
+        TargetSize fitted = cached == null ? BitmapBudget.fitTarget(targetSize) : targetSize;
+        if (cached == null && fitted != targetSize) {
+            cached = ProcessedImageCache.get(imagePath, variantOf(processTypes, fitted));
+        }
+        if (cached != null) {
+            Log.d(TAG, "处理结果缓存命中: " + ProcessedImageCache.stats());
+            return cached;
+        }
 
-        canvas.drawBitmap(original, 0, 0, paint);
+        BitmapHandle result = BitmapHandle.wrap(
+                processImage(imagePath, fitted, cancellation, processTypes), MemoryBudget.Gauge.PROCESSED);
+        if (result != null) {
+            ProcessedImageCache.put(imagePath, variantOf(processTypes, fitted), result);
+        }
         return result;
     }
 
-    // 反色效果
-    private static Bitmap invertColors(Bitmap original) {
-        Bitmap result = Bitmap.createBitmap(original.getWidth(),
-                original.getHeight(), Bitmap.Config.ARGB_8888);
-
-        Canvas canvas = new Canvas(result);
-        Paint paint = new Paint();
-
-        ColorMatrix matrix = new ColorMatrix(new float[] {
-                -1, 0, 0, 0, 255,
-                0, -1, 0, 0, 255,
-                0, 0, -1, 0, 255,
-                0, 0, 0, 1, 0
-        });
-
-        ColorMatrixColorFilter filter = new ColorMatrixColorFilter(matrix);
-        paint.setColorFilter(filter);
+    private static String variantOf(ProcessType[] processTypes, TargetSize targetSize) {
+        return EffectPipeline.describe(processTypes) + "@" + (targetSize != null ? targetSize : "half");
+    }
 
-        canvas.drawBitmap(original, 0, 0, paint);
-        return result;
+    // 处理图片，按顺序应用一条带参数的颜色变换链
+    public static Bitmap processImage(String imagePath, ColorChain chain) {
+        return processImage(imagePath, null, chain);
     }
 
-    // 简单模糊效果
-    private static Bitmap applyBlur(Bitmap original) {
-        // 简化版模糊 - 实际应用中可以使用 RenderScript 或更复杂的算法
-        Bitmap result = Bitmap.createScaledBitmap(original,
-                original.getWidth() / 4, original.getHeight() / 4, true);
-        return Bitmap.createScaledBitmap(result,
-                original.getWidth(), original.getHeight(), true);
+    public static Bitmap processImage(String imagePath, TargetSize targetSize, ColorChain chain) {
+        return processDecoded(imagePath, targetSize,
+                chain != null ? chain : new ColorChain(), new ProcessType[0], Cancellation.NONE);
     }
 
-    // 锐化效果
-    private static Bitmap sharpenImage(Bitmap original) {
-        // 简化版锐化
-        return original; // 实际应用中可以实现卷积核锐化
+    // 解码后，像素只从位图读出、写回各一次：
+    // 方向变换（精确转置/翻转）与 leading 颜色链在同一遍中完成，其余效果在 int[] 上由 TileExecutor 多核并行处理
+    private static Bitmap processDecoded(String imagePath, TargetSize targetSize,
+                                         ColorChain leading, ProcessType[] rest, Cancellation cancellation) {
+        try {
+            Decoded decoded = decodeForProcessing(imagePath, targetSize);
+            if (decoded == null) {
+                Log.e(TAG, "无法加载图片: " + imagePath);
+                return null;
+            }
+
+            Bitmap bitmap = decoded.bitmap;
+            // 处理期间计入 DECODE，返回后由调用方按处理结果计数
+            long decodedBytes = bitmap.getAllocationByteCount();
+            BitmapBudget.charge(MemoryBudget.Gauge.DECODE, decodedBytes);
+            try {
+                return processPixels(imagePath, bitmap, decoded.orientation, leading, rest, cancellation);
+            } finally {
+                BitmapBudget.discharge(MemoryBudget.Gauge.DECODE, decodedBytes);
+            }
+
+        } catch (Exception e) {
+            Log.e(TAG, "图片处理错误: " + e.getMessage());
+            return null;
+        }
     }
 
-    // 调整亮度
-    private static Bitmap adjustBrightness(Bitmap original, float brightness) {
-        Bitmap result = Bitmap.createBitmap(original.getWidth(),
-                original.getHeight(), Bitmap.Config.ARGB_8888);
+    private static Bitmap processPixels(String imagePath, Bitmap bitmap, int orientation,
+                                        ColorChain leading, ProcessType[] rest, Cancellation cancellation) {
+        if (cancellation.isCancelled()) {
+            BitmapPool.put(bitmap);
+            return null;
+        }
+        boolean transform = Orientation.needsTransform(orientation);
+        if (!transform && leading.isEmpty() && rest.length == 0) {
+            return bitmap;
+        }
 
-        Canvas canvas = new Canvas(result);
-        Paint paint = new Paint();
+        int srcWidth = bitmap.getWidth();
+        int srcHeight = bitmap.getHeight();
+        int width = Orientation.orientedWidth(orientation, srcWidth, srcHeight);
+        int height = Orientation.orientedHeight(orientation, srcWidth, srcHeight);
 
-        ColorMatrix matrix = new ColorMatrix();
-        matrix.setScale(brightness, brightness, brightness, 1);
+        BufferPool buffers = BufferPool.shared();
+        int[] pixels = buffers.acquireInts(width * height);
+        int[] spare = transform || EffectPipeline.needsSpareBuffer(rest) ? buffers.acquireInts(width * height) : null;
+        try {
+            ColorChain.Compiled fused = leading.isEmpty() ? null : leading.compile();
+            if (transform) {
+                bitmap.getPixels(spare, 0, srcWidth, 0, 0, srcWidth, srcHeight);
+                Orientation.transform(spare, srcWidth, srcHeight, orientation, pixels, fused);
+            } else {
+                bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+                if (fused != null) {
+                    fused.applyFrame(pixels, width, height);
+                }
+            }
 
-        ColorMatrixColorFilter filter = new ColorMatrixColorFilter(matrix);
-        paint.setColorFilter(filter);
+            int[] result;
+            try {
+                result = EffectPipeline.run(pixels, spare, width, height, cancellation, rest);
+            } catch (CancellationException e) {
+                Log.d(TAG, "处理已取消: " + imagePath);
+                BitmapPool.put(bitmap);
+                return null;
+            }
+            Bitmap output = toOutputBitmap(bitmap, result, width, height);
+            if (output != bitmap) {
+                BitmapPool.put(bitmap);
+            }
+            return output;
+        } finally {
+            buffers.releaseInts(pixels);
+            buffers.releaseInts(spare);
+        }
+    }
 
-        canvas.drawBitmap(original, 0, 0, paint);
+    // 把处理结果写回位图：输入可变且容量足够时原地写回（旋转 90/270 时原地调整宽高），
+    // 否则从位图池取一个输出位图
+    private static Bitmap toOutputBitmap(Bitmap source, int[] pixels, int width, int height) {
+        Bitmap result;
+        if (source.isMutable() && source.getConfig() == Bitmap.Config.ARGB_8888
+                && source.getAllocationByteCount() >= width * height * 4) {
+            if (source.getWidth() != width || source.getHeight() != height) {
+                source.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            }
+            result = source;
+        } else {
+            result = BitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+        }
+        result.setPixels(pixels, 0, width, 0, 0, width, height);
         return result;
     }
 
-    // 调整对比度
-    private static Bitmap adjustContrast(Bitmap original, float contrast) {
-        Bitmap result = Bitmap.createBitmap(original.getWidth(),
-                original.getHeight(), Bitmap.Config.ARGB_8888);
+    // 把整条颜色链合成一个矩阵，一次遍历完成
+    public static Bitmap applyColorChain(Bitmap source, ColorChain chain) {
+        if (chain == null || chain.isEmpty()) {
+            return source;
+        }
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = BufferPool.shared().acquireInts(width * height);
+        try {
+            source.getPixels(pixels, 0, width, 0, 0, width, height);
+            chain.compile().applyFrame(pixels, width, height);
+            return toOutputBitmap(source, pixels, width, height);
+        } finally {
+            BufferPool.shared().releaseInts(pixels);
+        }
+    }
 
-        Canvas canvas = new Canvas(result);
-        Paint paint = new Paint();
+    // 解码图片并读取 EXIF 方向，不做旋转
+    private static Decoded decodeForProcessing(String imagePath, TargetSize targetSize) {
+        // 首先获取图片旋转信息
+        int orientation;
+        try {
+            ExifInterface exif = new ExifInterface(imagePath);
+            orientation = exif.getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL
+            );
+        } catch (IOException e) {
+            Log.e(TAG, "读取图片EXIF信息错误: " + e.getMessage());
+            orientation = ExifInterface.ORIENTATION_NORMAL;
+        }
 
-        float scale = contrast;
-        float translate = (1 - contrast) / 2 * 255;
+        // 先只读取尺寸，以便从位图池取可复用的解码目标
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, options);
+        options.inJustDecodeBounds = false;
+
+        // 加载原始图片
+        if (targetSize != null) {
+            configureForTarget(options, targetSize, Orientation.swapsDimensions(orientation));
+        } else {
+            options.inSampleSize = DEFAULT_SAMPLE_SIZE; // 缩小尺寸以提高性能
+        }
+        options.inMutable = true; // 允许处理结果原地写回
+        Bitmap bitmap = decodeReusing(imagePath, options);
+        if (bitmap == null) {
+            return null;
+        }
+        return new Decoded(bitmap, orientation);
+    }
 
-        ColorMatrix matrix = new ColorMatrix(new float[] {
-                scale, 0, 0, 0, translate,
-                0, scale, 0, 0, translate,
-                0, 0, scale, 0, translate,
-                0, 0, 0, 1, 0
-        });
+    // 根据已探测的原图尺寸设置采样率和密度缩放（见 DecodeTarget）
+    static void configureForTarget(BitmapFactory.Options options, TargetSize targetSize, boolean swapped) {
+        int srcWidth = swapped ? options.outHeight : options.outWidth;
+        int srcHeight = swapped ? options.outWidth : options.outHeight;
+        DecodeTarget target = DecodeTarget.compute(srcWidth, srcHeight, targetSize.maxWidth, targetSize.maxHeight);
+        options.inSampleSize = target.sampleSize;
+        if (target.isScaled()) {
+            options.inScaled = true;
+            options.inDensity = target.density;
+            options.inTargetDensity = target.targetDensity;
+        }
+        Log.d(TAG, "按目标尺寸解码: " + srcWidth + "x" + srcHeight + " -> " + targetSize + ", " + target);
+    }
 
-        ColorMatrixColorFilter filter = new ColorMatrixColorFilter(matrix);
-        paint.setColorFilter(filter);
+    // 解码时复用池中的位图，复用失败则正常解码
+    private static Bitmap decodeReusing(String imagePath, BitmapFactory.Options options) {
+        BitmapPool.prepareForDecode(options);
+        try {
+            Bitmap bitmap = BitmapFactory.decodeFile(imagePath, options);
+            if (bitmap == null) {
+                BitmapPool.releaseDecodeTarget(options);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "inBitmap 复用失败，重新解码: " + e.getMessage());
+            BitmapPool.releaseDecodeTarget(options);
+            return BitmapFactory.decodeFile(imagePath, options);
+        }
+    }
 
-        canvas.drawBitmap(original, 0, 0, paint);
-        return result;
+    // 模糊效果（三次盒式模糊近似高斯），耗时与半径无关
+    public static Bitmap applyBlur(Bitmap original, float sigma) {
+        int width = original.getWidth();
+        int height = original.getHeight();
+        BufferPool buffers = BufferPool.shared();
+        int[] pixels = buffers.acquireInts(width * height);
+        int[] scratch = buffers.acquireInts(width * height);
+        try {
+            original.getPixels(pixels, 0, width, 0, 0, width, height);
+            BoxBlur.gaussian(pixels, scratch, width, height, sigma);
+            return toOutputBitmap(original, pixels, width, height);
+        } finally {
+            buffers.releaseInts(pixels);
+            buffers.releaseInts(scratch);
+        }
     }
 
-    private static ColorMatrix getSaturationMatrix(float saturation) {
-        ColorMatrix matrix = new ColorMatrix();
-        matrix.setSaturation(saturation);
-        return matrix;
+    // 指定强度、半径和阈值的锐化
+    public static Bitmap sharpenImage(Bitmap original, Sharpen.Params params) {
+        int width = original.getWidth();
+        int height = original.getHeight();
+        BufferPool buffers = BufferPool.shared();
+        int[] pixels = buffers.acquireInts(width * height);
+        int[] sharpened = buffers.acquireInts(width * height);
+        try {
+            original.getPixels(pixels, 0, width, 0, 0, width, height);
+            Sharpen.unsharpMask(pixels, sharpened, width, height, params);
+            return toOutputBitmap(original, sharpened, width, height);
+        } finally {
+            buffers.releaseInts(pixels);
+            buffers.releaseInts(sharpened);
+        }
     }
 
     // 保存处理后的图片
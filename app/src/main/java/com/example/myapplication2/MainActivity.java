@@ -4,16 +4,22 @@ import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
+import android.content.pm.ApplicationInfo;
 import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.Typeface;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.text.TextUtils;
+import android.view.Choreographer;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
@@ -23,10 +29,17 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.myapplication2.imaging.BufferPool;
+import com.example.myapplication2.imaging.MemoryBudget;
+import com.example.myapplication2.imaging.ProcessType;
+import com.example.myapplication2.trace.PipelineTrace;
+import com.example.myapplication2.trace.Stage;
+import com.example.myapplication2.utils.CaptureGeneration;
 import com.example.myapplication2.utils.LogToFileUtils;
 import com.example.myapplication2.utils.PermissionUtils;
+import com.example.myapplication2.utils.PipelineTracer;
+import com.example.myapplication2.utils.RecognitionCache;
 import com.example.myapplication2.utils.FileUtils;
-import com.example.myapplication2.utils.HttpUtils;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -55,11 +68,16 @@ public class MainActivity extends AppCompatActivity {
     private Button btnClearHistory;
     private ProgressBar progressBar;
     private TextView tvStatus;
+    private TextView tvTraceOverlay; // 调试浮层：各阶段耗时，仅可调试的构建
 
     // 数据
-    private String currentPhotoPath;
-    private Bitmap currentProcessedBitmap;
+    private String currentPhotoPath; // 只在主线程读写
+    private long currentGeneration; // 当前照片的拍照代数，上传队列的结果按它匹配
+    private BitmapHandle currentProcessed; // 当前照片的处理结果，持有一个引用，只在主线程读写
+    private BitmapHandle previewBitmap; // 预览显示的位图
     private List<RecognitionResult> recognitionHistory; // 历史记录列表
+    private boolean partialResultShown; // 当前识别是否已开始显示生成中的结果
+    private PipelineTrace currentTrace; // 当前照片的阶段追踪，结果显示后结束
 
 
     // 历史记录数据类
@@ -92,12 +110,38 @@ public class MainActivity extends AppCompatActivity {
         initViews();
         setupClickListeners();
         initData();
+        setupTraceOverlay();
 
         // 检查权限
         if (!PermissionUtils.hasPermissions(this, REQUIRED_PERMISSIONS)) {
             requestPermissions();
         }
         LogToFileUtils.init(this);
+        BitmapBudget.init(this);
+        ProcessedImageCache.init(this);
+        RecognitionCache.init(this);
+        UploadQueue.init(this);
+        UploadQueue.setListener(uploadListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        UploadQueue.setListener(null);
+        ivPreview.setImageDrawable(null);
+        setPreviewBitmap(null);
+        setCurrentProcessed(null);
+        super.onDestroy();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 内存紧张时释放图片处理的复用缓冲
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            BitmapPool.clear();
+            BufferPool.shared().clear();
+            ProcessedImageCache.trimMemory();
+        }
     }
 
     private void initViews() {
@@ -136,7 +180,7 @@ public class MainActivity extends AppCompatActivity {
         btnUpload.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (currentProcessedBitmap != null) {
+                if (currentProcessed != null) {
                     uploadImageToServer();
                 } else {
                     showToast("请先拍照处理图片");
@@ -266,36 +310,59 @@ public class MainActivity extends AppCompatActivity {
         if (requestCode == REQUEST_IMAGE_CAPTURE && resultCode == RESULT_OK) {
             if (data != null && data.hasExtra("photo_path")) {
                 String photoPath = data.getStringExtra("photo_path");
-                processAndDisplayPhoto(photoPath);
+                processAndDisplayPhoto(photoPath,
+                        PipelineTracer.get(data.getLongExtra(PipelineTracer.EXTRA_TRACE_ID, 0)));
             }
         }
     }
 
-    private void processAndDisplayPhoto(final String photoPath) {
+    // captureTrace 为拍照时开始的追踪，没有时（例如相机页面被系统重建）从处理开始追踪
+    private void processAndDisplayPhoto(final String photoPath, PipelineTrace captureTrace) {
         showProcessing(true);
         showUploadButton(false);
 
+        // 新照片开始新的一代：旧照片还在进行的处理和识别取消，迟到的结果不再显示为当前结果
+        final long generation = CaptureGeneration.next();
+        currentGeneration = generation;
+        currentPhotoPath = null;
+        PipelineTracer.abandon(currentTrace);
+        final PipelineTrace trace = captureTrace != null ? captureTrace : PipelineTracer.begin(Stage.PROCESS);
+        currentTrace = trace;
+
         new Thread(new Runnable() {
             @Override
             public void run() {
+                BitmapHandle processed = null;
                 try {
-                    Bitmap processedBitmap = ImageProcessor.processImage(
-                            photoPath, ImageProcessor.ProcessType.GRAYSCALE);
-
-                    if (processedBitmap != null) {
-                        // 保存处理后的图片用于显示和上传
-                        currentProcessedBitmap = processedBitmap;
-                        currentPhotoPath = photoPath;
-
+                    processed = ImageProcessor.processImageCached(
+                            photoPath, ImageProcessor.TargetSize.UPLOAD,
+                            CaptureGeneration.cancellation(generation), ProcessType.GRAYSCALE);
+                    PipelineTracer.mark(trace, Stage.PROCESS);
+
+                    // 处理期间又拍了新照片，这一张不再需要
+                    if (!CaptureGeneration.isCurrent(generation)) {
+                        return;
+                    }
+                    if (processed != null) {
                         // 使用新方法保存到公共目录
                         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
                         String fileName = "processed_" + timeStamp + ".jpg";
 
-                        Uri savedUri = FileUtils.saveToMediaStore(MainActivity.this, processedBitmap, fileName);
+                        Uri savedUri = FileUtils.saveToMediaStore(MainActivity.this, processed.get(), fileName);
+                        PipelineTracer.mark(trace, Stage.SAVE);
 
+                        // 引用交给主线程，保存为当前处理结果用于上传
+                        final BitmapHandle result = processed;
+                        processed = null;
                         runOnUiThread(new Runnable() {
                             @Override
                             public void run() {
+                                if (!CaptureGeneration.isCurrent(generation)) {
+                                    result.release();
+                                    return;
+                                }
+                                currentPhotoPath = photoPath;
+                                setCurrentProcessed(result);
                                 if (savedUri != null) {
                                     displayProcessedPhoto(savedUri);
                                     // 自动上传识别（可选）
@@ -308,12 +375,17 @@ public class MainActivity extends AppCompatActivity {
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
+                    PipelineTracer.abandon(trace);
                     runOnUiThread(new Runnable() {
                         @Override
                         public void run() {
                             showError("图片处理失败");
                         }
                     });
+                } finally {
+                    if (processed != null) {
+                        processed.release();
+                    }
                 }
             }
         }).start();
@@ -323,12 +395,16 @@ public class MainActivity extends AppCompatActivity {
         showProcessing(false);
 
         try {
-            // 从 URI 加载图片
+            // 从 URI 加载图片，位图内存紧张时以半尺寸解码
             InputStream inputStream = getContentResolver().openInputStream(imageUri);
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = BitmapBudget.level() == MemoryBudget.Level.NORMAL ? 1 : 2;
+            BitmapHandle bitmap = BitmapHandle.wrap(
+                    BitmapFactory.decodeStream(inputStream, null, options), MemoryBudget.Gauge.PREVIEW);
 
             if (bitmap != null) {
-                ivPreview.setImageBitmap(bitmap);
+                ivPreview.setImageBitmap(bitmap.get());
+                setPreviewBitmap(bitmap);
                 tvStatus.setText("处理完成 - 已保存到相册");
 
 //                tvStatus.setVisibility(View.VISIBLE);
@@ -348,41 +424,95 @@ public class MainActivity extends AppCompatActivity {
 
     // 新增：上传图片到服务器进行识别
     private void uploadImageToServer() {
-        if (currentProcessedBitmap == null) {
+        if (currentProcessed == null) {
 //            Toast.makeText(this, "没有可上传的图片", Toast.LENGTH_SHORT).show();
             showToast("没有可上传的图片");
             return;
         }
 
         showUploading(true);
+        partialResultShown = false;
+        // 拍照后自动上传时沿用拍照开始的追踪，再次手动上传时从编码开始新的追踪
+        if (currentTrace == null || currentTrace.isClosed()) {
+            currentTrace = PipelineTracer.begin(Stage.ENCODE);
+        }
+
+        // 先存入磁盘上传队列，断网时自动重试，结果通过 uploadListener 返回
+        // 带上当前的拍照代数，拍了新照片后这次上传会被取消
+        UploadQueue.enqueue(currentProcessed, currentPhotoPath, currentGeneration, currentTrace);
+    }
 
-        String imageName = "recognition_" + System.currentTimeMillis() + ".jpg";
+    // 替换当前处理结果，释放之前的引用
+    private void setCurrentProcessed(BitmapHandle processed) {
+        BitmapHandle old = currentProcessed;
+        currentProcessed = processed;
+        if (old != null) {
+            old.release();
+        }
+    }
 
-        HttpUtils.uploadImageForRecognition(currentProcessedBitmap, imageName, new HttpUtils.RecognitionCallback() {
-            @Override
-            public void onSuccess(String result) {
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        showUploading(false);
-                        // 解析并显示识别结果
-                        displayRecognitionResult(result);
-                    }
-                });
+    // 预览已换成新的位图后再释放旧的
+    private void setPreviewBitmap(BitmapHandle bitmap) {
+        BitmapHandle old = previewBitmap;
+        previewBitmap = bitmap;
+        if (old != null) {
+            old.release();
+        }
+    }
+
+    // 上传队列的结果，在主线程回调；之前拍的照片（例如断网期间）识别完成后只加入历史记录
+    // 按拍照代数判断是否为当前照片：同一路径可能被重新拍摄，代数 0 是重启后恢复的上传
+    private final UploadQueue.Listener uploadListener = new UploadQueue.Listener() {
+        private boolean isCurrentPhoto(long generation) {
+            return generation != 0 && generation == currentGeneration;
+        }
+
+        @Override
+        public void onPartialResult(String imagePath, long generation, String text) {
+            // 结果边生成边显示，不等整个回复完成
+            if (isCurrentPhoto(generation)) {
+                progressBar.setVisibility(View.GONE);
+                tvStatus.setText("正在生成识别结果...");
+                showCurrentResult(text, true);
             }
+        }
 
-            @Override
-            public void onError(String error) {
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        showUploading(false);
-                        showError("识别失败: " + error);
-                    }
-                });
+        @Override
+        public void onResult(String imagePath, long generation, String result) {
+            if (isCurrentPhoto(generation)) {
+                showUploading(false);
+                // 解析并显示识别结果
+                displayRecognitionResult(result);
+                finishTraceAfterDraw();
+            } else {
+                addToHistory(parseRecognitionResult(result), imagePath);
+                showToast("队列中的图片已识别完成");
             }
-        });
-    }
+        }
+
+        @Override
+        public void onError(String imagePath, long generation, String error) {
+            if (isCurrentPhoto(generation)) {
+                PipelineTracer.abandon(currentTrace);
+                currentTrace = null;
+                showUploading(false);
+                showError("识别失败: " + error);
+            } else {
+                showToast("队列中的图片识别失败: " + error);
+            }
+        }
+
+        @Override
+        public void onRetryScheduled(String imagePath, long generation, String reason, long delayMs,
+                                     int pending) {
+            if (isCurrentPhoto(generation)) {
+                showUploading(false);
+                tvStatus.setText("上传失败，已加入队列，" + (delayMs / 1000) + " 秒后或网络恢复时重试（"
+                        + pending + " 张待上传）");
+                tvStatus.setVisibility(View.VISIBLE);
+            }
+        }
+    };
 
     // 新增：显示识别结果
     private void displayRecognitionResult(String result) {
@@ -409,9 +539,69 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void showCurrentResult(String result) {
+        showCurrentResult(result, false);
+    }
+
+    // 结果显示后，下一帧布局绘制完成时结束当前追踪
+    private void finishTraceAfterDraw() {
+        final PipelineTrace trace = currentTrace;
+        currentTrace = null;
+        if (trace == null) {
+            return;
+        }
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> tvCurrentResult.post(() -> {
+            PipelineTracer.mark(trace, Stage.RENDER);
+            PipelineTracer.finish(trace);
+            updateTraceOverlay();
+        }));
+    }
+
+    // 可调试的构建在右上角显示各阶段耗时的 p50/p95/p99；点击导出到日志目录，长按隐藏
+    private void setupTraceOverlay() {
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) {
+            return;
+        }
+        tvTraceOverlay = new TextView(this);
+        tvTraceOverlay.setTypeface(Typeface.MONOSPACE);
+        tvTraceOverlay.setTextSize(9);
+        tvTraceOverlay.setTextColor(Color.WHITE);
+        tvTraceOverlay.setBackgroundColor(0x99000000);
+        tvTraceOverlay.setPadding(8, 8, 8, 8);
+        tvTraceOverlay.setVisibility(View.GONE);
+        tvTraceOverlay.setOnClickListener(v -> {
+            try {
+                showToast("已导出: " + PipelineTracer.dump(this).getPath());
+            } catch (IOException e) {
+                showToast("导出失败: " + e.getMessage());
+            }
+        });
+        tvTraceOverlay.setOnLongClickListener(v -> {
+            v.setVisibility(View.GONE);
+            return true;
+        });
+        FrameLayout content = findViewById(android.R.id.content);
+        content.addView(tvTraceOverlay, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.END));
+    }
+
+    private void updateTraceOverlay() {
+        if (tvTraceOverlay == null) {
+            return;
+        }
+        tvTraceOverlay.setText(PipelineTracer.summary() + "\n" + BitmapBudget.stats());
+        tvTraceOverlay.setVisibility(View.VISIBLE);
+    }
+
+    // streaming 为 true 时是生成中的部分结果，会多次调用，只在第一次滚动到结果区域
+    private void showCurrentResult(String result, boolean streaming) {
+        boolean alreadyShown = streaming && partialResultShown;
+        partialResultShown = streaming;
         // 显示当前结果区域
         llCurrentResult.setVisibility(View.VISIBLE);
         tvCurrentResult.setText(result);
+        if (alreadyShown) {
+            return;
+        }
 
         // 自动滚动到结果区域
         llCurrentResult.post(new Runnable() {
@@ -0,0 +1,267 @@
+package com.example.myapplication2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.myapplication2.imaging.MemoryBudget;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 处理结果缓存：内存 LRU（按字节数限制）+ 磁盘 JPEG 缓存
+// 键 = 源文件路径 + 修改时间/大小 + 效果链及参数 + 输出尺寸，源文件变化后旧条目自动失效并删除
+// 内存缓存持有位图的一个引用，淘汰时 release；get 返回的 BitmapHandle 已为调用方 acquire，用完后 release
+// 注意：位图可能被多处共享，调用方不能修改它
+public class ProcessedImageCache {
+    private static final String TAG = "ProcessedImageCache";
+
+    private static final String DIR_NAME = "processed_cache";
+    private static final int JPEG_QUALITY = 95;
+    private static final long DEFAULT_DISK_BYTES = 50L * 1024 * 1024;
+
+    private static final LruCache<String, BitmapHandle> memory =
+            new LruCache<String, BitmapHandle>((int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE)) {
+                @Override
+                protected int sizeOf(String key, BitmapHandle value) {
+                    return (int) value.getByteCount();
+                }
+
+                @Override
+                protected void entryRemoved(boolean evicted, String key, BitmapHandle oldValue, BitmapHandle newValue) {
+                    oldValue.release();
+                }
+            };
+
+    // 磁盘写入在单独线程上进行，不阻塞处理流程
+    private static final ExecutorService diskWriter = Executors.newSingleThreadExecutor();
+
+    private static File cacheDir;
+    private static long maxDiskBytes = DEFAULT_DISK_BYTES;
+
+    private static long memoryHits;
+    private static long diskHits;
+    private static long misses;
+    private static long invalidations;
+
+    // 初始化方法，需要在 Application 或 Activity 中调用
+    public static synchronized void init(Context context) {
+        if (cacheDir == null) {
+            cacheDir = new File(context.getApplicationContext().getCacheDir(), DIR_NAME);
+            if (!cacheDir.exists()) {
+                cacheDir.mkdirs();
+            }
+        }
+    }
+
+    public static synchronized void setMaxDiskBytes(long bytes) {
+        maxDiskBytes = bytes;
+    }
+
+    public static void setMaxMemoryBytes(int bytes) {
+        memory.resize(bytes);
+    }
+
+    // 查找缓存，variant 描述效果链和输出尺寸；未命中返回 null
+    public static BitmapHandle get(String imagePath, String variant) {
+        File source = new File(imagePath);
+        if (!source.exists()) {
+            return null;
+        }
+        String pathHash = hash(imagePath);
+        String signatureHash = hash(signature(source));
+        String key = pathHash + "_" + signatureHash + "_" + hash(variant);
+
+        BitmapHandle cached = memory.get(key);
+        // 刚被淘汰的条目可能已全部释放，按未命中处理
+        if (cached != null && cached.tryAcquire() != null) {
+            synchronized (ProcessedImageCache.class) {
+                memoryHits++;
+            }
+            return cached;
+        }
+
+        File file = diskFile(key);
+        if (file != null && file.exists()) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inMutable = false;
+            // 第一个引用归内存缓存，再为调用方 acquire 一个
+            BitmapHandle loaded = BitmapHandle.wrap(
+                    BitmapFactory.decodeFile(file.getAbsolutePath(), options), MemoryBudget.Gauge.PROCESSED);
+            if (loaded != null) {
+                file.setLastModified(System.currentTimeMillis());
+                loaded.acquire();
+                memory.put(key, loaded);
+                synchronized (ProcessedImageCache.class) {
+                    diskHits++;
+                }
+                return loaded;
+            }
+        }
+
+        synchronized (ProcessedImageCache.class) {
+            misses++;
+        }
+        invalidateStale(pathHash, signatureHash);
+        return null;
+    }
+
+    // 保存处理结果，缓存和磁盘写入各自 acquire 一个引用，调用方的引用不变；之后不能再修改该位图
+    public static void put(String imagePath, String variant, final BitmapHandle handle) {
+        File source = new File(imagePath);
+        if (handle == null || !source.exists()) {
+            return;
+        }
+        final String key = hash(imagePath) + "_" + hash(signature(source)) + "_" + hash(variant);
+        memory.put(key, handle.acquire());
+
+        final File file = diskFile(key);
+        if (file == null) {
+            return;
+        }
+        final BitmapHandle writing = handle.acquire();
+        diskWriter.execute(() -> {
+            File tmp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                writing.get().compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            } catch (IOException e) {
+                Log.e(TAG, "写入磁盘缓存失败: " + e.getMessage());
+                tmp.delete();
+                return;
+            } finally {
+                writing.release();
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+            trimDisk();
+        });
+    }
+
+    public static void clear() {
+        memory.evictAll();
+        File dir = cacheDir;
+        if (dir != null) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    public static void trimMemory() {
+        memory.evictAll();
+    }
+
+    // 按最久未用淘汰内存缓存，尽量腾出 bytes 字节（仍被其他地方持有的位图不会因此释放）
+    public static void trimMemory(long bytes) {
+        memory.trimToSize((int) Math.max(0, memory.size() - Math.min(bytes, Integer.MAX_VALUE)));
+    }
+
+    public static synchronized String stats() {
+        long lookups = memoryHits + diskHits + misses;
+        int hitRate = lookups == 0 ? 0 : (int) ((memoryHits + diskHits) * 100 / lookups);
+        return "ProcessedImageCache{memory=" + (memory.size() / 1024) + "KB/" + (memory.maxSize() / 1024) + "KB"
+                + ", memoryHits=" + memoryHits + ", diskHits=" + diskHits + ", misses=" + misses
+                + ", hitRate=" + hitRate + "%, invalidations=" + invalidations + "}";
+    }
+
+    // 源文件变化后，删除该路径下签名不同的旧条目
+    private static void invalidateStale(String pathHash, String signatureHash) {
+        String pathPrefix = pathHash + "_";
+        String currentPrefix = pathPrefix + signatureHash + "_";
+
+        for (String key : memory.snapshot().keySet()) {
+            if (key.startsWith(pathPrefix) && !key.startsWith(currentPrefix)) {
+                memory.remove(key);
+                synchronized (ProcessedImageCache.class) {
+                    invalidations++;
+                }
+            }
+        }
+
+        File dir = cacheDir;
+        File[] stale = dir == null ? null : dir.listFiles(
+                (d, name) -> name.startsWith(pathPrefix) && !name.startsWith(currentPrefix));
+        if (stale != null) {
+            for (File file : stale) {
+                if (file.delete()) {
+                    synchronized (ProcessedImageCache.class) {
+                        invalidations++;
+                    }
+                }
+            }
+        }
+    }
+
+    // 按最近使用时间淘汰，直到总大小不超过上限
+    private static void trimDisk() {
+        File dir = cacheDir;
+        File[] files = dir == null ? null : dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        long limit;
+        synchronized (ProcessedImageCache.class) {
+            limit = maxDiskBytes;
+        }
+        if (total <= limit) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (total <= limit) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private static File diskFile(String key) {
+        File dir = cacheDir;
+        return dir == null ? null : new File(dir, key + ".jpg");
+    }
+
+    private static String signature(File source) {
+        return source.lastModified() + ":" + source.length();
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            // 取前 8 字节足以区分
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", bytes[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
@@ -0,0 +1,866 @@
+package com.example.myapplication2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.myapplication2.net.Backoff;
+import com.example.myapplication2.net.ChatStream;
+import com.example.myapplication2.net.RecognitionRequest;
+import com.example.myapplication2.net.UploadPolicy;
+import com.example.myapplication2.trace.PipelineTrace;
+import com.example.myapplication2.trace.Stage;
+import com.example.myapplication2.utils.CaptureGeneration;
+import com.example.myapplication2.utils.HttpUtils;
+import com.example.myapplication2.utils.PipelineTracer;
+import com.example.myapplication2.utils.RecognitionCache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 持久化上传队列：待识别的图片先压缩成 JPEG 写入磁盘并记入日志文件，再按入队顺序逐个上传
+// 失败后按带随机抖动的指数退避重试，网络恢复时立即重试；进程被杀后重启会从日志恢复
+// 识别结果同样先写入磁盘，MainActivity 注册监听后再交付，交付后删除
+// 上传时 JPEG 从文件分块读出，内存中不会同时存在整份图片数据
+// 结果以流式请求，生成中的文本通过 onPartialResult 实时交给监听器，不落盘
+// 积压了多张时（例如断网期间拍的照片）把队首连续的几张合成一个多图请求，减少请求数和服务器的提示词处理
+// 还没失败过的条目属于入队时的拍照代数，拍了新照片后直接放弃（正在进行的请求也取消），服务器只为用户正在看的照片工作；
+// 已提示过“稍后重试”的条目不受影响
+public class UploadQueue {
+    private static final String TAG = "UploadQueue";
+
+    private static final String DIR_NAME = "upload_queue";
+    private static final String JOURNAL = "journal";
+    private static final String PAYLOAD_SUFFIX = ".jpg";
+    private static final String RESULT_SUFFIX = ".result";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // 日志行：ADD id 创建时间 感知哈希 宽 高 质量 图片路径 / RETRY id 次数 下次时间 / DONE id / REMOVE id
+    private static final String ADD = "ADD";
+    private static final String RETRY = "RETRY";
+    private static final String DONE = "DONE";
+    private static final String REMOVE = "REMOVE";
+
+    // 结果文件第一行
+    private static final String RESULT_OK = "OK";
+    private static final String RESULT_ERROR = "ERROR";
+
+    private static final long DEFAULT_MAX_DISK_BYTES = 100L * 1024 * 1024;
+    private static final long BASE_DELAY_MS = 2000;
+    private static final long MAX_DELAY_MS = 5 * 60 * 1000;
+    // 服务器错误最多尝试的次数；网络错误一直重试
+    private static final int MAX_SERVER_ATTEMPTS = 6;
+    // 命中识别缓存、没有写入 JPEG 的条目
+    private static final UploadPolicy.Encoding NOT_ENCODED = new UploadPolicy.Encoding(0, 0, 0);
+
+    // generation 为入队时的拍照代数，调用方据此判断是不是当前照片的结果；重启后恢复的条目为 0
+    public interface Listener {
+        // 正在生成的识别结果，text 为到目前为止的全文；之后仍会有 onResult 或 onError / onRetryScheduled
+        void onPartialResult(String imagePath, long generation, String text);
+
+        // 识别成功
+        void onResult(String imagePath, long generation, String result);
+
+        // 失败且不再重试
+        void onError(String imagePath, long generation, String error);
+
+        // 本次上传失败，delayMs 后重试；pending 为队列中待上传的数量
+        void onRetryScheduled(String imagePath, long generation, String reason, long delayMs, int pending);
+    }
+
+    private static class Entry {
+        final long id;
+        final long createdAt;
+        final String imagePath;
+        // 识别成功后以此为键写入 RecognitionCache
+        final long hash;
+        // JPEG 写入时的编码，上传时用于测量和自适应
+        final UploadPolicy.Encoding encoding;
+        long bytes;
+        int attempts;
+        long nextAttemptAt;
+        // 已完成，结果在 <id>.result 中等待交付
+        boolean done;
+        boolean delivering;
+        // 多图请求没能给出这张的结果，之后单独上传
+        boolean single;
+        // 入队时的拍照代数，不写入日志；恢复的条目为 0
+        long generation;
+        // 阶段追踪，不写入日志；重试时放弃
+        PipelineTrace trace;
+
+        Entry(long id, long createdAt, long hash, UploadPolicy.Encoding encoding, String imagePath) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.hash = hash;
+            this.encoding = encoding;
+            this.imagePath = imagePath;
+        }
+    }
+
+    // 按 id（即入队顺序）排列
+    private static final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+    private static final Backoff backoff = new Backoff(BASE_DELAY_MS, MAX_DELAY_MS, new Random());
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 写入 JPEG、结果文件和交付在 io 线程，上传在 upload 线程，互不阻塞
+    private static final ExecutorService io = Executors.newSingleThreadExecutor();
+    private static final ScheduledExecutorService upload = Executors.newSingleThreadScheduledExecutor();
+
+    private static File dir;
+    private static Writer journal;
+    private static int journalLines;
+    private static long nextId = 1;
+    private static long maxDiskBytes = DEFAULT_MAX_DISK_BYTES;
+    // 正在上传的条目，超出磁盘上限时也不丢弃
+    private static final Set<Long> uploading = new HashSet<>();
+    // 服务器拒绝了多图请求（例如未开启多图输入），本次运行不再尝试
+    private static boolean batchDisabled;
+    private static ScheduledFuture<?> scheduledDrain;
+    private static Listener listener;
+
+    // 初始化方法，需要在 Application 或 Activity 中调用；从日志恢复上次未完成的上传
+    public static synchronized void init(Context context) {
+        if (dir != null) {
+            return;
+        }
+        dir = new File(context.getApplicationContext().getFilesDir(), DIR_NAME);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        readJournal();
+        deleteOrphans();
+        rewriteJournal();
+        registerNetworkCallback(context.getApplicationContext());
+        Log.d(TAG, "上传队列恢复: " + pendingCount() + " 张待上传, " + entries.size() + " 条记录");
+
+        scheduleDrain(0);
+        deliverResults();
+    }
+
+    public static synchronized void setMaxDiskBytes(long bytes) {
+        maxDiskBytes = bytes;
+    }
+
+    // 在主线程调用；设置后立即交付已完成但未交付的结果
+    public static void setListener(Listener newListener) {
+        synchronized (UploadQueue.class) {
+            listener = newListener;
+        }
+        if (newListener != null) {
+            deliverResults();
+        }
+    }
+
+    public static synchronized int pendingCount() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (!entry.done) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // 把位图编码成上传用的 JPEG 存入队列，随后在后台上传
+    // 与最近识别过的图片几乎相同时不上传，直接以缓存结果完成
+    // 位图在写入完成前不能被回收
+    public static void enqueue(Bitmap bitmap, String imagePath) {
+        enqueue(bitmap, imagePath, 0);
+    }
+
+    // generation 为拍照代数（见 CaptureGeneration），过期后不再编码和上传
+    public static void enqueue(Bitmap bitmap, String imagePath, long generation) {
+        enqueue(bitmap, imagePath, generation, null);
+    }
+
+    // trace 记录编码、排队和网络各阶段，可以为 null
+    public static void enqueue(Bitmap bitmap, String imagePath, long generation, PipelineTrace trace) {
+        enqueue(bitmap, null, imagePath, generation, trace);
+    }
+
+    // 队列为位图 acquire 一个引用，写入完成后 release，调用方可以随时释放自己的引用
+    public static void enqueue(BitmapHandle handle, String imagePath, long generation, PipelineTrace trace) {
+        enqueue(handle.get(), handle.acquire(), imagePath, generation, trace);
+    }
+
+    private static void enqueue(final Bitmap bitmap, final BitmapHandle owner, final String imagePath,
+                                final long generation, final PipelineTrace trace) {
+        final long id;
+        synchronized (UploadQueue.class) {
+            if (dir == null) {
+                if (owner != null) {
+                    owner.release();
+                }
+                throw new IllegalStateException("UploadQueue 未初始化");
+            }
+            id = nextId++;
+        }
+        io.execute(() -> {
+            try {
+                encodeAndAdd(id, bitmap, imagePath, generation, trace);
+            } finally {
+                if (owner != null) {
+                    owner.release();
+                }
+            }
+        });
+    }
+
+    private static void encodeAndAdd(long id, Bitmap bitmap, String imagePath, long generation,
+                                     PipelineTrace trace) {
+        if (!CaptureGeneration.isCurrent(generation)) {
+            return;
+        }
+        long hash;
+        String cached;
+        try {
+            hash = RecognitionCache.hashOf(bitmap);
+            cached = RecognitionCache.lookup(hash);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "读取待上传图片失败: " + e.getMessage());
+            notifyError(imagePath, generation, "读取待上传图片失败: " + e.getMessage());
+            return;
+        }
+        if (cached != null) {
+            writeResult(id, RESULT_OK, cached);
+            synchronized (UploadQueue.class) {
+                Entry entry = new Entry(id, System.currentTimeMillis(), hash, NOT_ENCODED, imagePath);
+                entry.done = true;
+                entry.generation = generation;
+                entries.put(id, entry);
+                appendJournal(addLine(entry));
+                appendJournal(DONE + " " + id);
+            }
+            deliverResults();
+            return;
+        }
+
+        File payload = payloadFile(id);
+        File tmp = new File(payload.getPath() + TMP_SUFFIX);
+        UploadPolicy.Encoding encoding;
+        try {
+            encoding = HttpUtils.writeUploadJpeg(bitmap, tmp);
+            if (!tmp.renameTo(payload)) {
+                throw new IOException("无法写入 " + payload);
+            }
+            PipelineTracer.mark(trace, Stage.ENCODE);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "写入上传队列失败: " + e.getMessage());
+            tmp.delete();
+            notifyError(imagePath, generation, "保存待上传图片失败: " + e.getMessage());
+            return;
+        }
+
+        if (!CaptureGeneration.isCurrent(generation)) {
+            payload.delete();
+            return;
+        }
+        synchronized (UploadQueue.class) {
+            Entry entry = new Entry(id, System.currentTimeMillis(), hash, encoding, imagePath);
+            entry.bytes = payload.length();
+            entry.generation = generation;
+            entry.trace = trace;
+            entries.put(id, entry);
+            appendJournal(addLine(entry));
+            trimDisk();
+            scheduleDrain(0);
+        }
+    }
+
+    // 依次上传队首的图片，队首未到重试时间时等待，保证按顺序完成
+    private static void drain() {
+        synchronized (UploadQueue.class) {
+            // 本次已开始执行，之后的 scheduleDrain 需要重新安排
+            scheduledDrain = null;
+        }
+        while (true) {
+            List<Entry> batch;
+            synchronized (UploadQueue.class) {
+                dropSuperseded();
+                Entry entry = firstPending();
+                if (entry == null) {
+                    return;
+                }
+                long wait = entry.nextAttemptAt - System.currentTimeMillis();
+                if (wait > 0) {
+                    scheduleDrain(wait);
+                    return;
+                }
+                batch = collectBatch(entry);
+                for (Entry item : batch) {
+                    uploading.add(item.id);
+                }
+            }
+            try {
+                if (batch.size() == 1) {
+                    uploadEntry(batch.get(0));
+                } else {
+                    uploadBatch(batch);
+                }
+            } finally {
+                synchronized (UploadQueue.class) {
+                    uploading.clear();
+                }
+            }
+        }
+    }
+
+    // 从队首开始取连续的、已到上传时间的条目，张数和 JPEG 合计大小不超过 HttpUtils 的上限
+    private static List<Entry> collectBatch(Entry first) {
+        List<Entry> batch = new ArrayList<>();
+        batch.add(first);
+        if (batchDisabled || first.single) {
+            return batch;
+        }
+        long now = System.currentTimeMillis();
+        long bytes = first.bytes;
+        for (Entry entry : entries.values()) {
+            if (entry.done || entry == first) {
+                continue;
+            }
+            if (batch.size() >= HttpUtils.MAX_BATCH_IMAGES || entry.single || entry.nextAttemptAt > now
+                    || bytes + entry.bytes > HttpUtils.MAX_JPEG_BYTES) {
+                break;
+            }
+            batch.add(entry);
+            bytes += entry.bytes;
+        }
+        return batch;
+    }
+
+    // 多图请求：拆出结果的直接完成，没拆出的标记为单独上传
+    // 网络错误和可重试的服务器错误按队首的退避重试；其余错误改为逐张上传
+    // 每张都属于已过期的拍照时请求被取消，这些条目和单张上传一样直接放弃
+    private static void uploadBatch(List<Entry> batch) {
+        Entry head = batch.get(0);
+        long generation = batchGeneration(batch);
+        List<File> files = new ArrayList<>(batch.size());
+        PipelineTrace[] traces = new PipelineTrace[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            files.add(payloadFile(batch.get(i).id));
+            traces[i] = batch.get(i).trace;
+        }
+        PipelineTrace.markAll(traces, Stage.QUEUE);
+        try {
+            String[] results = HttpUtils.recognizeJpegFiles(files, generation, traces);
+            for (int i = 0; i < batch.size(); i++) {
+                Entry entry = batch.get(i);
+                if (results[i] != null) {
+                    RecognitionCache.put(entry.hash, results[i]);
+                    complete(entry, RESULT_OK, results[i]);
+                } else {
+                    markSingle(entry);
+                }
+            }
+        } catch (HttpUtils.ServerException e) {
+            if (e.isRetryable() && head.attempts + 1 < MAX_SERVER_ATTEMPTS) {
+                retry(head, e.getMessage());
+                return;
+            }
+            if (!e.isRetryable()) {
+                Log.w(TAG, "服务器不接受多图请求，改为逐张上传: " + e.getMessage());
+                synchronized (UploadQueue.class) {
+                    batchDisabled = true;
+                }
+            }
+            markSingle(batch);
+        } catch (RecognitionRequest.TooLargeException e) {
+            markSingle(batch);
+        } catch (IOException e) {
+            if (!CaptureGeneration.isCurrent(generation)) {
+                Log.d(TAG, "已拍摄新照片，放弃多图上传: " + batch.size() + " 张");
+                for (Entry entry : batch) {
+                    remove(entry);
+                }
+                return;
+            }
+            retry(head, "网络错误: " + e.getMessage());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "多图请求异常: " + e.getMessage());
+            markSingle(batch);
+        }
+    }
+
+    // 多图请求按哪一代拍照取消：与单张上传一样，失败过的条目不再取消（按 0），
+    // 只有每张都是同一代、还没失败过时才随这一代过期
+    private static long batchGeneration(List<Entry> batch) {
+        long generation = batch.get(0).generation;
+        for (Entry entry : batch) {
+            if (entry.attempts != 0 || entry.generation != generation) {
+                return 0;
+            }
+        }
+        return generation;
+    }
+
+    private static synchronized void markSingle(List<Entry> batch) {
+        for (Entry entry : batch) {
+            markSingle(entry);
+        }
+    }
+
+    // 追踪中已记下多图请求的时刻，之后单独上传的耗时无法区分，放弃
+    private static synchronized void markSingle(Entry entry) {
+        entry.single = true;
+        PipelineTracer.abandon(entry.trace);
+        entry.trace = null;
+    }
+
+    private static void uploadEntry(Entry entry) {
+        PipelineTracer.mark(entry.trace, Stage.QUEUE);
+        try {
+            String result = HttpUtils.recognizeJpegFile(payloadFile(entry.id), entry.encoding,
+                    partialForwarder(entry.imagePath, entry.generation), entry.attempts == 0 ? entry.generation : 0, entry.trace);
+            RecognitionCache.put(entry.hash, result);
+            complete(entry, RESULT_OK, result);
+        } catch (HttpUtils.ServerException e) {
+            if (e.isRetryable() && entry.attempts + 1 < MAX_SERVER_ATTEMPTS) {
+                retry(entry, e.getMessage());
+            } else {
+                complete(entry, RESULT_ERROR, e.getMessage());
+            }
+        } catch (RecognitionRequest.TooLargeException e) {
+            complete(entry, RESULT_ERROR, "图片过大，请压缩后重试");
+        } catch (IOException e) {
+            if (isSuperseded(entry)) {
+                Log.d(TAG, "已拍摄新照片，放弃上传: " + entry.imagePath);
+                remove(entry);
+                return;
+            }
+            retry(entry, "网络错误: " + e.getMessage());
+        } catch (RuntimeException e) {
+            retry(entry, "上传异常: " + e.getMessage());
+        }
+    }
+
+    // 属于旧一代拍照、还没失败过的条目
+    private static boolean isSuperseded(Entry entry) {
+        return entry.attempts == 0 && !entry.done && !CaptureGeneration.isCurrent(entry.generation);
+    }
+
+    // 丢弃所有过期的条目，不通知监听器（用户已经在看新照片）
+    private static void dropSuperseded() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (isSuperseded(entry)) {
+                Log.d(TAG, "已拍摄新照片，放弃上传: " + entry.imagePath);
+                it.remove();
+                appendJournal(REMOVE + " " + entry.id);
+                payloadFile(entry.id).delete();
+            }
+        }
+    }
+
+    // 把生成中的文本转到主线程；主线程来不及处理时只保留最新的一份，不堆积消息
+    private static ChatStream.Listener partialForwarder(final String imagePath, final long generation) {
+        final AtomicReference<String> latest = new AtomicReference<>();
+        return (delta, text) -> {
+            if (latest.getAndSet(text) != null) {
+                return;
+            }
+            mainHandler.post(() -> {
+                String current = latest.getAndSet(null);
+                Listener l = listener;
+                if (l != null && current != null) {
+                    l.onPartialResult(imagePath, generation, current);
+                }
+            });
+        };
+    }
+
+    private static void retry(Entry entry, String reason) {
+        long delay;
+        int pending;
+        synchronized (UploadQueue.class) {
+            if (!entries.containsKey(entry.id)) {
+                return;
+            }
+            entry.attempts++;
+            // 含失败和退避等待的耗时不具代表性
+            PipelineTracer.abandon(entry.trace);
+            entry.trace = null;
+            delay = backoff.delayMs(entry.attempts);
+            entry.nextAttemptAt = System.currentTimeMillis() + delay;
+            appendJournal(RETRY + " " + entry.id + " " + entry.attempts + " " + entry.nextAttemptAt);
+            pending = pendingCount();
+        }
+        Log.w(TAG, "上传失败（第 " + entry.attempts + " 次），" + (delay / 1000) + " 秒后重试: " + reason);
+        final long delayMs = delay;
+        final int pendingCount = pending;
+        mainHandler.post(() -> {
+            Listener l = listener;
+            if (l != null) {
+                l.onRetryScheduled(entry.imagePath, entry.generation, reason, delayMs, pendingCount);
+            }
+        });
+    }
+
+    // 写入结果文件、删除 JPEG，然后交付
+    private static void complete(Entry entry, String status, String text) {
+        writeResult(entry.id, status, text);
+        payloadFile(entry.id).delete();
+
+        synchronized (UploadQueue.class) {
+            if (!entries.containsKey(entry.id)) {
+                resultFile(entry.id).delete();
+                return;
+            }
+            entry.done = true;
+            appendJournal(DONE + " " + entry.id);
+        }
+        deliverResults();
+    }
+
+    private static void writeResult(long id, String status, String text) {
+        File result = resultFile(id);
+        File tmp = new File(result.getPath() + TMP_SUFFIX);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            out.write(status);
+            out.write('\n');
+            out.write(text);
+        } catch (IOException e) {
+            Log.e(TAG, "写入识别结果失败: " + e.getMessage());
+        }
+        tmp.renameTo(result);
+    }
+
+    // 在 io 线程读出已完成的结果，再到主线程交给监听器；没有监听器时留到下次
+    private static void deliverResults() {
+        io.execute(() -> {
+            List<Entry> ready = new ArrayList<>();
+            synchronized (UploadQueue.class) {
+                if (listener == null) {
+                    return;
+                }
+                for (Entry entry : entries.values()) {
+                    if (entry.done && !entry.delivering) {
+                        entry.delivering = true;
+                        ready.add(entry);
+                    }
+                }
+            }
+            for (Entry entry : ready) {
+                String[] result = readResult(entry.id);
+                mainHandler.post(() -> {
+                    Listener l = listener;
+                    if (l == null) {
+                        synchronized (UploadQueue.class) {
+                            entry.delivering = false;
+                        }
+                        return;
+                    }
+                    if (RESULT_OK.equals(result[0])) {
+                        l.onResult(entry.imagePath, entry.generation, result[1]);
+                    } else {
+                        l.onError(entry.imagePath, entry.generation, result[1]);
+                    }
+                    io.execute(() -> remove(entry));
+                });
+            }
+        });
+    }
+
+    private static void notifyError(String imagePath, long generation, String error) {
+        mainHandler.post(() -> {
+            Listener l = listener;
+            if (l != null) {
+                l.onError(imagePath, generation, error);
+            }
+        });
+    }
+
+    private static synchronized void remove(Entry entry) {
+        if (entries.remove(entry.id) != null) {
+            appendJournal(REMOVE + " " + entry.id);
+        }
+        payloadFile(entry.id).delete();
+        resultFile(entry.id).delete();
+        // 日志中的无效行过多时重写
+        if (journalLines > 32 + entries.size() * 4) {
+            rewriteJournal();
+        }
+    }
+
+    // 待上传的图片超过磁盘上限时丢弃最早的（正在上传的除外）
+    private static void trimDisk() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            if (!entry.done) {
+                total += entry.bytes;
+            }
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (total > maxDiskBytes && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.done || uploading.contains(entry.id)) {
+                continue;
+            }
+            Log.w(TAG, "上传队列超过 " + (maxDiskBytes / 1024 / 1024) + "MB，丢弃: " + entry.imagePath);
+            total -= entry.bytes;
+            it.remove();
+            appendJournal(REMOVE + " " + entry.id);
+            payloadFile(entry.id).delete();
+            notifyError(entry.imagePath, entry.generation, "上传队列已满，已丢弃");
+        }
+    }
+
+    private static Entry firstPending() {
+        for (Entry entry : entries.values()) {
+            if (!entry.done) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // 在 delayMs 后上传；已经安排了更早的则不变
+    private static synchronized void scheduleDrain(long delayMs) {
+        if (scheduledDrain != null && !scheduledDrain.isDone()) {
+            if (scheduledDrain.getDelay(TimeUnit.MILLISECONDS) <= delayMs) {
+                return;
+            }
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrain = upload.schedule(UploadQueue::drain, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 网络恢复时不再等待退避，立即按顺序重试
+    private static void onNetworkAvailable() {
+        synchronized (UploadQueue.class) {
+            if (firstPending() == null) {
+                return;
+            }
+            for (Entry entry : entries.values()) {
+                entry.nextAttemptAt = 0;
+            }
+            Log.d(TAG, "网络已恢复，开始上传队列");
+            scheduleDrain(0);
+        }
+    }
+
+    private static void registerNetworkCallback(Context context) {
+        ConnectivityManager connectivity =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity == null) {
+            return;
+        }
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        connectivity.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                onNetworkAvailable();
+            }
+        });
+    }
+
+    // 按行重放日志，恢复各条目的状态
+    private static void readJournal() {
+        File file = new File(dir, JOURNAL);
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                try {
+                    long id = Long.parseLong(parts[1]);
+                    nextId = Math.max(nextId, id + 1);
+                    Entry entry = entries.get(id);
+                    if (ADD.equals(parts[0]) && parts.length == 8) {
+                        UploadPolicy.Encoding encoding = new UploadPolicy.Encoding(Integer.parseInt(parts[4]),
+                                Integer.parseInt(parts[5]), Integer.parseInt(parts[6]));
+                        entries.put(id, new Entry(id, Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                                encoding, decode(parts[7])));
+                    } else if (RETRY.equals(parts[0]) && entry != null && parts.length == 4) {
+                        entry.attempts = Integer.parseInt(parts[2]);
+                        entry.nextAttemptAt = Long.parseLong(parts[3]);
+                    } else if (DONE.equals(parts[0]) && entry != null) {
+                        entry.done = true;
+                    } else if (REMOVE.equals(parts[0])) {
+                        entries.remove(id);
+                    }
+                } catch (RuntimeException e) {
+                    // 进程被杀时最后一行可能不完整，忽略
+                    Log.w(TAG, "忽略无效日志行: " + line);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "读取上传队列日志失败: " + e.getMessage());
+        }
+
+        // 对应文件丢失的条目无法继续
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            File data = entry.done ? resultFile(entry.id) : payloadFile(entry.id);
+            if (!data.exists()) {
+                it.remove();
+            } else if (!entry.done) {
+                entry.bytes = data.length();
+            }
+        }
+    }
+
+    // 删除日志中没有记录的文件（例如写入 JPEG 后、记入日志前进程被杀）
+    private static void deleteOrphans() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.equals(JOURNAL)) {
+                continue;
+            }
+            int dot = name.indexOf('.');
+            Entry entry = null;
+            try {
+                entry = entries.get(Long.parseLong(dot > 0 ? name.substring(0, dot) : name));
+            } catch (NumberFormatException ignored) {
+                // 不是队列文件
+            }
+            boolean keep = entry != null && !name.endsWith(TMP_SUFFIX)
+                    && name.endsWith(entry.done ? RESULT_SUFFIX : PAYLOAD_SUFFIX);
+            if (!keep) {
+                file.delete();
+            }
+        }
+    }
+
+    // 只写当前状态，替换旧日志
+    private static void rewriteJournal() {
+        closeJournal();
+        File file = new File(dir, JOURNAL);
+        File tmp = new File(dir, JOURNAL + TMP_SUFFIX);
+        journalLines = 0;
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (Entry entry : entries.values()) {
+                out.write(addLine(entry) + "\n");
+                journalLines++;
+                if (entry.attempts > 0) {
+                    out.write(RETRY + " " + entry.id + " " + entry.attempts + " " + entry.nextAttemptAt + "\n");
+                    journalLines++;
+                }
+                if (entry.done) {
+                    out.write(DONE + " " + entry.id + "\n");
+                    journalLines++;
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "重写上传队列日志失败: " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "替换上传队列日志失败");
+        }
+    }
+
+    private static void appendJournal(String line) {
+        try {
+            if (journal == null) {
+                journal = new OutputStreamWriter(
+                        new FileOutputStream(new File(dir, JOURNAL), true), StandardCharsets.UTF_8);
+            }
+            journal.write(line);
+            journal.write('\n');
+            journal.flush();
+            journalLines++;
+        } catch (IOException e) {
+            Log.e(TAG, "写入上传队列日志失败: " + e.getMessage());
+        }
+    }
+
+    private static void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响后续重新打开
+            }
+            journal = null;
+        }
+    }
+
+    // 结果文件：第一行是状态，其余是识别结果或错误信息
+    private static String[] readResult(long id) {
+        StringBuilder sb = new StringBuilder();
+        String status = RESULT_ERROR;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(resultFile(id)), StandardCharsets.UTF_8))) {
+            status = reader.readLine();
+            char[] buffer = new char[4096];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                sb.append(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            return new String[]{RESULT_ERROR, "读取识别结果失败: " + e.getMessage()};
+        }
+        return new String[]{status, sb.toString()};
+    }
+
+    private static String addLine(Entry entry) {
+        return ADD + " " + entry.id + " " + entry.createdAt + " " + entry.hash + " "
+                + entry.encoding.width + " " + entry.encoding.height + " " + entry.encoding.quality + " "
+                + encode(entry.imagePath);
+    }
+
+    private static File payloadFile(long id) {
+        return new File(dir, id + PAYLOAD_SUFFIX);
+    }
+
+    private static File resultFile(long id) {
+        return new File(dir, id + RESULT_SUFFIX);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value == null ? "" : value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
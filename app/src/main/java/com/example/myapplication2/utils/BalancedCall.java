@@ -0,0 +1,286 @@
+package com.example.myapplication2.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.myapplication2.log.RateLimiter;
+import com.example.myapplication2.net.EndpointPool;
+import com.example.myapplication2.net.RecognitionRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// 在 EndpointPool 选出的节点上执行一次请求，把结果反馈给节点统计
+// 同步执行时：第一个节点连接失败或返回 5xx，立即换一个节点再试一次。请求体会被写出两次，必须可以重复写出
+// 调用 idempotent() 的请求还会对冲：超过池中延迟的 p95 仍没有响应头，向另一个节点发出第二个请求，
+// 先成功应答的为准，另一个取消。识别请求不是幂等的，对冲会让两台服务器的 GPU 都算一遍，默认不对冲
+// 延迟按收到响应头计算，流式响应即开始输出的时间
+// 指定 binaryRequest 时，确认支持二进制上传的节点改用它，发往同一主机上的 RecognitionRequest.BINARY_PATH；
+// 节点对二进制请求返回 404/405/415 时记为不支持，响应照常交给调用方
+public class BalancedCall {
+    private static final String TAG = "BalancedCall";
+    // 某个节点宕机时每个请求都会换节点重试，限制记录的条数
+    private static final RateLimiter failoverLog = new RateLimiter(5, 60_000);
+
+    private final OkHttpClient client;
+    private final EndpointPool pool;
+    private final Request request;
+    private final Request binaryRequest;
+    // 多图请求等耗时与普通请求差别很大，不参与延迟统计
+    private final boolean recordLatency;
+    private boolean hedge;
+    private final List<Attempt> attempts = new ArrayList<>();
+    private final BlockingQueue<Attempt> finished = new LinkedBlockingQueue<>();
+    private Attempt winner;
+    private boolean canceled;
+
+    // 一个节点上的一次请求
+    private final class Attempt implements Callback {
+        final EndpointPool.Endpoint endpoint;
+        final Call call;
+        // 异步执行时直接转给调用方的回调，同步执行时为 null
+        final Callback forward;
+        final boolean binary;
+        final long startedAt = SystemClock.elapsedRealtime();
+        Response response;
+        IOException error;
+
+        Attempt(EndpointPool.Endpoint endpoint, Callback forward) {
+            this.endpoint = endpoint;
+            this.forward = forward;
+            this.binary = binaryRequest != null && pool.supportsBinary(endpoint);
+            HttpUrl url = HttpUrl.get(endpoint.getUrl());
+            if (binary) {
+                url = url.newBuilder().encodedPath(RecognitionRequest.BINARY_PATH).build();
+            }
+            this.call = client.newCall((binary ? binaryRequest : request).newBuilder().url(url).build());
+        }
+
+        boolean failed() {
+            return response == null || response.code() >= 500;
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            if (binary && isMissingRoute(response.code())) {
+                pool.setBinarySupported(endpoint, false);
+            }
+            if (response.code() >= 500) {
+                report(pool.onFailure(endpoint));
+            } else {
+                pool.onSuccess(endpoint, recordLatency && response.isSuccessful()
+                        ? SystemClock.elapsedRealtime() - startedAt : -1);
+            }
+            if (forward != null) {
+                forward.onResponse(call, response);
+                return;
+            }
+            synchronized (BalancedCall.this) {
+                // 已经有别的请求胜出，或者调用方已取消（execute 已退出），这个响应没人读
+                if (winner != null || canceled) {
+                    response.close();
+                    return;
+                }
+                this.response = response;
+            }
+            finished.add(this);
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            if (call.isCanceled()) {
+                pool.onCancel(endpoint);
+            } else {
+                report(pool.onFailure(endpoint));
+            }
+            if (forward != null) {
+                forward.onFailure(call, e);
+                return;
+            }
+            error = e;
+            finished.add(this);
+        }
+
+        private void report(long ejectionDelayMs) {
+            if (ejectionDelayMs > 0) {
+                LogToFileUtils.e(TAG, "识别服务器连续失败，暂停使用: " + endpoint.getUrl());
+                HttpUtils.probeLater(pool, endpoint, ejectionDelayMs);
+            }
+        }
+    }
+
+    public BalancedCall(OkHttpClient client, EndpointPool pool, Request request, boolean recordLatency) {
+        this(client, pool, request, null, recordLatency);
+    }
+
+    public BalancedCall(OkHttpClient client, EndpointPool pool, Request request, Request binaryRequest,
+                        boolean recordLatency) {
+        this.client = client;
+        this.pool = pool;
+        this.request = request;
+        this.binaryRequest = binaryRequest;
+        this.recordLatency = recordLatency;
+    }
+
+    // 请求可以安全地重复执行（不改变服务器状态、重复计算的代价可以接受）时调用，允许对冲；在 execute 之前调用
+    public BalancedCall idempotent() {
+        hedge = true;
+        return this;
+    }
+
+    // 在调用线程上等待结果；返回的响应可能是 4xx/5xx，由调用方处理
+    public Response execute() throws IOException {
+        Attempt first = start(pool.choose(), null);
+        long hedgeDelayMs = hedge ? pool.hedgeDelayMs() : -1;
+        int pending = 1;
+        Attempt failed = null;
+        try {
+            while (pending > 0) {
+                Attempt done;
+                if (hedgeDelayMs >= 0 && attemptCount() == 1) {
+                    done = finished.poll(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        // 超过 p95 仍没有响应头，同时向另一个节点发送
+                        if (startOther(first) != null) {
+                            pending++;
+                            // 格式参数是 long，先判断级别，避免关闭调试日志时仍然装箱
+                            if (LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+                                LogToFileUtils.d(TAG, "等待超过 %dms，对冲请求: %s", hedgeDelayMs, pool);
+                            }
+                        }
+                        hedgeDelayMs = -1;
+                        continue;
+                    }
+                } else {
+                    done = finished.take();
+                }
+                pending--;
+
+                if (!done.failed()) {
+                    if (claim(done)) {
+                        return done.response;
+                    }
+                    throw new IOException("Canceled");
+                }
+                // 节点故障：另一个请求还在进行就等它，否则换一个节点再试一次
+                if (failed != null && failed.response != null) {
+                    failed.response.close();
+                }
+                failed = done;
+                if (pending == 0 && attemptCount() == 1 && !done.call.isCanceled()
+                        && startOther(first) != null) {
+                    pending++;
+                    LogToFileUtils.d(failoverLog, TAG, "识别服务器请求失败，换一个节点重试: %s", pool);
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw new InterruptedIOException("等待识别结果时被中断");
+        }
+        if (failed.response != null && claim(failed)) {
+            return failed.response;
+        }
+        throw failed.error != null ? failed.error : new IOException("Canceled");
+    }
+
+    // 异步执行，只选节点、不对冲；回调中的 Call 是实际发出的请求
+    public void enqueue(Callback callback) {
+        start(pool.choose(), callback);
+    }
+
+    // 二进制上传接口不存在：纯 OpenAI 兼容服务器上没有这个路由
+    public static boolean isMissingRoute(int code) {
+        return code == 404 || code == 405 || code == 415;
+    }
+
+    // 响应是否来自二进制上传接口
+    public static boolean isBinary(Response response) {
+        return RecognitionRequest.BINARY_PATH.equals(response.request().url().encodedPath());
+    }
+
+    // 可以在主线程调用（见 CaptureGeneration.next）：这里只设置标志、取消 Call；
+    // 已经收到但还没被 execute 取走的响应在调度器的线程上关闭，关闭可能要读写连接；胜出的响应归调用方所有
+    public void cancel() {
+        final List<Response> unclaimed = new ArrayList<>();
+        synchronized (this) {
+            canceled = true;
+            for (Attempt attempt : attempts) {
+                attempt.call.cancel();
+                if (attempt != winner && attempt.response != null) {
+                    unclaimed.add(attempt.response);
+                }
+            }
+        }
+        if (!unclaimed.isEmpty()) {
+            client.dispatcher().executorService().execute(() -> {
+                for (Response response : unclaimed) {
+                    response.close();
+                }
+            });
+        }
+    }
+
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+
+    private synchronized int attemptCount() {
+        return attempts.size();
+    }
+
+    private Attempt startOther(Attempt first) {
+        EndpointPool.Endpoint other = pool.chooseOther(first.endpoint);
+        synchronized (this) {
+            if (other == null || canceled) {
+                return null;
+            }
+        }
+        return start(other, null);
+    }
+
+    // 已取消时仍然发出，OkHttp 会立即以 "Canceled" 回调 onFailure
+    private Attempt start(EndpointPool.Endpoint endpoint, Callback forward) {
+        Attempt attempt = new Attempt(endpoint, forward);
+        synchronized (this) {
+            attempts.add(attempt);
+            if (canceled) {
+                attempt.call.cancel();
+            }
+        }
+        pool.onStart(endpoint);
+        attempt.call.enqueue(attempt);
+        return attempt;
+    }
+
+    // 选定结果，取消其余请求；已被取消时返回 false
+    private boolean claim(Attempt attempt) {
+        synchronized (this) {
+            if (canceled) {
+                attempt.response.close();
+                return false;
+            }
+            winner = attempt;
+            for (Attempt other : attempts) {
+                if (other != attempt) {
+                    other.call.cancel();
+                    if (other.response != null) {
+                        other.response.close();
+                    }
+                }
+            }
+        }
+        return true;
+    }
+}
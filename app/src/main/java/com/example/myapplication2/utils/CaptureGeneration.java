@@ -0,0 +1,80 @@
+package com.example.myapplication2.utils;
+
+import com.example.myapplication2.imaging.Cancellation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 拍照代数：每拍一张新照片加一，用户只关心最新一代的处理和识别结果
+// 旧一代的处理线程、编码和网络请求通过 cancellation() 轮询或 onSuperseded 注册的取消动作尽早停止
+// 代数 0 表示不属于任何一次拍照（例如重启后恢复的上传），永远不会过期
+public class CaptureGeneration {
+    private static final String TAG = "CaptureGeneration";
+
+    // 新一代开始时要执行的取消动作
+    public static final class Registration {
+        private final Runnable cancel;
+
+        private Registration(Runnable cancel) {
+            this.cancel = cancel;
+        }
+
+        // 任务正常结束后调用，不再需要取消
+        public void remove() {
+            synchronized (CaptureGeneration.class) {
+                registrations.remove(this);
+            }
+        }
+    }
+
+    private static final Registration NONE = new Registration(null);
+    private static final List<Registration> registrations = new ArrayList<>();
+    private static long current;
+
+    // 开始新一代，返回新的代数；旧一代注册的取消动作在调用线程上执行
+    public static long next() {
+        List<Registration> superseded = new ArrayList<>();
+        long generation;
+        synchronized (CaptureGeneration.class) {
+            generation = ++current;
+            superseded.addAll(registrations);
+            registrations.clear();
+        }
+        for (Registration registration : superseded) {
+            registration.cancel.run();
+        }
+        if (!superseded.isEmpty()) {
+            LogToFileUtils.d(TAG, "第 " + generation + " 代开始，取消 " + superseded.size() + " 个旧任务");
+        }
+        return generation;
+    }
+
+    public static synchronized long current() {
+        return current;
+    }
+
+    public static synchronized boolean isCurrent(long generation) {
+        return generation == 0 || generation == current;
+    }
+
+    // 供处理代码轮询
+    public static Cancellation cancellation(final long generation) {
+        return generation == 0 ? Cancellation.NONE : () -> !isCurrent(generation);
+    }
+
+    // generation 过期时执行 cancel（例如 Call.cancel）；已经过期则立即执行
+    public static Registration onSuperseded(long generation, Runnable cancel) {
+        if (generation == 0) {
+            return NONE;
+        }
+        synchronized (CaptureGeneration.class) {
+            if (generation == current) {
+                Registration registration = new Registration(cancel);
+                registrations.add(registration);
+                return registration;
+            }
+        }
+        cancel.run();
+        return NONE;
+    }
+}
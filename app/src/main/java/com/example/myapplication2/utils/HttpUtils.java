@@ -1,254 +1,531 @@
 package com.example.myapplication2.utils;
 
 import android.graphics.Bitmap;
-import android.util.Base64;
+import android.os.SystemClock;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
+import com.example.myapplication2.BitmapBudget;
+import com.example.myapplication2.imaging.MemoryBudget;
+import com.example.myapplication2.log.RateLimiter;
+import com.example.myapplication2.net.BatchReply;
+import com.example.myapplication2.net.CallTimeouts;
+import com.example.myapplication2.net.ChatReply;
+import com.example.myapplication2.net.ChatStream;
+import com.example.myapplication2.net.EndpointPool;
+import com.example.myapplication2.net.RecognitionRequest;
+import com.example.myapplication2.net.UploadPolicy;
+import com.example.myapplication2.net.WarmUpThrottle;
+import com.example.myapplication2.trace.PipelineTrace;
+import com.example.myapplication2.trace.Stage;
+
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.ConnectException;
-import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-
-import javax.net.ssl.SSLHandshakeException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 public class HttpUtils {
     private static final String TAG = "HttpUtils";
     private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-    private static final OkHttpClient client = new OkHttpClient();
 
     // 服务器识别接口URL - 请替换为你的实际URL
     private static final String SERVER_URL = "http://192.168.3.8:8000/v1/chat/completions";
 
+    // 识别服务器节点池，默认只有 SERVER_URL；有多台服务器时用 setServerUrls 配置，请求在节点间按延迟分配
+    private static volatile EndpointPool endpointPool = new EndpointPool(Collections.singletonList(SERVER_URL));
+    // 连接池和调度器按最多这么多台服务器配置；节点更多时仍可使用，只是空闲连接和并发数要互相分
+    private static final int MAX_ENDPOINTS = 4;
+    // 定时探测被摘除的节点
+    private static final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor();
+
+    // 所有请求共用一个连接池和调度器，连接建立一次后反复使用
+    // 空闲连接保留 30 秒；服务端先关闭的话，OkHttp 会在下次请求时发现并换一条连接重试
+    // 有多台识别服务器时每台都要留下预连接和换节点重试用过的连接，空闲上限按 MAX_ENDPOINTS 台各两条
+    private static final ConnectionPool connectionPool =
+            new ConnectionPool(MAX_ENDPOINTS * 2, 30, TimeUnit.SECONDS);
+    private static final OkHttpClient client = createClient();
+
+    // 按调用类型派生的客户端只改超时（见 CallTimeouts），仍共享 client 的连接池和调度器
+    // 上传测得的耗时用于自适应编码
+    private static final OkHttpClient uploadClient = withTimeouts(CallTimeouts.UPLOAD)
+            .eventListenerFactory(UploadTimingListener.FACTORY)
+            .build();
+    private static final OkHttpClient textClient = withTimeouts(CallTimeouts.TEXT).build();
+    // 预连接失败也无所谓
+    private static final OkHttpClient warmUpClient = withTimeouts(CallTimeouts.WARM_UP).build();
+
+    // 服务器不可达时每次拍照都会预连接失败，一分钟只记一条
+    private static final RateLimiter warmUpFailureLog = new RateLimiter(1, 60_000);
+
+    // 两次预连接至少间隔 5 秒
+    private static final WarmUpThrottle warmUpThrottle = new WarmUpThrottle(5000);
+
+    // 一个请求中 JPEG 的上限（多图请求为合计），Base64 后约 10MB
+    public static final long MAX_JPEG_BYTES = 7_500_000L;
+    // 队列上传对有二进制接口（RecognitionRequest.BINARY_PATH）的节点直接发送 JPEG，省去 Base64 的 1/3 膨胀；
+    // 各节点是否有这个接口先用 OPTIONS 探测（见 probeBinaryUpload），结果记在节点池里，确认之前用 Base64
+    private static volatile boolean binaryUpload = true;
+
+    // 响应体只记录开头这么多字节；每 DIAGNOSTIC_SAMPLE_EVERY 个成功响应抽样记录一次，解析失败时总是记录
+    private static final int DIAGNOSTIC_BYTES = 512;
+    private static final int DIAGNOSTIC_SAMPLE_EVERY = 20;
+    private static final AtomicInteger replyCount = new AtomicInteger();
+    // 累计 token 用量（服务器返回 usage 时）
+    private static final AtomicLong promptTokens = new AtomicLong();
+    private static final AtomicLong completionTokens = new AtomicLong();
+
+    // 一个多图请求最多的图片数；vLLM 需以 --limit-mm-per-prompt image=N（N 不小于此值）启动
+    public static final int MAX_BATCH_IMAGES = 4;
+
     public interface RecognitionCallback {
         void onSuccess(String result);
         void onError(String error);
     }
 
-    public static void uploadImageForRecognition(Bitmap bitmap, String imageName, RecognitionCallback callback) {
-        new Thread(() -> {
-            try {
-                LogToFileUtils.d(TAG, "开始图片上传流程...");
-                LogToFileUtils.d(TAG, "图片尺寸: " + bitmap.getWidth() + "x" + bitmap.getHeight());
-                LogToFileUtils.d(TAG, "图片格式: " + bitmap.getConfig());
-
-                // 检查网络连接
-                if (!isNetworkAvailable()) {
-                    LogToFileUtils.e(TAG, "网络不可用");
-                    callback.onError("网络连接不可用");
-                    return;
-                }
+    // 需要逐步显示结果时使用：请求以流式（"stream": true）发送，生成过程中多次回调 onPartialResult
+    // text 为到目前为止的完整文本，最后仍以 onSuccess 给出全文；回调在网络线程
+    public interface StreamingCallback extends RecognitionCallback {
+        void onPartialResult(String text);
+    }
 
-                // 将Bitmap转换为base64
-                String imageBase64 = bitmapToBase64(bitmap);
-                LogToFileUtils.d(TAG, "图片Base64长度: " + imageBase64.length());
-                LogToFileUtils.d(TAG, "Base64前100字符: " + (imageBase64.length() > 100 ? imageBase64.substring(0, 100) : imageBase64));
+    // 服务器返回了错误状态码或无法解析的响应
+    public static class ServerException extends IOException {
+        private final int code;
 
-                // 构建JSON请求体
-                JSONObject requestBody = buildRequestJson(imageBase64);
-                String json = requestBody.toString();
+        public ServerException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
 
-                LogToFileUtils.d(TAG, "请求JSON长度: " + json.length());
-                LogToFileUtils.d(TAG, "JSON前200字符: " + (json.length() > 200 ? json.substring(0, 200) + "..." : json));
+        public int getCode() {
+            return code;
+        }
 
-                // 检查请求大小
-                if (json.length() > 10 * 1024 * 1024) { // 10MB限制
-                    LogToFileUtils.e(TAG, "请求数据过大: " + (json.length() / 1024 / 1024) + "MB");
-                    callback.onError("图片过大，请压缩后重试");
-                    return;
-                }
+        // 超时、限流和 5xx 稍后重试可能成功，其余错误重试也没用
+        public boolean isRetryable() {
+            return code == 408 || code == 429 || code >= 500;
+        }
+    }
 
-                RequestBody body = RequestBody.create(json, JSON);
-                Request request = buildRequest(body);
+    private static OkHttpClient createClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        // 单台识别服务器同时处理的请求不超过 4 个，多出的在调度器中排队，避免拖慢单个请求；
+        // 排队的请求也计入 EndpointPool 的进行中请求数，新请求会优先分给其他节点
+        dispatcher.setMaxRequestsPerHost(4);
+        dispatcher.setMaxRequests(MAX_ENDPOINTS * 4);
+        return applyTimeouts(new OkHttpClient.Builder(), CallTimeouts.DEFAULT)
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .retryOnConnectionFailure(true)
+                .build();
+    }
 
-                LogToFileUtils.d(TAG, "发送请求到: " + SERVER_URL);
-                LogToFileUtils.d(TAG, "请求头: " + request.headers().toString());
+    // 从共享的 client 派生，只替换超时
+    private static OkHttpClient.Builder withTimeouts(CallTimeouts timeouts) {
+        return applyTimeouts(client.newBuilder(), timeouts);
+    }
 
-                // 添加超时控制
-                OkHttpClient clientWithTimeout = new OkHttpClient.Builder()
-                        .connectTimeout(30, TimeUnit.SECONDS)
-                        .writeTimeout(60, TimeUnit.SECONDS)    // 上传超时
-                        .readTimeout(60, TimeUnit.SECONDS)      // 读取超时
-                        .build();
+    private static OkHttpClient.Builder applyTimeouts(OkHttpClient.Builder builder, CallTimeouts timeouts) {
+        return builder
+                .connectTimeout(timeouts.connectMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeouts.writeMs, TimeUnit.MILLISECONDS)
+                .readTimeout(timeouts.readMs, TimeUnit.MILLISECONDS)
+                .callTimeout(timeouts.callMs, TimeUnit.MILLISECONDS);
+    }
 
-                clientWithTimeout.newCall(request).enqueue(new Callback() {
-                    @Override
-                    public void onFailure(Call call, IOException e) {
-                        LogToFileUtils.e(TAG, "网络请求失败: " + e.getMessage());
-                        LogToFileUtils.e(TAG, "失败类型: " + e.getClass().getSimpleName());
-
-                        // 详细错误分析
-                        if (e instanceof SocketTimeoutException) {
-                            callback.onError("请求超时，请检查网络连接");
-                        } else if (e instanceof ConnectException) {
-                            callback.onError("无法连接到服务器，请检查服务器地址");
-                        } else if (e instanceof SSLHandshakeException) {
-                            callback.onError("SSL握手失败");
-                        } else {
-                            callback.onError("网络错误: " + e.getMessage());
-                        }
+    // 配置多台识别服务器（完整的 chat/completions 地址），替换原来的节点池和统计
+    public static void setServerUrls(String... urls) {
+        endpointPool = new EndpointPool(Arrays.asList(urls));
+        LogToFileUtils.d(TAG, "识别服务器: %s", endpointPool);
+    }
+
+    // 各节点的延迟、进行中的请求数和摘除状态
+    public static String endpointStats() {
+        return endpointPool.toString();
+    }
+
+    // 累计的 token 用量
+    public static String usageStats() {
+        return "replies=" + replyCount.get() + ", promptTokens=" + promptTokens.get()
+                + ", completionTokens=" + completionTokens.get();
+    }
+
+    // 预先建立到各个健康识别服务器的连接，拍照、处理完成时连接已经就绪
+    // 空闲连接已覆盖所有节点或刚预连接过时直接返回
+    public static void warmUp() {
+        probeBinaryUpload();
+        List<String> urls = endpointPool.healthyUrls();
+        if (!warmUpThrottle.tryStart(SystemClock.elapsedRealtime(),
+                connectionPool.idleConnectionCount(), urls.size())) {
+            return;
+        }
+
+        for (String url : urls) {
+            // HEAD 请求不带请求体，不管返回什么状态码，连接都会留在连接池中
+            warmUpClient.newCall(headRequest(url)).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    LogToFileUtils.d(warmUpFailureLog, TAG, "预连接失败: %s", e.getMessage());
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    LogToFileUtils.d(TAG, () -> "预连接完成，连接池: " + connectionPool.connectionCount()
+                            + " 个连接，空闲 " + connectionPool.idleConnectionCount());
+                }
+            });
+        }
+    }
+
+    // 节点被摘除后 delayMs 探测一次：有 5xx 以外的应答就恢复，否则间隔加倍后再探测
+    static void probeLater(final EndpointPool pool, final EndpointPool.Endpoint endpoint, long delayMs) {
+        prober.schedule(() -> {
+            // 节点池已被替换
+            if (pool != endpointPool) {
+                return;
+            }
+            warmUpClient.newCall(headRequest(endpoint.getUrl())).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    probeLater(pool, endpoint, pool.probeFailed(endpoint));
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    if (response.code() >= 500) {
+                        probeLater(pool, endpoint, pool.probeFailed(endpoint));
+                        return;
                     }
+                    pool.restore(endpoint);
+                    LogToFileUtils.d(TAG, "识别服务器已恢复: " + endpoint.getUrl());
+                }
+            });
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
 
-                    @Override
-                    public void onResponse(Call call, Response response) throws IOException {
-                        String responseBody = response.body().string();
-                        LogToFileUtils.d(TAG, "服务器响应状态: " + response.code());
-                        LogToFileUtils.d(TAG, "响应头: " + response.headers().toString());
-                        LogToFileUtils.d(TAG, "响应体长度: " + responseBody.length());
-                        LogToFileUtils.d(TAG, "响应体内容: " + responseBody);
-
-                        if (response.isSuccessful()) {
-                            handleSuccessResponse(responseBody, callback);
-                        } else {
-                            handleErrorResponse(response, responseBody, callback);
-                        }
+    // 对还不知道是否支持二进制上传的节点发 OPTIONS 到二进制接口，不带请求体，也不占用服务器 GPU
+    // server_v2.py（Flask）自动应答 OPTIONS 并在 Allow 中列出 POST；纯 OpenAI 兼容服务器没有这个路由，返回 404/405
+    private static void probeBinaryUpload() {
+        if (!binaryUpload) {
+            return;
+        }
+        final EndpointPool pool = endpointPool;
+        for (final EndpointPool.Endpoint endpoint : pool.startBinaryProbes()) {
+            HttpUrl url = HttpUrl.get(endpoint.getUrl()).newBuilder()
+                    .encodedPath(RecognitionRequest.BINARY_PATH)
+                    .build();
+            Request request = new Request.Builder()
+                    .url(url)
+                    .method("OPTIONS", null)
+                    .addHeader("User-Agent", "Android-QwenClient/1.0")
+                    .build();
+            warmUpClient.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    pool.binaryProbeFailed(endpoint);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    if (response.code() >= 500) {
+                        pool.binaryProbeFailed(endpoint);
+                        return;
                     }
-                });
+                    String allow = response.header("Allow");
+                    boolean supported = response.isSuccessful() && (allow == null || allow.contains("POST"));
+                    pool.setBinarySupported(endpoint, supported);
+                    LogToFileUtils.d(TAG, "%s 二进制上传: %s", endpoint.getUrl(), supported ? "支持" : "不支持");
+                }
+            });
+        }
+    }
 
-            } catch (Exception e) {
-                LogToFileUtils.e(TAG, "上传异常: " + e.getMessage());
-                callback.onError("处理失败: " + e.getMessage());
+    private static Request headRequest(String url) {
+        return new Request.Builder()
+                .url(url)
+                .head()
+                .addHeader("User-Agent", "Android-QwenClient/1.0")
+                .build();
+    }
+
+    // 按 UploadPolicy 当前的参数把位图缩放并压缩成 JPEG 写入文件，返回实际使用的编码
+    public static UploadPolicy.Encoding writeUploadJpeg(Bitmap bitmap, File target) throws IOException {
+        UploadPolicy.Params params = UploadPolicy.shared().current();
+        Bitmap uploadBitmap = compressBitmap(bitmap, params.maxEdge);
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            if (!uploadBitmap.compress(Bitmap.CompressFormat.JPEG, params.quality, out)) {
+                throw new IOException("JPEG 编码失败");
             }
-        }).start();
+            return new UploadPolicy.Encoding(uploadBitmap.getWidth(), uploadBitmap.getHeight(), params.quality);
+        } finally {
+            recycleScaled(uploadBitmap, bitmap);
+        }
     }
 
-    // 分离出来的辅助方法
-    private static JSONObject buildRequestJson(String imageBase64) throws JSONException {
-        JSONObject requestBody = new JSONObject();
-        requestBody.put("model", "qwen2.5-vl-7b");
+    // 二进制上传的总开关；打开时也只对探测确认支持的节点使用
+    public static void setBinaryUpload(boolean enabled) {
+        binaryUpload = enabled;
+    }
 
-        JSONArray messagesArray = new JSONArray();
-        JSONObject messageObject = new JSONObject();
-        messageObject.put("role", "user");
+    // 在调用线程上同步上传已编码好的 JPEG 文件，返回识别结果；encoding 为写入文件时的编码
+    // partial 不为 null 时以流式请求，生成过程中在调用线程上回调
+    // generation 过期时请求被取消，抛出 IOException（Call.isCanceled 为 true）
+    // 网络错误抛出 IOException，服务器错误抛出 ServerException
+    // trace 不为 null 时记录发送、等待服务器和解析响应的时刻
+    public static String recognizeJpegFile(File jpegFile, UploadPolicy.Encoding encoding,
+                                           ChatStream.Listener partial, long generation,
+                                           PipelineTrace trace) throws IOException {
+        PipelineTrace[] traces = trace != null ? new PipelineTrace[]{trace} : null;
+        probeBinaryUpload();
+        boolean stream = partial != null;
+        Request binaryRequest = null;
+        if (binaryUpload) {
+            ImageRequestBody binaryBody = ImageRequestBody.fromFileBinary(jpegFile, MAX_JPEG_BYTES, stream);
+            binaryRequest = buildBinaryRequest(binaryBody, jpegFile.getName(), encoding, traces);
+        }
+        ImageRequestBody body = ImageRequestBody.fromFile(jpegFile, MAX_JPEG_BYTES, stream);
+        return recognize(buildRequest(body, encoding, traces), binaryRequest, partial, generation);
+    }
 
-        JSONArray contentArray = new JSONArray();
+    // 发送识别请求并读出结果；binaryRequest 用于支持二进制上传的节点，可以为 null
+    private static String recognize(Request request, Request binaryRequest, ChatStream.Listener partial,
+                                    long generation) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            BalancedCall call = new BalancedCall(uploadClient, endpointPool, request, binaryRequest, true);
+            CaptureGeneration.Registration cancelOnSupersede =
+                    CaptureGeneration.onSuperseded(generation, call::cancel);
+            try (Response response = call.execute()) {
+                boolean binary = BalancedCall.isBinary(response);
+                if (LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+                    ImageRequestBody body = (ImageRequestBody) (binary ? binaryRequest : request).body();
+                    LogToFileUtils.d(TAG, "已发送 JPEG: " + (body.getJpegBytes() / 1024) + "KB"
+                            + (binary ? "（二进制）" : "（Base64）") + ", 服务器响应状态: " + response.code());
+                }
+                // 节点在探测之后换成了没有二进制接口的服务程序，BalancedCall 已把它记为不支持，用 Base64 重发一次
+                if (binary && BalancedCall.isMissingRoute(response.code()) && attempt == 0) {
+                    LogToFileUtils.d(TAG, "节点不支持二进制上传，改用 Base64 重发");
+                    continue;
+                }
+                return readRecognition(request, response, partial);
+            } finally {
+                cancelOnSupersede.remove();
+            }
+        }
+    }
 
-        JSONObject textContent = new JSONObject();
-        textContent.put("type", "text");
-        textContent.put("text", "描述这张图片的内容");
-        contentArray.put(textContent);
+    private static String readRecognition(Request request, Response response, ChatStream.Listener partial)
+            throws IOException {
+        if (!response.isSuccessful()) {
+            throw new ServerException(response.code(), "服务器错误（" + response.code() + "）");
+        }
+        String content;
+        if (ChatStream.isEventStream(response.header("Content-Type"))) {
+            try {
+                content = ChatStream.read(response.body().byteStream(), partial);
+            } catch (ChatStream.ErrorEventException e) {
+                throw new ServerException(200, e.getMessage());
+            }
+        } else {
+            // 服务器不支持流式时返回完整 JSON
+            content = parseContent(response.body());
+        }
+        PipelineTrace.markAll(request.tag(PipelineTrace[].class), Stage.PARSE);
+        return content;
+    }
 
-        JSONObject imageContent = new JSONObject();
-        imageContent.put("type", "image_url");
+    // 在调用线程上把多张已编码好的 JPEG 放进一个请求上传，返回与 jpegFiles 顺序对应的结果
+    // 回复中找不到某张图片的编号时对应项为 null，由调用方单独重新识别
+    // 多图请求的服务器耗时包含多段回答，不带 Encoding 标签，不参与自适应编码的测量
+    // traces 与 jpegFiles 一一对应，可以为 null 或含 null
+    // generation 过期时请求被取消，抛出 IOException，与 recognizeJpegFile 相同
+    public static String[] recognizeJpegFiles(List<File> jpegFiles, long generation, PipelineTrace[] traces)
+            throws IOException {
+        ImageRequestBody body = ImageRequestBody.fromFiles(jpegFiles, MAX_JPEG_BYTES);
+        long start = SystemClock.elapsedRealtime();
+        BalancedCall call = new BalancedCall(uploadClient, endpointPool, buildRequest(body, null, traces), false);
+        CaptureGeneration.Registration cancelOnSupersede = CaptureGeneration.onSuperseded(generation, call::cancel);
+        try (Response response = call.execute()) {
+            if (LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+                LogToFileUtils.d(TAG, "多图请求: " + jpegFiles.size() + " 张, JPEG " + (body.getJpegBytes() / 1024)
+                        + "KB, 服务器响应状态: " + response.code());
+            }
+            if (!response.isSuccessful()) {
+                throw new ServerException(response.code(), "服务器错误（" + response.code() + "）");
+            }
+            String reply = parseContent(response.body());
+            PipelineTrace.markAll(traces, Stage.PARSE);
+            String[] results = BatchReply.split(reply, jpegFiles.size());
+            int found = 0;
+            for (String result : results) {
+                if (result != null) {
+                    found++;
+                }
+            }
+            if (LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+                LogToFileUtils.d(TAG, "多图请求完成，耗时 " + (SystemClock.elapsedRealtime() - start) + "ms，拆出 "
+                        + found + "/" + results.length + " 张的结果");
+            }
+            return results;
+        } finally {
+            cancelOnSupersede.remove();
+        }
+    }
 
-        JSONObject imageUrlObject = new JSONObject();
-        imageUrlObject.put("url", "data:image/jpeg;base64," + imageBase64);
-        imageContent.put("image_url", imageUrlObject);
-        contentArray.put(imageContent);
+    // 取出 choices[0].message.content；响应格式不对时抛出 ServerException，读取失败时抛出 IOException
+    private static String parseContent(ResponseBody body) throws IOException {
+        ChatReply reply = readReply(body);
+        if (reply.getError() != null) {
+            throw new ServerException(200, "服务器错误: " + reply.getError());
+        }
+        if (!reply.hasChoices()) {
+            throw new ServerException(200, "服务器返回数据格式错误");
+        }
+        if (reply.getContent() == null) {
+            throw new ServerException(200, "响应解析失败: 没有 message.content");
+        }
+        return reply.getContent();
+    }
 
-        messageObject.put("content", contentArray);
-        messagesArray.put(messageObject);
-        requestBody.put("messages", messagesArray);
-        requestBody.put("max_tokens", 300);
-        requestBody.put("temperature", 0.7);
+    // 解析响应，记录 token 用量；响应体只在抽样或解析失败时记录开头一段
+    private static ChatReply readReply(ResponseBody body) throws IOException {
+        ChatReply.Capture capture = new ChatReply.Capture(body.byteStream(), DIAGNOSTIC_BYTES);
+        ChatReply reply;
+        try {
+            reply = ChatReply.parse(capture);
+        } catch (ChatReply.MalformedException e) {
+            LogToFileUtils.e(TAG, "响应解析失败: " + e.getMessage() + ", 响应开头: " + capture.excerpt());
+            throw new ServerException(200, "响应解析失败: " + e.getMessage());
+        }
+        if (replyCount.getAndIncrement() % DIAGNOSTIC_SAMPLE_EVERY == 0 && LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+            LogToFileUtils.d(TAG, "响应抽样（已读 " + capture.count() + " 字节）: " + capture.excerpt());
+        }
+        ChatReply.Usage usage = reply.getUsage();
+        if (usage != null) {
+            if (usage.promptTokens > 0) {
+                promptTokens.addAndGet(usage.promptTokens);
+            }
+            if (usage.completionTokens > 0) {
+                completionTokens.addAndGet(usage.completionTokens);
+            }
+            LogToFileUtils.d(TAG, "token 用量: %s", usage);
+        }
+        return reply;
+    }
 
-        return requestBody;
+    // 二进制上传：请求体为 JPEG，模型参数放在请求头；返回与 chat/completions 相同格式的结果
+    private static Request buildBinaryRequest(ImageRequestBody body, String fileName,
+                                              UploadPolicy.Encoding encoding,
+                                              PipelineTrace[] traces) {
+        return new Request.Builder()
+                .url(SERVER_URL)
+                .post(body)
+                .tag(UploadPolicy.Encoding.class, encoding)
+                .tag(PipelineTrace[].class, traces)
+                .addHeader(RecognitionRequest.HEADER_FILENAME, RecognitionRequest.headerValue(fileName))
+                .addHeader(RecognitionRequest.HEADER_MODEL, RecognitionRequest.MODEL)
+                .addHeader(RecognitionRequest.HEADER_PROMPT, RecognitionRequest.headerValue(RecognitionRequest.IMAGE_PROMPT))
+                .addHeader(RecognitionRequest.HEADER_MAX_TOKENS, String.valueOf(RecognitionRequest.MAX_TOKENS))
+                .addHeader("Accept", body.isStream() ? "text/event-stream" : "application/json")
+                .addHeader("User-Agent", "Android-QwenClient/1.0")
+                .build();
     }
 
-    private static Request buildRequest(RequestBody body) {
+    // 地址只是占位，BalancedCall 发送时换成选中节点的地址
+    // traces 作为请求标签，由 UploadTimingListener 记录请求体发完和收到响应头的时刻
+    private static Request buildRequest(ImageRequestBody body, UploadPolicy.Encoding encoding,
+                                        PipelineTrace[] traces) {
         return new Request.Builder()
                 .url(SERVER_URL)
                 .post(body)
+                .tag(UploadPolicy.Encoding.class, encoding)
+                .tag(PipelineTrace[].class, traces)
                 .addHeader("Content-Type", "application/json")
+                .addHeader("Accept", body.isStream() ? "text/event-stream" : "application/json")
                 .addHeader("User-Agent", "Android-QwenClient/1.0")
                 .build();
     }
 
-    private static void handleSuccessResponse(String responseBody, RecognitionCallback callback) {
-        try {
-            JSONObject jsonResponse = new JSONObject(responseBody);
-            if (jsonResponse.has("choices")) {
-                JSONArray choices = jsonResponse.getJSONArray("choices");
-                if (choices.length() > 0) {
-                    JSONObject choice = choices.getJSONObject(0);
-                    JSONObject message = choice.getJSONObject("message");
-                    String content = message.getString("content");
-                    LogToFileUtils.d(TAG, "解析成功，回复内容长度: " + content.length());
-                    callback.onSuccess(content);
-                } else {
-                    LogToFileUtils.e(TAG, "响应中没有choices数据");
-                    callback.onError("服务器返回数据格式错误");
+    // 边读边解析事件流，每段新文本转给 onPartialResult，结束后 onSuccess 给出全文
+    private static void handleStreamResponse(Response response, final long startedAt,
+                                             final StreamingCallback callback) {
+        try (ResponseBody body = response.body()) {
+            String content = ChatStream.read(body.byteStream(), new ChatStream.Listener() {
+                private boolean first = true;
+
+                @Override
+                public void onDelta(String delta, String text) {
+                    if (first) {
+                        first = false;
+                        if (LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+                            LogToFileUtils.d(TAG, "首段文字耗时: " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+                        }
+                    }
+                    callback.onPartialResult(text);
                 }
-            } else if (jsonResponse.has("error")) {
-                String error = jsonResponse.getString("error");
-                LogToFileUtils.e(TAG, "服务器返回错误: " + error);
-                callback.onError("服务器错误: " + error);
-            } else {
-                LogToFileUtils.e(TAG, "响应格式异常: " + responseBody);
-                callback.onError("响应格式异常");
+            });
+            if (LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+                LogToFileUtils.d(TAG, "流式响应完成，回复内容长度: " + content.length() + "，总耗时: "
+                        + (SystemClock.elapsedRealtime() - startedAt) + "ms");
             }
-        } catch (JSONException e) {
-            LogToFileUtils.e(TAG, "响应解析错误: " + e.getMessage());
-            callback.onError("响应解析失败: " + e.getMessage());
+            callback.onSuccess(content);
+        } catch (ChatStream.ErrorEventException e) {
+            LogToFileUtils.e(TAG, e.getMessage());
+            callback.onError(e.getMessage());
+        } catch (IOException e) {
+            LogToFileUtils.e(TAG, "流式响应读取失败: " + e.getMessage());
+            callback.onError("响应读取失败: " + e.getMessage());
         }
     }
 
-    private static void handleErrorResponse(Response response, String responseBody, RecognitionCallback callback) {
-        LogToFileUtils.e(TAG, "HTTP错误状态: " + response.code());
-
-        switch (response.code()) {
-            case 400:
-                callback.onError("请求参数错误（400）");
-                break;
-            case 413:
-                callback.onError("图片太大，服务器拒绝处理（413）");
-                break;
-            case 500:
-                callback.onError("服务器内部错误（500）");
-                break;
-            case 502:
-            case 503:
-            case 504:
-                callback.onError("服务器暂时不可用（" + response.code() + "）");
-                break;
-            default:
-                callback.onError("服务器错误: " + response.code() + ", 响应: " + responseBody);
-        }
-    }
-
-    // 网络检查方法
-    private static boolean isNetworkAvailable() {
+    private static void handleSuccessResponse(ResponseBody body, RecognitionCallback callback) {
+        String content;
         try {
-            // 简单的网络检查
-            Runtime runtime = Runtime.getRuntime();
-            Process process = runtime.exec("ping -c 1 8.8.8.8");
-            int exitValue = process.waitFor();
-            return exitValue == 0;
-        } catch (Exception e) {
-            return false;
+            content = parseContent(body);
+        } catch (ServerException e) {
+            LogToFileUtils.e(TAG, e.getMessage());
+            callback.onError(e.getMessage());
+            return;
+        } catch (IOException e) {
+            LogToFileUtils.e(TAG, "响应读取失败: " + e.getMessage());
+            callback.onError("响应读取失败: " + e.getMessage());
+            return;
         }
+        if (LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+            LogToFileUtils.d(TAG, "解析成功，回复内容长度: " + content.length());
+        }
+        callback.onSuccess(content);
     }
 
-
-            // 纯文本请求方法（可选）
+    // 纯文本请求方法（可选）
+    // callback 为 StreamingCallback 时以流式请求
     public static void sendTextRequest(String prompt, RecognitionCallback callback) {
         new Thread(() -> {
             try {
-                JSONObject requestBody = new JSONObject();
-                requestBody.put("model", "qwen2.5-vl-7b");
-
-                JSONArray messagesArray = new JSONArray();
-                JSONObject messageObject = new JSONObject();
-                messageObject.put("role", "user");
-                messageObject.put("content", prompt);
-                messagesArray.put(messageObject);
-
-                requestBody.put("messages", messagesArray);
-                requestBody.put("max_tokens", 300);
-                requestBody.put("temperature", 0.7);
-
+                boolean stream = callback instanceof StreamingCallback;
+                JSONObject requestBody = RecognitionRequest.buildTextJson(prompt, stream);
                 String json = requestBody.toString();
                 RequestBody body = RequestBody.create(json, JSON);
 
@@ -256,9 +533,11 @@ public class HttpUtils {
                         .url(SERVER_URL)
                         .post(body)
                         .addHeader("Content-Type", "application/json")
+                        .addHeader("Accept", stream ? "text/event-stream" : "application/json")
                         .build();
+                final long startedAt = SystemClock.elapsedRealtime();
 
-                client.newCall(request).enqueue(new Callback() {
+                new BalancedCall(textClient, endpointPool, request, false).enqueue(new Callback() {
                     @Override
                     public void onFailure(Call call, IOException e) {
                         callback.onError("网络连接失败: " + e.getMessage());
@@ -266,19 +545,17 @@ public class HttpUtils {
 
                     @Override
                     public void onResponse(Call call, Response response) throws IOException {
-                        String responseBody = response.body().string();
-                        if (response.isSuccessful()) {
-                            try {
-                                JSONObject jsonResponse = new JSONObject(responseBody);
-                                JSONArray choices = jsonResponse.getJSONArray("choices");
-                                JSONObject message = choices.getJSONObject(0).getJSONObject("message");
-                                String content = message.getString("content");
-                                callback.onSuccess(content);
-                            } catch (JSONException e) {
-                                callback.onError("响应解析失败");
+                        if (stream && response.isSuccessful()
+                                && ChatStream.isEventStream(response.header("Content-Type"))) {
+                            handleStreamResponse(response, startedAt, (StreamingCallback) callback);
+                            return;
+                        }
+                        try (ResponseBody responseBody = response.body()) {
+                            if (response.isSuccessful()) {
+                                handleSuccessResponse(responseBody, callback);
+                            } else {
+                                callback.onError("服务器错误: " + response.code());
                             }
-                        } else {
-                            callback.onError("服务器错误: " + response.code());
                         }
                     }
                 });
@@ -289,33 +566,22 @@ public class HttpUtils {
         }).start();
     }
 
-
-
-
-
-
-    private static String bitmapToBase64(Bitmap bitmap) {
-        // 先压缩图片
-        Bitmap compressedBitmap = compressBitmap(bitmap);
-
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        compressedBitmap.compress(Bitmap.CompressFormat.JPEG, 80, byteArrayOutputStream);
-        byte[] byteArray = byteArrayOutputStream.toByteArray();
-
-        LogToFileUtils.d(TAG, "压缩后图片大小: " + (byteArray.length / 1024) + "KB");
-
-        return Base64.encodeToString(byteArray, Base64.NO_WRAP);
+    // 缩放生成的临时位图在请求结束后回收，调用方传入的原图不动
+    private static void recycleScaled(Bitmap scaled, Bitmap original) {
+        if (scaled != original) {
+            long bytes = scaled.getAllocationByteCount();
+            scaled.recycle();
+            BitmapBudget.discharge(MemoryBudget.Gauge.UPLOAD_SCALE, bytes);
+        }
     }
 
-    private static Bitmap compressBitmap(Bitmap originalBitmap) {
-        int maxWidth = 1024;  // 最大宽度
-        int maxHeight = 1024; // 最大高度
+    private static Bitmap compressBitmap(Bitmap originalBitmap, int maxEdge) {
+        int maxWidth = maxEdge;  // 最大宽度
+        int maxHeight = maxEdge; // 最大高度
 
         int width = originalBitmap.getWidth();
         int height = originalBitmap.getHeight();
 
-        LogToFileUtils.d(TAG, "原始图片尺寸: " + width + "x" + height);
-
         // 如果图片尺寸合适，直接返回
         if (width <= maxWidth && height <= maxHeight) {
             return originalBitmap;
@@ -326,11 +592,13 @@ public class HttpUtils {
         int newWidth = Math.round(width * scale);
         int newHeight = Math.round(height * scale);
 
-        LogToFileUtils.d(TAG, "压缩后尺寸: " + newWidth + "x" + newHeight + ", 缩放比例: " + scale);
+        if (LogToFileUtils.isLoggable(TAG, Log.DEBUG)) {
+            LogToFileUtils.d(TAG, "压缩尺寸: " + width + "x" + height + " -> " + newWidth + "x" + newHeight
+                    + ", 缩放比例: " + scale);
+        }
 
-        return Bitmap.createScaledBitmap(originalBitmap, newWidth, newHeight, true);
+        Bitmap scaled = Bitmap.createScaledBitmap(originalBitmap, newWidth, newHeight, true);
+        BitmapBudget.charge(MemoryBudget.Gauge.UPLOAD_SCALE, scaled.getAllocationByteCount());
+        return scaled;
     }
-
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package com.example.myapplication2.utils;
+
+import com.example.myapplication2.net.RecognitionRequest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+// 图片识别请求体：发送时才读取 JPEG 文件，Base64 直接写到 OkHttp 的 sink 上
+// 长度事先未知，使用 chunked 传输；重试时会重新写出，所以文件在请求结束前必须保持可用
+// 多张图片时生成一个多图请求（RecognitionRequest.writeBatchImageJson）
+// 二进制模式（fromFileBinary）下请求体就是 JPEG 原始字节，长度已知，不需要 Base64
+public class ImageRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final MediaType JPEG = MediaType.parse("image/jpeg");
+
+    // 读取 JPEG 文件的缓冲大小
+    private static final int FILE_BUFFER_SIZE = 16 * 1024;
+
+    private final List<RecognitionRequest.JpegWriter> jpegs;
+    private final long maxJpegBytes;
+    // 请求服务器以事件流返回结果
+    private final boolean stream;
+    // 二进制模式的 JPEG 长度，JSON 模式为 -1
+    private final long binaryLength;
+    private volatile long jpegBytes;
+
+    private ImageRequestBody(List<RecognitionRequest.JpegWriter> jpegs, long maxJpegBytes, boolean stream) {
+        this(jpegs, maxJpegBytes, stream, -1);
+    }
+
+    private ImageRequestBody(List<RecognitionRequest.JpegWriter> jpegs, long maxJpegBytes, boolean stream,
+                             long binaryLength) {
+        this.jpegs = jpegs;
+        this.maxJpegBytes = maxJpegBytes;
+        this.stream = stream;
+        this.binaryLength = binaryLength;
+    }
+
+    // 发送时分块读取已编码好的 JPEG 文件，内存中只有一个读缓冲
+    public static ImageRequestBody fromFile(File jpegFile, long maxJpegBytes, boolean stream) {
+        return new ImageRequestBody(Collections.singletonList(fileWriter(jpegFile)), maxJpegBytes, stream);
+    }
+
+    // 直接发送 JPEG 文件的原始字节，比 Base64 少 1/4；超过 maxJpegBytes 时发送前抛出 TooLargeException
+    // stream 只决定 isStream()，由调用方放进请求头
+    public static ImageRequestBody fromFileBinary(File jpegFile, long maxJpegBytes, boolean stream)
+            throws RecognitionRequest.TooLargeException {
+        long length = jpegFile.length();
+        if (length > maxJpegBytes) {
+            throw new RecognitionRequest.TooLargeException(maxJpegBytes);
+        }
+        return new ImageRequestBody(Collections.singletonList(fileWriter(jpegFile)), maxJpegBytes, stream, length);
+    }
+
+    // 多张 JPEG 文件放进一个请求，maxJpegBytes 为合计上限；多图请求不使用流式
+    public static ImageRequestBody fromFiles(List<File> jpegFiles, long maxJpegBytes) {
+        List<RecognitionRequest.JpegWriter> writers = new ArrayList<>(jpegFiles.size());
+        for (File file : jpegFiles) {
+            writers.add(fileWriter(file));
+        }
+        return new ImageRequestBody(writers, maxJpegBytes, false);
+    }
+
+    private static RecognitionRequest.JpegWriter fileWriter(final File jpegFile) {
+        return out -> {
+            byte[] buffer = new byte[FILE_BUFFER_SIZE];
+            try (InputStream in = new FileInputStream(jpegFile)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        };
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public boolean isBinary() {
+        return binaryLength >= 0;
+    }
+
+    // 最近一次发送的 JPEG 字节数
+    public long getJpegBytes() {
+        return jpegBytes;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return isBinary() ? JPEG : JSON;
+    }
+
+    // 二进制模式长度已知，不用 chunked 传输
+    @Override
+    public long contentLength() {
+        return binaryLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        // sink.outputStream() 关闭时会关闭 sink，这里只写不关
+        if (isBinary()) {
+            jpegs.get(0).writeJpeg(sink.outputStream());
+            jpegBytes = binaryLength;
+        } else if (jpegs.size() == 1) {
+            jpegBytes = RecognitionRequest.writeImageJson(sink.outputStream(), jpegs.get(0), maxJpegBytes, stream);
+        } else {
+            jpegBytes = RecognitionRequest.writeBatchImageJson(sink.outputStream(), jpegs, maxJpegBytes);
+        }
+    }
+}
@@ -1,64 +1,210 @@
 package com.example.myapplication2.utils;
 import android.content.Context;
-import android.os.Environment;
+import android.content.pm.ApplicationInfo;
 import android.util.Log;
 
+import com.example.myapplication2.log.AsyncFileLog;
+import com.example.myapplication2.log.LogLevels;
+import com.example.myapplication2.log.RateLimiter;
+
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
+// 日志同时输出到 Logcat 和文件；文件由 AsyncFileLog 的写线程按顺序批量写入，调用线程不做文件操作
+// 级别低于阈值的调用直接返回：拼接开销大的消息用格式参数或 Message，只在需要输出时才生成字符串
+// 可能刷屏的调用点传入 RateLimiter，超出的条数在下一条输出时一并说明
 public class LogToFileUtils {
+    private static final String TAG = "LogToFileUtils";
     private static final String LOG_FILE_NAME = "my_app_log.txt";
-    private static Context appContext; // 需要保存 Context 引用
+    // 缓冲的行数，写线程跟不上时多出的行丢弃并计数
+    private static final int BUFFER_LINES = 4096;
+    // 单个文件的大小和时间上限，以及保留的旧文件数
+    private static final long MAX_FILE_BYTES = 2 * 1024 * 1024;
+    private static final long MAX_FILE_AGE_MS = TimeUnit.DAYS.toMillis(1);
+    private static final int MAX_OLD_FILES = 3;
+
+    // 延迟生成的日志内容，只在该级别输出时调用
+    public interface Message {
+        String get();
+    }
 
-    // 初始化方法，需要在 Application 或 Activity 中调用
+    // init 之前按 debug 级别输出
+    private static final LogLevels levels = new LogLevels(Log.DEBUG);
+    // init 之前的日志只输出到 Logcat
+    private static volatile AsyncFileLog fileLog;
+
+    // 初始化方法，需要在 Application 或 Activity 中调用；重复调用只有第一次生效
+    // 可调试的构建默认输出 debug 日志，正式构建只输出 info 及以上
     public static void init(Context context) {
-        appContext = context.getApplicationContext();
+        if (fileLog != null) {
+            return;
+        }
+        synchronized (LogToFileUtils.class) {
+            if (fileLog == null) {
+                Context appContext = context.getApplicationContext();
+                boolean debuggable = (appContext.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+                levels.setDefaultLevel(debuggable ? Log.DEBUG : Log.INFO);
+                File logFile = new File(getLogDir(appContext), LOG_FILE_NAME);
+                AsyncFileLog log = new AsyncFileLog(logFile, BUFFER_LINES, MAX_FILE_BYTES, MAX_FILE_AGE_MS,
+                        MAX_OLD_FILES);
+                // 日志文件写不进去时只能输出到 Logcat；存储不可用时写线程每秒重试一次，不会刷屏
+                log.setErrorListener((operation, e) -> Log.e(TAG, "日志文件" + operation + "失败: " + e));
+                fileLog = log;
+            }
+        }
     }
 
+    // 全局级别（Log.DEBUG、Log.INFO 等，LogLevels.OFF 关闭）
+    public static void setDefaultLevel(int level) {
+        levels.setDefaultLevel(level);
+    }
+
+    // 单独调整某个 tag 的级别，覆盖全局级别
+    public static void setLevel(String tag, int level) {
+        levels.setLevel(tag, level);
+    }
+
+    public static void clearLevel(String tag) {
+        levels.clearLevel(tag);
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        return levels.isEnabled(tag, level);
+    }
 
     public static void e(String tag, String message) {
-        // 1. 照常输出到 Logcat，便于开发时查看
-        Log.e(tag, message);
+        if (levels.isEnabled(tag, Log.ERROR)) {
+            write(Log.ERROR, tag, message);
+        }
+    }
 
-        // 2. 同时写入文件
-        writeToFile("ERROR", tag, message);
+    public static void e(String tag, Message message) {
+        if (levels.isEnabled(tag, Log.ERROR)) {
+            write(Log.ERROR, tag, message.get());
+        }
+    }
+
+    public static void e(String tag, String format, Object arg) {
+        if (levels.isEnabled(tag, Log.ERROR)) {
+            write(Log.ERROR, tag, format(format, arg));
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2) {
+        if (levels.isEnabled(tag, Log.ERROR)) {
+            write(Log.ERROR, tag, format(format, arg1, arg2));
+        }
+    }
+
+    public static void e(RateLimiter limiter, String tag, String message) {
+        long suppressed;
+        if (levels.isEnabled(tag, Log.ERROR) && (suppressed = limiter.acquire()) >= 0) {
+            write(Log.ERROR, tag, withSuppressed(message, suppressed));
+        }
+    }
+
+    public static void e(RateLimiter limiter, String tag, String format, Object arg) {
+        long suppressed;
+        if (levels.isEnabled(tag, Log.ERROR) && (suppressed = limiter.acquire()) >= 0) {
+            write(Log.ERROR, tag, withSuppressed(format(format, arg), suppressed));
+        }
     }
 
-    // 可以类似地实现 d(), i(), w() 等方法
     public static void d(String tag, String message) {
-        Log.d(tag, message);
-        writeToFile("DEBUG", tag, message);
-    }
-
-    private static void writeToFile(String level, String tag, String content) {
-        File logFile = new File(getLogDir(), LOG_FILE_NAME);
-        String time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
-        String logLine = String.format("%s %s/%s: %s\n", time, level, tag, content);
-
-        // 注意：文件操作应在后台线程进行
-        new Thread(() -> {
-            try (FileOutputStream fos = new FileOutputStream(logFile, true); // true 表示追加模式
-                 PrintWriter writer = new PrintWriter(fos)) {
-                writer.write(logLine);
-            } catch (IOException e) {
-                Log.e("LogToFile", "写入日志文件失败", e);
-            }
-        }).start();
+        if (levels.isEnabled(tag, Log.DEBUG)) {
+            write(Log.DEBUG, tag, message);
+        }
     }
 
+    public static void d(String tag, Message message) {
+        if (levels.isEnabled(tag, Log.DEBUG)) {
+            write(Log.DEBUG, tag, message.get());
+        }
+    }
 
-    private static File getLogDir() {
-        // 修正：使用保存的 appContext
-        File filesDir = appContext.getExternalFilesDir(null);
-        File logDir = new File(filesDir, "logs");
-        if (!logDir.exists()) {
-            logDir.mkdirs();
+    public static void d(String tag, String format, Object arg) {
+        if (levels.isEnabled(tag, Log.DEBUG)) {
+            write(Log.DEBUG, tag, format(format, arg));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if (levels.isEnabled(tag, Log.DEBUG)) {
+            write(Log.DEBUG, tag, format(format, arg1, arg2));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (levels.isEnabled(tag, Log.DEBUG)) {
+            write(Log.DEBUG, tag, format(format, arg1, arg2, arg3));
+        }
+    }
+
+    public static void d(RateLimiter limiter, String tag, String message) {
+        long suppressed;
+        if (levels.isEnabled(tag, Log.DEBUG) && (suppressed = limiter.acquire()) >= 0) {
+            write(Log.DEBUG, tag, withSuppressed(message, suppressed));
+        }
+    }
+
+    public static void d(RateLimiter limiter, String tag, String format, Object arg) {
+        long suppressed;
+        if (levels.isEnabled(tag, Log.DEBUG) && (suppressed = limiter.acquire()) >= 0) {
+            write(Log.DEBUG, tag, withSuppressed(format(format, arg), suppressed));
+        }
+    }
+
+    // 缓冲区满而没有写入文件的行数
+    public static long droppedCount() {
+        AsyncFileLog log = fileLog;
+        return log != null ? log.droppedCount() : 0;
+    }
+
+    // 写日志文件出错的次数，界面可据此提示日志不完整
+    public static long fileErrorCount() {
+        AsyncFileLog log = fileLog;
+        return log != null ? log.errorCount() : 0;
+    }
+
+    // 参数数组只在确实要输出时才分配
+    private static String format(String format, Object... args) {
+        return String.format(Locale.US, format, args);
+    }
+
+    // 被限流跳过的条数附在下一条输出的日志后面
+    private static String withSuppressed(String message, long suppressed) {
+        return suppressed > 0 ? message + "（此前 " + suppressed + " 条同类日志被抑制）" : message;
+    }
+
+    // 照常输出到 Logcat，便于开发时查看，同时写入文件
+    private static void write(int level, String tag, String message) {
+        if (message == null) {
+            message = "null";
         }
-        return logDir;
+        Log.println(level, tag, message);
+        AsyncFileLog log = fileLog;
+        if (log != null) {
+            log.append(levelName(level), tag, message);
+        }
+    }
+
+    private static String levelName(int level) {
+        switch (level) {
+            case Log.DEBUG:
+                return "DEBUG";
+            case Log.INFO:
+                return "INFO";
+            case Log.WARN:
+                return "WARN";
+            default:
+                return "ERROR";
+        }
+    }
+
+
+    public static File getLogDir(Context appContext) {
+        File filesDir = appContext.getExternalFilesDir(null);
+        return new File(filesDir, "logs");
     }
-}
\ No newline at end of file
+}
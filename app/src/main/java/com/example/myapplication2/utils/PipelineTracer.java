@@ -0,0 +1,122 @@
+package com.example.myapplication2.utils;
+
+import android.content.Context;
+
+import com.example.myapplication2.trace.PipelineTrace;
+import com.example.myapplication2.trace.Stage;
+import com.example.myapplication2.trace.TraceStats;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// 识别流程的阶段追踪：拍照时开始，追踪号随 Intent 传到 MainActivity，之后随上传队列条目和请求标签传递
+// 完成的追踪计入各阶段直方图，可导出到日志目录或显示在调试浮层上
+// 所有方法都允许 trace 为 null（例如重启后恢复的上传），此时什么也不做
+public class PipelineTracer {
+    private static final String TAG = "PipelineTracer";
+
+    // CameraActivity 返回结果时携带的追踪号
+    public static final String EXTRA_TRACE_ID = "trace_id";
+    private static final String DUMP_FILE_NAME = "pipeline_trace.txt";
+    // 进行中的追踪最多保留几个，拍了照片却没有走完流程的由此淘汰
+    private static final int MAX_ACTIVE = 8;
+    // 导出时附带的最近完成的追踪
+    private static final int MAX_RECENT = 32;
+
+    private static final TraceStats stats = new TraceStats();
+    private static final Map<Long, PipelineTrace> active = new LinkedHashMap<>();
+    private static final ArrayDeque<String> recent = new ArrayDeque<>();
+
+    // 从 firstStage 开始一次新的追踪
+    public static synchronized PipelineTrace begin(Stage firstStage) {
+        PipelineTrace trace = new PipelineTrace(firstStage);
+        active.put(trace.getId(), trace);
+        if (active.size() > MAX_ACTIVE) {
+            Iterator<PipelineTrace> eldest = active.values().iterator();
+            eldest.next().abandon();
+            eldest.remove();
+        }
+        return trace;
+    }
+
+    // 按追踪号取回进行中的追踪，没有时返回 null
+    public static synchronized PipelineTrace get(long id) {
+        return active.get(id);
+    }
+
+    public static void mark(PipelineTrace trace, Stage stage) {
+        if (trace != null) {
+            trace.mark(stage);
+        }
+    }
+
+    public static void finish(PipelineTrace trace) {
+        if (trace == null) {
+            return;
+        }
+        synchronized (PipelineTracer.class) {
+            active.remove(trace.getId());
+        }
+        if (!trace.finish(stats)) {
+            return;
+        }
+        String line = trace.toString();
+        synchronized (PipelineTracer.class) {
+            recent.addLast(line);
+            if (recent.size() > MAX_RECENT) {
+                recent.removeFirst();
+            }
+        }
+        LogToFileUtils.d(TAG, "%s", line);
+    }
+
+    public static void abandon(PipelineTrace trace) {
+        if (trace == null) {
+            return;
+        }
+        synchronized (PipelineTracer.class) {
+            active.remove(trace.getId());
+        }
+        trace.abandon();
+    }
+
+    // 各阶段的 p50/p95/p99，用于调试浮层
+    public static String summary() {
+        return stats.summary();
+    }
+
+    // 把统计和最近的追踪写到日志目录，返回文件
+    public static File dump(Context context) throws IOException {
+        File file = new File(LogToFileUtils.getLogDir(context.getApplicationContext()), DUMP_FILE_NAME);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        String[] lines;
+        synchronized (PipelineTracer.class) {
+            lines = recent.toArray(new String[0]);
+        }
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            out.write(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date()));
+            out.write("\n\n");
+            out.write(stats.summary());
+            out.write("\n最近的追踪:\n");
+            for (String line : lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.myapplication2.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.example.myapplication2.imaging.BufferPool;
+import com.example.myapplication2.imaging.PerceptualHash;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 识别结果缓存：按图片的感知哈希查找，汉明距离不超过阈值就认为是同一场景，直接返回上次的识别结果
+// 条目数有上限，按最近使用淘汰；持久化到 filesDir 下的 JSON 文件，重启后仍有效
+public class RecognitionCache {
+    private static final String TAG = "RecognitionCache";
+
+    private static final String FILE_NAME = "recognition_cache.json";
+    private static final int DEFAULT_MAX_ENTRIES = 200;
+    // 64 位中最多允许不同的位数
+    private static final int DEFAULT_MAX_DISTANCE = 6;
+    // 货架、标签内容会变，太旧的结果不再使用
+    private static final long DEFAULT_MAX_AGE_MS = 24L * 60 * 60 * 1000;
+
+    private static class Entry {
+        final String result;
+        final long createdAt;
+
+        Entry(String result, long createdAt) {
+            this.result = result;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // 访问顺序，最久未用的在前
+    private static final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // 写文件在单独线程上进行
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    private static File file;
+    private static int maxEntries = DEFAULT_MAX_ENTRIES;
+    private static int maxDistance = DEFAULT_MAX_DISTANCE;
+    private static long maxAgeMs = DEFAULT_MAX_AGE_MS;
+    private static long hits;
+    private static long misses;
+
+    // 初始化方法，需要在 Application 或 Activity 中调用
+    public static synchronized void init(Context context) {
+        if (file == null) {
+            file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+            load();
+        }
+    }
+
+    public static synchronized void setMaxDistance(int distance) {
+        maxDistance = distance;
+    }
+
+    public static synchronized void setMaxAgeMs(long ageMs) {
+        maxAgeMs = ageMs;
+    }
+
+    public static synchronized void setMaxEntries(int count) {
+        maxEntries = count;
+        trimToSize();
+        save();
+    }
+
+    // 计算位图的感知哈希，需要读出整帧像素，应在后台线程调用
+    public static long hashOf(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        BufferPool buffers = BufferPool.shared();
+        int[] pixels = buffers.acquireInts(width * height);
+        try {
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return PerceptualHash.dHash(pixels, width, height);
+        } finally {
+            buffers.releaseInts(pixels);
+        }
+    }
+
+    // 找汉明距离最小且不超过阈值的结果，没有返回 null
+    public static synchronized String lookup(long hash) {
+        long now = System.currentTimeMillis();
+        Long bestKey = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Map.Entry<Long, Entry> item : entries.entrySet()) {
+            if (now - item.getValue().createdAt > maxAgeMs) {
+                continue;
+            }
+            int distance = PerceptualHash.distance(hash, item.getKey());
+            if (distance <= maxDistance && distance < bestDistance) {
+                bestKey = item.getKey();
+                bestDistance = distance;
+            }
+        }
+        if (bestKey == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        Log.d(TAG, "识别缓存命中，距离 " + bestDistance + ": " + stats());
+        // get 会把条目移到最近使用的位置
+        return entries.get(bestKey).result;
+    }
+
+    public static synchronized void put(long hash, String result) {
+        if (result == null) {
+            return;
+        }
+        entries.put(hash, new Entry(result, System.currentTimeMillis()));
+        trimToSize();
+        save();
+    }
+
+    public static synchronized void clear() {
+        entries.clear();
+        save();
+    }
+
+    public static synchronized String stats() {
+        return "RecognitionCache{entries=" + entries.size() + "/" + maxEntries
+                + ", hits=" + hits + ", misses=" + misses + ", maxDistance=" + maxDistance + "}";
+    }
+
+    private static void trimToSize() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entries.size() > maxEntries || now - entry.createdAt > maxAgeMs) {
+                it.remove();
+            }
+        }
+    }
+
+    // 在写线程上把当前内容整体写入临时文件再替换
+    private static void save() {
+        final File target = file;
+        if (target == null) {
+            return;
+        }
+        final String json;
+        try {
+            JSONArray array = new JSONArray();
+            for (Map.Entry<Long, Entry> item : entries.entrySet()) {
+                JSONObject object = new JSONObject();
+                object.put("hash", item.getKey());
+                object.put("time", item.getValue().createdAt);
+                object.put("result", item.getValue().result);
+                array.put(object);
+            }
+            json = array.toString();
+        } catch (JSONException e) {
+            Log.e(TAG, "序列化识别缓存失败: " + e.getMessage());
+            return;
+        }
+        writer.execute(() -> {
+            File tmp = new File(target.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                Log.e(TAG, "写入识别缓存失败: " + e.getMessage());
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(target)) {
+                tmp.delete();
+            }
+        });
+    }
+
+    private static void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            JSONArray array = new JSONArray(new String(bytes, 0, read, StandardCharsets.UTF_8));
+            // 文件中按最久未用到最近使用排列，依次放入即可恢复顺序
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                entries.put(object.getLong("hash"),
+                        new Entry(object.getString("result"), object.getLong("time")));
+            }
+            trimToSize();
+            Log.d(TAG, "识别缓存已加载: " + entries.size() + " 条");
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "读取识别缓存失败: " + e.getMessage());
+            entries.clear();
+        }
+    }
+}
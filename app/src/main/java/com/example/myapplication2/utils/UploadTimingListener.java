@@ -0,0 +1,71 @@
+package com.example.myapplication2.utils;
+
+import com.example.myapplication2.net.UploadPolicy;
+import com.example.myapplication2.trace.PipelineTrace;
+import com.example.myapplication2.trace.Stage;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Response;
+
+// 测量一次图片上传：从开始发送请求体到收到响应头的时间，减去服务器在 Server-Timing 中报告的处理时间，
+// 剩下的是网络传输时间，成功时交给 UploadPolicy；请求体写完只是写进了发送缓冲，不能当作上传结束
+// 服务器不报告处理时间（例如直接连 vLLM）时两者分不开，不记录，UploadPolicy 保持默认档
+// 只处理带有 UploadPolicy.Encoding 或 PipelineTrace[] 标签的请求
+// 带追踪时在成功的响应上补记上传结束和收到响应头的时刻；失败的请求（5xx、接口不支持）不记
+public class UploadTimingListener extends EventListener {
+
+    public static final EventListener.Factory FACTORY = call ->
+            call.request().tag(UploadPolicy.Encoding.class) != null
+                    || call.request().tag(PipelineTrace[].class) != null
+                    ? new UploadTimingListener() : EventListener.NONE;
+
+    private long bodyStartNanos;
+    private long bodyEndNanos;
+    private long headersStartNanos;
+    private long bodyBytes;
+
+    @Override
+    public void requestBodyStart(Call call) {
+        bodyStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        bodyEndNanos = System.nanoTime();
+        bodyBytes = byteCount;
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        headersStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        if (bodyEndNanos == 0 || headersStartNanos == 0 || !response.isSuccessful()) {
+            return;
+        }
+        long serverMs = UploadPolicy.serverTimingMs(response.header("Server-Timing"));
+        // 数据到达服务器不会早于写完请求体
+        long uploadEndNanos = serverMs < 0 ? bodyEndNanos
+                : Math.max(bodyEndNanos, headersStartNanos - serverMs * 1_000_000);
+        PipelineTrace[] traces = call.request().tag(PipelineTrace[].class);
+        if (traces != null) {
+            for (PipelineTrace trace : traces) {
+                if (trace != null) {
+                    trace.markAt(Stage.UPLOAD, uploadEndNanos);
+                    trace.markAt(Stage.SERVER, headersStartNanos);
+                }
+            }
+        }
+        UploadPolicy.Encoding encoding = call.request().tag(UploadPolicy.Encoding.class);
+        if (encoding == null || serverMs < 0) {
+            return;
+        }
+        UploadPolicy policy = UploadPolicy.shared();
+        policy.record(bodyBytes, encoding, (uploadEndNanos - bodyStartNanos) / 1_000_000,
+                (headersStartNanos - uploadEndNanos) / 1_000_000);
+        LogToFileUtils.d("UploadPolicy", "%s", policy);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.imaging.EffectPipeline;
+import com.example.myapplication2.imaging.ProcessType;
+import com.example.myapplication2.imaging.TileExecutor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// ImageProcessor 的每种效果，走设备上同一条 EffectPipeline 路径
+// 每次操作先把原图复制到工作缓冲（与设备上 getPixels 一样是一次整帧写），再执行效果
+@State(Scope.Benchmark)
+public class EffectBenchmark {
+
+    @Param({"1", "4", "12"})
+    public int megapixels;
+
+    @Param({"GRAYSCALE", "SEPIA", "INVERT", "BLUR", "SHARPEN", "BRIGHTNESS", "CONTRAST",
+            "AUTO_LEVELS", "AUTO_CONTRAST"})
+    public ProcessType effect;
+
+    // true 时所有内核在调用线程上执行，用来对比多核加速比
+    @Param({"false", "true"})
+    public boolean singleThreaded;
+
+    private int width;
+    private int height;
+    private int[] source;
+    private int[] pixels;
+    private int[] spare;
+
+    @Setup
+    public void setUp() {
+        width = Frames.width(megapixels);
+        height = Frames.height(megapixels);
+        source = Frames.synthetic(width, height);
+        pixels = new int[width * height];
+        spare = new int[width * height];
+        TileExecutor.setSingleThreaded(singleThreaded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        TileExecutor.setSingleThreaded(false);
+    }
+
+    @Benchmark
+    public int[] effect() {
+        System.arraycopy(source, 0, pixels, 0, source.length);
+        return EffectPipeline.run(pixels, spare, width, height, effect);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.myapplication2.benchmark;
+
+import java.util.Random;
+
+// 基准测试用的合成帧（4:3，ARGB_8888）：渐变 + 纹理 + 噪声，接近照片的统计特性，压缩率也接近真实 JPEG
+final class Frames {
+
+    private Frames() {
+    }
+
+    // 按百万像素数取 4:3 的宽度：1MP 1152x864，4MP 2304x1728，12MP 4000x3000
+    static int width(int megapixels) {
+        switch (megapixels) {
+            case 1:
+                return 1152;
+            case 4:
+                return 2304;
+            case 12:
+                return 4000;
+            default:
+                return (int) Math.sqrt(megapixels * 1000000.0 * 4 / 3);
+        }
+    }
+
+    static int height(int megapixels) {
+        return width(megapixels) * 3 / 4;
+    }
+
+    // 固定种子，每次运行内容相同
+    static int[] synthetic(int width, int height) {
+        int[] pixels = new int[width * height];
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = y * 255 / height;
+                int b = (int) (127 + 100 * Math.sin(x * 0.02) * Math.cos(y * 0.015));
+                int noise = random.nextInt(17) - 8;
+                pixels[y * width + x] = 0xFF000000
+                        | clamp(r + noise) << 16
+                        | clamp(g + noise) << 8
+                        | clamp(b + noise);
+            }
+        }
+        return pixels;
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.imaging.ColorChain;
+import com.example.myapplication2.imaging.Orientation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// EXIF 方向变换，可选同时融合一个颜色矩阵（对应 processImage 开头的颜色类效果）
+@State(Scope.Benchmark)
+public class OrientationBenchmark {
+
+    @Param({"1", "4", "12"})
+    public int megapixels;
+
+    // ROTATE_90 / ROTATE_180 / ROTATE_270 / FLIP_HORIZONTAL
+    @Param({"6", "3", "8", "2"})
+    public int orientation;
+
+    @Param({"false", "true"})
+    public boolean fusedGrayscale;
+
+    private int width;
+    private int height;
+    private int[] source;
+    private int[] output;
+    private ColorChain.Compiled fused;
+
+    @Setup
+    public void setUp() {
+        width = Frames.width(megapixels);
+        height = Frames.height(megapixels);
+        source = Frames.synthetic(width, height);
+        output = new int[width * height];
+        fused = fusedGrayscale ? new ColorChain().then(ColorChain.grayscale()).compile() : null;
+    }
+
+    @Benchmark
+    public int[] transform() {
+        Orientation.transform(source, width, height, orientation, output, fused);
+        return output;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.myapplication2.benchmark;
+
+import com.example.myapplication2.net.Base64Encoder;
+import com.example.myapplication2.net.RecognitionRequest;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+// HttpUtils 上传编码：缩放到 1024 以内 -> JPEG 80 -> Base64 -> 请求 JSON
+// stringBody 是原来先生成 Base64 字符串和 JSON 字符串的做法，streamingBody 是 ImageRequestBody 的流式写出
+// Base64 与请求 JSON 用的是设备上同一份代码；缩放和 JPEG 压缩在 JVM 上没有 Bitmap，
+// 用 Java2D 双线性缩放和 ImageIO 代替 createScaledBitmap / Bitmap.compress，绝对耗时只作参考
+@State(Scope.Benchmark)
+public class UploadEncoderBenchmark {
+
+    // 与 HttpUtils.compressBitmap 相同
+    private static final int MAX_EDGE = 1024;
+    private static final float JPEG_QUALITY = 0.8f;
+
+    @Param({"1", "4", "12"})
+    public int megapixels;
+
+    private BufferedImage frame;
+    private byte[] jpeg;
+    private String imageBase64;
+
+    @Setup
+    public void setUp() throws IOException {
+        int width = Frames.width(megapixels);
+        int height = Frames.height(megapixels);
+        frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        System.arraycopy(Frames.synthetic(width, height), 0, data, 0, data.length);
+        jpeg = compressJpeg(scale(frame));
+        imageBase64 = Base64Encoder.encodeToString(jpeg);
+    }
+
+    // 原来的 bitmapToBase64 + buildRequestJson + toString
+    @Benchmark
+    public String stringBody() throws IOException, JSONException {
+        String base64 = Base64Encoder.encodeToString(compressJpeg(scale(frame)));
+        return RecognitionRequest.buildImageJson(base64).toString();
+    }
+
+    // ImageRequestBody.writeTo 的做法，写到一个只计数的流（相当于网络连接）
+    @Benchmark
+    public long streamingBody() throws IOException {
+        final BufferedImage scaled = scale(frame);
+        CountingStream sink = new CountingStream();
+        RecognitionRequest.writeImageJson(sink, out -> writeJpeg(scaled, out), Long.MAX_VALUE);
+        return sink.count;
+    }
+
+    // 只有 Base64 编码
+    @Benchmark
+    public String base64() {
+        return Base64Encoder.encodeToString(jpeg);
+    }
+
+    // buildRequestJson 并序列化为请求体字符串
+    @Benchmark
+    public String buildRequestJson() throws JSONException {
+        return RecognitionRequest.buildImageJson(imageBase64).toString();
+    }
+
+    private static BufferedImage scale(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width <= MAX_EDGE && height <= MAX_EDGE) {
+            return source;
+        }
+        float scale = Math.min((float) MAX_EDGE / width, (float) MAX_EDGE / height);
+        int newWidth = Math.round(width * scale);
+        int newHeight = Math.round(height * scale);
+        BufferedImage scaled = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, newWidth, newHeight, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static byte[] compressJpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeJpeg(image, bytes);
+        return bytes.toByteArray();
+    }
+
+    private static void writeJpeg(BufferedImage image, OutputStream target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.myapplication2.imaging;
+
+// 可分离的盒式模糊：水平、垂直各一遍，使用滑动窗口累加和
+// 每个像素的计算量与半径无关；叠加三次盒式模糊可近似高斯模糊
+// 像素格式为 ARGB_8888 的 int[]，边缘按最近像素延伸
+public class BoxBlur {
+
+    // 除法改为乘法再右移
+    private static final int DIV_SHIFT = 24;
+
+    private BoxBlur() {
+    }
+
+    // 单次盒式模糊，结果写回 pixels；scratch 至少 width * height
+    // 水平方向按行条带、垂直方向按列带交给 TileExecutor 并行
+    public static void box(final int[] pixels, final int[] scratch,
+                           final int width, final int height, final int radius) {
+        checkArgs(pixels, scratch, width, height);
+        if (radius <= 0) {
+            return;
+        }
+        TileExecutor.forEachStrip(width, height, 0,
+                (rowStart, rowEnd) -> blurRows(pixels, scratch, width, height, radius, rowStart, rowEnd));
+        TileExecutor.forEachColumnBand(width, height,
+                (colStart, colEnd) -> blurColumns(scratch, pixels, width, height, radius, colStart, colEnd));
+    }
+
+    // 三次盒式模糊近似标准差为 sigma 的高斯模糊
+    public static void gaussian(int[] pixels, int[] scratch, int width, int height, float sigma) {
+        checkArgs(pixels, scratch, width, height);
+        for (int radius : gaussianRadii(sigma, 3)) {
+            box(pixels, scratch, width, height, radius);
+        }
+    }
+
+    // 计算 n 次盒式模糊的半径，使其方差之和等于 sigma^2
+    public static int[] gaussianRadii(float sigma, int n) {
+        int[] radii = new int[n];
+        if (sigma <= 0) {
+            return radii;
+        }
+        double wIdeal = Math.sqrt(12.0 * sigma * sigma / n + 1);
+        int wl = (int) Math.floor(wIdeal);
+        if (wl % 2 == 0) {
+            wl--;
+        }
+        int wu = wl + 2;
+        double mIdeal = (12.0 * sigma * sigma - n * wl * wl - 4.0 * n * wl - 3.0 * n) / (-4.0 * wl - 4);
+        long m = Math.round(mIdeal);
+        for (int i = 0; i < n; i++) {
+            int size = i < m ? wl : wu;
+            radii[i] = (size - 1) / 2;
+        }
+        return radii;
+    }
+
+    // 水平方向：对 [rowStart, rowEnd) 行从 src 读取、写入 dst
+    public static void blurRows(int[] src, int[] dst, int width, int height, int radius,
+                                int rowStart, int rowEnd) {
+        blurRows(src, 0, dst, 0, width, height, radius, rowStart, rowEnd);
+    }
+
+    // 同上，图像分别从 srcOffset / dstOffset 开始存放
+    public static void blurRows(int[] src, int srcOffset, int[] dst, int dstOffset,
+                                int width, int height, int radius, int rowStart, int rowEnd) {
+        final int window = radius * 2 + 1;
+        final long mul = (1L << DIV_SHIFT) / window;
+        final long round = 1L << (DIV_SHIFT - 1);
+        final int last = width - 1;
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            final int row = srcOffset + y * width;
+            final int outRow = dstOffset + y * width;
+
+            // 初始化窗口 [-radius, radius]，越界部分取边缘像素
+            int p = src[row];
+            int sa = (p >>> 24) * (radius + 1);
+            int sr = ((p >> 16) & 0xFF) * (radius + 1);
+            int sg = ((p >> 8) & 0xFF) * (radius + 1);
+            int sb = (p & 0xFF) * (radius + 1);
+            for (int i = 1; i <= radius; i++) {
+                p = src[row + Math.min(i, last)];
+                sa += p >>> 24;
+                sr += (p >> 16) & 0xFF;
+                sg += (p >> 8) & 0xFF;
+                sb += p & 0xFF;
+            }
+
+            for (int x = 0; x < width; x++) {
+                dst[outRow + x] = pack(sa, sr, sg, sb, mul, round);
+
+                int in = src[row + Math.min(x + radius + 1, last)];
+                int out = src[row + Math.max(x - radius, 0)];
+                sa += (in >>> 24) - (out >>> 24);
+                sr += ((in >> 16) & 0xFF) - ((out >> 16) & 0xFF);
+                sg += ((in >> 8) & 0xFF) - ((out >> 8) & 0xFF);
+                sb += (in & 0xFF) - (out & 0xFF);
+            }
+        }
+    }
+
+    // 垂直方向：对 [colStart, colEnd) 列从 src 读取、写入 dst
+    // 按行顺序推进各列的累加和，访问是连续的，对缓存友好
+    public static void blurColumns(int[] src, int[] dst, int width, int height, int radius,
+                                   int colStart, int colEnd) {
+        blurColumns(src, 0, dst, 0, width, height, radius, colStart, colEnd);
+    }
+
+    // 同上，图像分别从 srcOffset / dstOffset 开始存放
+    public static void blurColumns(int[] src, int srcOffset, int[] dst, int dstOffset,
+                                   int width, int height, int radius, int colStart, int colEnd) {
+        final int window = radius * 2 + 1;
+        final long mul = (1L << DIV_SHIFT) / window;
+        final long round = 1L << (DIV_SHIFT - 1);
+        final int last = height - 1;
+        final int cols = colEnd - colStart;
+
+        // 四个通道的列累加和从 BufferPool 借，借到的数组可能更长，只用前 cols 个
+        BufferPool pool = BufferPool.shared();
+        int[] sa = pool.acquireInts(cols);
+        int[] sr = pool.acquireInts(cols);
+        int[] sg = pool.acquireInts(cols);
+        int[] sb = pool.acquireInts(cols);
+        try {
+            for (int c = 0; c < cols; c++) {
+                int p = src[srcOffset + colStart + c];
+                sa[c] = (p >>> 24) * (radius + 1);
+                sr[c] = ((p >> 16) & 0xFF) * (radius + 1);
+                sg[c] = ((p >> 8) & 0xFF) * (radius + 1);
+                sb[c] = (p & 0xFF) * (radius + 1);
+            }
+            for (int i = 1; i <= radius; i++) {
+                int row = srcOffset + Math.min(i, last) * width + colStart;
+                for (int c = 0; c < cols; c++) {
+                    int p = src[row + c];
+                    sa[c] += p >>> 24;
+                    sr[c] += (p >> 16) & 0xFF;
+                    sg[c] += (p >> 8) & 0xFF;
+                    sb[c] += p & 0xFF;
+                }
+            }
+
+            for (int y = 0; y < height; y++) {
+                int outRow = dstOffset + y * width + colStart;
+                int inRow = srcOffset + Math.min(y + radius + 1, last) * width + colStart;
+                int oldRow = srcOffset + Math.max(y - radius, 0) * width + colStart;
+                for (int c = 0; c < cols; c++) {
+                    dst[outRow + c] = pack(sa[c], sr[c], sg[c], sb[c], mul, round);
+
+                    int in = src[inRow + c];
+                    int out = src[oldRow + c];
+                    sa[c] += (in >>> 24) - (out >>> 24);
+                    sr[c] += ((in >> 16) & 0xFF) - ((out >> 16) & 0xFF);
+                    sg[c] += ((in >> 8) & 0xFF) - ((out >> 8) & 0xFF);
+                    sb[c] += (in & 0xFF) - (out & 0xFF);
+                }
+            }
+        } finally {
+            pool.releaseInts(sb);
+            pool.releaseInts(sg);
+            pool.releaseInts(sr);
+            pool.releaseInts(sa);
+        }
+    }
+
+    private static int pack(int sa, int sr, int sg, int sb, long mul, long round) {
+        int a = (int) ((sa * mul + round) >>> DIV_SHIFT);
+        int r = (int) ((sr * mul + round) >>> DIV_SHIFT);
+        int g = (int) ((sg * mul + round) >>> DIV_SHIFT);
+        int b = (int) ((sb * mul + round) >>> DIV_SHIFT);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static void checkArgs(int[] pixels, int[] scratch, int width, int height) {
+        int size = width * height;
+        if (pixels.length < size || scratch.length < size) {
+            throw new IllegalArgumentException("像素缓冲区小于 " + width + "x" + height);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.myapplication2.imaging;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// int[] / byte[] 临时缓冲池：按长度分桶，总字节数有上限，超出时按最久未用淘汰
+// 借出的数组长度 >= 请求长度（最多多出 1/4），内容不清零
+public class BufferPool {
+
+    // 借出数组允许比请求长度多出的比例（1/4）
+    private static final int MAX_WASTE_SHIFT = 2;
+
+    private static final BufferPool SHARED =
+            new BufferPool(Runtime.getRuntime().maxMemory() / 8);
+
+    private final TreeMap<Integer, ArrayDeque<int[]>> ints = new TreeMap<>();
+    private final TreeMap<Integer, ArrayDeque<byte[]>> bytes = new TreeMap<>();
+    // 池中空闲数组，按归还顺序排列，值为占用字节数
+    private final LinkedHashMap<Object, Long> lru = new LinkedHashMap<>();
+
+    private long maxBytes;
+    private long currentBytes;
+    private long hits;
+    private long misses;
+
+    public BufferPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // 进程内共享的缓冲池，默认上限为最大堆内存的 1/8
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    // ========== int[] ==========
+
+    public int[] acquireInts(int minLength) {
+        int[] buffer;
+        synchronized (this) {
+            buffer = take(ints, minLength);
+        }
+        return buffer != null ? buffer : new int[minLength];
+    }
+
+    public void releaseInts(int[] buffer) {
+        if (buffer != null) {
+            synchronized (this) {
+                put(ints, buffer.length, buffer, (long) buffer.length * 4);
+            }
+        }
+    }
+
+    // ========== byte[] ==========
+
+    public byte[] acquireBytes(int minLength) {
+        byte[] buffer;
+        synchronized (this) {
+            buffer = take(bytes, minLength);
+        }
+        return buffer != null ? buffer : new byte[minLength];
+    }
+
+    public void releaseBytes(byte[] buffer) {
+        if (buffer != null) {
+            synchronized (this) {
+                put(bytes, buffer.length, buffer, buffer.length);
+            }
+        }
+    }
+
+    // ========== 维护 ==========
+
+    // 淘汰最久未用的数组，直到总字节数不超过 size
+    public synchronized void trimToSize(long size) {
+        Iterator<Map.Entry<Object, Long>> it = lru.entrySet().iterator();
+        while (currentBytes > size && it.hasNext()) {
+            Map.Entry<Object, Long> entry = it.next();
+            Object buffer = entry.getKey();
+            if (buffer instanceof int[]) {
+                removeFromBucket(ints, ((int[]) buffer).length, buffer);
+            } else {
+                removeFromBucket(bytes, ((byte[]) buffer).length, buffer);
+            }
+            currentBytes -= entry.getValue();
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BufferPool{" + (currentBytes / 1024) + "KB/" + (maxBytes / 1024) + "KB"
+                + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+
+    private <T> T take(TreeMap<Integer, ArrayDeque<T>> buckets, int minLength) {
+        int maxLength = minLength + (minLength >> MAX_WASTE_SHIFT);
+        for (Map.Entry<Integer, ArrayDeque<T>> entry
+                : buckets.subMap(minLength, true, maxLength, true).entrySet()) {
+            T buffer = entry.getValue().pollLast();
+            if (buffer != null) {
+                if (entry.getValue().isEmpty()) {
+                    buckets.remove(entry.getKey());
+                }
+                currentBytes -= lru.remove(buffer);
+                hits++;
+                return buffer;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    private <T> void put(TreeMap<Integer, ArrayDeque<T>> buckets, int length, T buffer, long size) {
+        if (size > maxBytes || lru.containsKey(buffer)) {
+            return;
+        }
+        ArrayDeque<T> bucket = buckets.get(length);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(length, bucket);
+        }
+        bucket.addLast(buffer);
+        lru.put(buffer, size);
+        currentBytes += size;
+        trimToSize(maxBytes);
+    }
+
+    private <T> void removeFromBucket(TreeMap<Integer, ArrayDeque<T>> buckets, int length, Object buffer) {
+        ArrayDeque<T> bucket = buckets.get(length);
+        if (bucket != null) {
+            // 数组没有重写 equals，remove 按引用比较
+            bucket.remove(buffer);
+            if (bucket.isEmpty()) {
+                buckets.remove(length);
+            }
+        }
+    }
+}
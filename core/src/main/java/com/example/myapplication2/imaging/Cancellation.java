@@ -0,0 +1,10 @@
+package com.example.myapplication2.imaging;
+
+// 协作式取消：耗时的处理在各步骤之间检查，已取消时抛出 CancellationException 尽早放弃
+public interface Cancellation {
+
+    // 不会被取消
+    Cancellation NONE = () -> false;
+
+    boolean isCancelled();
+}
@@ -0,0 +1,245 @@
+package com.example.myapplication2.imaging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// 颜色变换链：把多个 5x4 颜色矩阵按顺序合成为一个矩阵，再对像素做一次遍历
+// 矩阵格式与 android.graphics.ColorMatrix 相同（行优先，R/G/B/A 四行，每行 a b c d e）
+public class ColorChain {
+
+    // 定点数精度（14位小数）
+    private static final int SHIFT = 14;
+    private static final int ONE = 1 << SHIFT;
+    private static final int HALF = 1 << (SHIFT - 1);
+    // 系数上限，保证 4 项乘积加偏移量不会溢出 int
+    private static final float MAX_COEFF = 64f;
+
+    // 单个颜色操作
+    public static class Op {
+        final String name;
+        final float[] matrix;
+
+        Op(String name, float[] matrix) {
+            this.name = name;
+            this.matrix = matrix;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final List<Op> ops = new ArrayList<>();
+
+    public ColorChain() {
+    }
+
+    public ColorChain(Op... ops) {
+        for (Op op : ops) {
+            then(op);
+        }
+    }
+
+    // 追加一个操作，返回自身便于链式调用
+    public ColorChain then(Op op) {
+        if (op == null) {
+            throw new IllegalArgumentException("op == null");
+        }
+        ops.add(op);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return ops.isEmpty();
+    }
+
+    public List<Op> getOps() {
+        return Collections.unmodifiableList(ops);
+    }
+
+    // ========== 常用操作 ==========
+
+    // 灰度化
+    public static Op grayscale() {
+        return new Op("grayscale", saturationMatrix(0f));
+    }
+
+    // 饱和度调整
+    public static Op saturation(float saturation) {
+        return new Op("saturation(" + saturation + ")", saturationMatrix(saturation));
+    }
+
+    // 怀旧效果：棕褐色调后降低饱和度
+    public static Op sepia() {
+        float[] scale = scaleMatrix(1f, 0.95f, 0.82f, 1.0f);
+        return new Op("sepia", concat(saturationMatrix(0.5f), scale));
+    }
+
+    // 反色
+    public static Op invert() {
+        return new Op("invert", new float[] {
+                -1, 0, 0, 0, 255,
+                0, -1, 0, 0, 255,
+                0, 0, -1, 0, 255,
+                0, 0, 0, 1, 0
+        });
+    }
+
+    // 亮度调整（按比例缩放 RGB）
+    public static Op brightness(float brightness) {
+        return new Op("brightness(" + brightness + ")",
+                scaleMatrix(brightness, brightness, brightness, 1f));
+    }
+
+    // 对比度调整（以 128 为中心拉伸）
+    public static Op contrast(float contrast) {
+        float translate = (1 - contrast) / 2 * 255;
+        return new Op("contrast(" + contrast + ")", new float[] {
+                contrast, 0, 0, 0, translate,
+                0, contrast, 0, 0, translate,
+                0, 0, contrast, 0, translate,
+                0, 0, 0, 1, 0
+        });
+    }
+
+    // 任意 5x4 矩阵
+    public static Op custom(String name, float[] matrix) {
+        if (matrix == null || matrix.length != 20) {
+            throw new IllegalArgumentException("颜色矩阵必须是 20 个元素");
+        }
+        return new Op(name, matrix.clone());
+    }
+
+    // ========== 矩阵合成 ==========
+
+    // 把整条链折叠成一个矩阵（先执行的在右侧）
+    public float[] compose() {
+        float[] result = identity();
+        for (Op op : ops) {
+            result = concat(op.matrix, result);
+        }
+        return result;
+    }
+
+    // 返回 a * b，即先应用 b 再应用 a
+    static float[] concat(float[] a, float[] b) {
+        float[] out = new float[20];
+        for (int row = 0; row < 4; row++) {
+            int r = row * 5;
+            for (int col = 0; col < 5; col++) {
+                out[r + col] = a[r] * b[col]
+                        + a[r + 1] * b[5 + col]
+                        + a[r + 2] * b[10 + col]
+                        + a[r + 3] * b[15 + col];
+            }
+            out[r + 4] += a[r + 4];
+        }
+        return out;
+    }
+
+    static float[] identity() {
+        return scaleMatrix(1f, 1f, 1f, 1f);
+    }
+
+    private static float[] scaleMatrix(float r, float g, float b, float a) {
+        float[] m = new float[20];
+        m[0] = r;
+        m[6] = g;
+        m[12] = b;
+        m[18] = a;
+        return m;
+    }
+
+    // 与 ColorMatrix.setSaturation 相同的系数
+    private static float[] saturationMatrix(float sat) {
+        float invSat = 1 - sat;
+        float r = 0.213f * invSat;
+        float g = 0.715f * invSat;
+        float b = 0.072f * invSat;
+        return new float[] {
+                r + sat, g, b, 0, 0,
+                r, g + sat, b, 0, 0,
+                r, g, b + sat, 0, 0,
+                0, 0, 0, 1, 0
+        };
+    }
+
+    // ========== 像素处理 ==========
+
+    // 编译后的定点矩阵，可在多个线程间共享
+    public static class Compiled {
+        private final int[] coeffs = new int[20];
+        private final boolean alphaIdentity;
+
+        Compiled(float[] m) {
+            for (int i = 0; i < 20; i++) {
+                float v = m[i];
+                if (i % 5 == 4) {
+                    // 偏移量同时加上舍入量
+                    coeffs[i] = Math.round(v * ONE) + HALF;
+                } else {
+                    v = Math.max(-MAX_COEFF, Math.min(MAX_COEFF, v));
+                    coeffs[i] = Math.round(v * ONE);
+                }
+            }
+            alphaIdentity = m[15] == 0 && m[16] == 0 && m[17] == 0
+                    && m[18] == 1 && m[19] == 0;
+        }
+
+        // 对整帧原地应用，按行条带并行
+        public void applyFrame(final int[] pixels, final int width, int height) {
+            TileExecutor.forEachStrip(width, height, 0,
+                    (rowStart, rowEnd) -> apply(pixels, rowStart * width, (rowEnd - rowStart) * width));
+        }
+
+        // 对 pixels[offset, offset+count) 原地应用（ARGB_8888，非预乘）
+        public void apply(int[] pixels, int offset, int count) {
+            apply(pixels, offset, pixels, offset, count);
+        }
+
+        public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            final int[] c = coeffs;
+            final int c0 = c[0], c1 = c[1], c2 = c[2], c3 = c[3], c4 = c[4];
+            final int c5 = c[5], c6 = c[6], c7 = c[7], c8 = c[8], c9 = c[9];
+            final int c10 = c[10], c11 = c[11], c12 = c[12], c13 = c[13], c14 = c[14];
+            final int c15 = c[15], c16 = c[16], c17 = c[17], c18 = c[18], c19 = c[19];
+            final boolean keepAlpha = alphaIdentity;
+
+            for (int i = 0; i < count; i++) {
+                int p = src[srcOffset + i];
+                int a = p >>> 24;
+                int r = (p >> 16) & 0xFF;
+                int g = (p >> 8) & 0xFF;
+                int b = p & 0xFF;
+
+                int nr = (c0 * r + c1 * g + c2 * b + c3 * a + c4) >> SHIFT;
+                int ng = (c5 * r + c6 * g + c7 * b + c8 * a + c9) >> SHIFT;
+                int nb = (c10 * r + c11 * g + c12 * b + c13 * a + c14) >> SHIFT;
+                int na = keepAlpha ? a : (c15 * r + c16 * g + c17 * b + c18 * a + c19) >> SHIFT;
+
+                nr = nr < 0 ? 0 : (nr > 255 ? 255 : nr);
+                ng = ng < 0 ? 0 : (ng > 255 ? 255 : ng);
+                nb = nb < 0 ? 0 : (nb > 255 ? 255 : nb);
+                na = na < 0 ? 0 : (na > 255 ? 255 : na);
+
+                dst[dstOffset + i] = (na << 24) | (nr << 16) | (ng << 8) | nb;
+            }
+        }
+    }
+
+    // 合成并编译为定点矩阵
+    public Compiled compile() {
+        return new Compiled(compose());
+    }
+
+    @Override
+    public String toString() {
+        return ops.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.myapplication2.imaging;
+
+// 按目标尺寸解码的参数：先取不低于目标尺寸的最大 2 的幂采样（解码器内部完成，最省内存），
+// 剩余的缩放交给密度缩放（inDensity / inTargetDensity），使输出刚好落在目标尺寸上
+public final class DecodeTarget {
+    public final int sampleSize;
+    // 两者都为 0 时不需要密度缩放
+    public final int density;
+    public final int targetDensity;
+
+    private DecodeTarget(int sampleSize, int density, int targetDensity) {
+        this.sampleSize = sampleSize;
+        this.density = density;
+        this.targetDensity = targetDensity;
+    }
+
+    // srcWidth / srcHeight 为按显示方向（旋转后）的原图尺寸；尺寸未知时不缩放
+    public static DecodeTarget compute(int srcWidth, int srcHeight, int maxWidth, int maxHeight) {
+        if (srcWidth <= 0 || srcHeight <= 0) {
+            return new DecodeTarget(1, 0, 0);
+        }
+
+        // 以限制更紧的一边为准
+        boolean widthLimited = (long) srcWidth * maxHeight >= (long) srcHeight * maxWidth;
+        int srcEdge = widthLimited ? srcWidth : srcHeight;
+        int targetEdge = widthLimited ? maxWidth : maxHeight;
+
+        int sample = 1;
+        while (srcEdge / (sample * 2) >= targetEdge) {
+            sample *= 2;
+        }
+        int sampledEdge = srcEdge / sample;
+        return sampledEdge > targetEdge
+                ? new DecodeTarget(sample, sampledEdge, targetEdge)
+                : new DecodeTarget(sample, 0, 0);
+    }
+
+    public boolean isScaled() {
+        return density > 0;
+    }
+
+    // 解码输出的尺寸（与 BitmapFactory 一致：采样向上取整，密度缩放四舍五入）
+    public int outputSize(int srcSize) {
+        int sampled = (srcSize + sampleSize - 1) / sampleSize;
+        return isScaled() ? (int) (sampled * ((float) targetDensity / density) + 0.5f) : sampled;
+    }
+
+    @Override
+    public String toString() {
+        return "inSampleSize=" + sampleSize + ", 缩放=" + (isScaled() ? targetDensity + "/" + density : "无");
+    }
+}
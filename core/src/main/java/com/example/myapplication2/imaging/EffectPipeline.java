@@ -0,0 +1,129 @@
+package com.example.myapplication2.imaging;
+
+import java.util.concurrent.CancellationException;
+
+// 在 int[] 帧上按顺序执行效果链，不依赖 Android，设备上和 JVM 基准测试中走同一份代码
+// 相邻的颜色类效果合并成一个矩阵，一次遍历完成
+public class EffectPipeline {
+
+    // 默认模糊强度（高斯标准差，像素）
+    public static final float DEFAULT_BLUR_SIGMA = 6f;
+    // 自动色阶两端各裁掉的像素比例
+    public static final float AUTO_LEVELS_CLIP = 0.005f;
+
+    private EffectPipeline() {
+    }
+
+    // 依次执行效果，返回保存结果的数组（pixels 或 spare）
+    // 效果链中有模糊或锐化时 spare 必须是同样大小的第二个缓冲，否则可以为 null
+    public static int[] run(int[] pixels, int[] spare, int width, int height, ProcessType... processTypes) {
+        return run(pixels, spare, width, height, Cancellation.NONE, processTypes);
+    }
+
+    // 同上，每个效果开始前检查 cancellation，已取消时抛出 CancellationException，数组内容不再有意义
+    public static int[] run(int[] pixels, int[] spare, int width, int height, Cancellation cancellation,
+                            ProcessType... processTypes) {
+        int[] current = pixels;
+        ColorChain pending = new ColorChain();
+
+        for (ProcessType processType : processTypes) {
+            checkCancelled(cancellation);
+            ColorChain.Op colorOp = toColorOp(processType);
+            if (colorOp != null) {
+                pending.then(colorOp);
+                continue;
+            }
+
+            // 遇到非颜色类效果，先把累积的颜色链一次性应用
+            if (!pending.isEmpty()) {
+                pending.compile().applyFrame(current, width, height);
+                pending = new ColorChain();
+            }
+
+            switch (processType) {
+                case BLUR:
+                    BoxBlur.gaussian(current, spare, width, height, DEFAULT_BLUR_SIGMA);
+                    break;
+                case SHARPEN:
+                    Sharpen.unsharpMask(current, spare, width, height, Sharpen.Params.defaults());
+                    int[] swap = current;
+                    current = spare;
+                    spare = swap;
+                    break;
+                case AUTO_LEVELS:
+                    LevelsLut.autoLevels(Histogram.compute(current, width, height), AUTO_LEVELS_CLIP, true)
+                            .applyFrame(current, width, height);
+                    break;
+                case AUTO_CONTRAST:
+                    LevelsLut.autoContrast(Histogram.compute(current, width, height), AUTO_LEVELS_CLIP, true)
+                            .applyFrame(current, width, height);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            checkCancelled(cancellation);
+            pending.compile().applyFrame(current, width, height);
+        }
+        return current;
+    }
+
+    public static void checkCancelled(Cancellation cancellation) {
+        if (cancellation != null && cancellation.isCancelled()) {
+            throw new CancellationException("处理已取消");
+        }
+    }
+
+    // 模糊、锐化需要第二个整帧缓冲
+    public static boolean needsSpareBuffer(ProcessType... processTypes) {
+        for (ProcessType processType : processTypes) {
+            if (processType == ProcessType.BLUR || processType == ProcessType.SHARPEN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 颜色类效果对应的矩阵，非颜色类返回 null
+    public static ColorChain.Op toColorOp(ProcessType processType) {
+        switch (processType) {
+            case GRAYSCALE:
+                return ColorChain.grayscale();
+            case SEPIA:
+                return ColorChain.sepia();
+            case INVERT:
+                return ColorChain.invert();
+            case BRIGHTNESS:
+                return ColorChain.brightness(1.2f);
+            case CONTRAST:
+                return ColorChain.contrast(1.5f);
+            default:
+                return null;
+        }
+    }
+
+    // 效果链及其参数的文本描述，用作缓存键
+    public static String describe(ProcessType... processTypes) {
+        StringBuilder sb = new StringBuilder();
+        for (ProcessType processType : processTypes) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            ColorChain.Op colorOp = toColorOp(processType);
+            if (colorOp != null) {
+                sb.append(colorOp.getName());
+            } else if (processType == ProcessType.BLUR) {
+                sb.append("blur(").append(DEFAULT_BLUR_SIGMA).append(')');
+            } else if (processType == ProcessType.SHARPEN) {
+                sb.append(Sharpen.Params.defaults());
+            } else if (processType == ProcessType.AUTO_LEVELS || processType == ProcessType.AUTO_CONTRAST) {
+                sb.append(processType.name()).append('(').append(AUTO_LEVELS_CLIP).append(",gamma)");
+            } else {
+                sb.append(processType.name());
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.myapplication2.imaging;
+
+// 亮度和 R/G/B 直方图，一次遍历得到；大图按步长抽样，只读不写
+public class Histogram {
+
+    // 抽样后最多统计的像素数，足够稳定地估计分布
+    private static final int MAX_SAMPLES = 512 * 1024;
+
+    public final int[] red = new int[256];
+    public final int[] green = new int[256];
+    public final int[] blue = new int[256];
+    public final int[] luma = new int[256];
+    private long count;
+
+    public long getCount() {
+        return count;
+    }
+
+    // 统计整帧，像素数超过 MAX_SAMPLES 时按行列等步长抽样
+    public static Histogram compute(int[] pixels, int width, int height) {
+        long total = (long) width * height;
+        int step = 1;
+        while (total / ((long) step * step) > MAX_SAMPLES) {
+            step++;
+        }
+        return compute(pixels, width, height, step);
+    }
+
+    // 每隔 step 行、step 列统计一个像素，各条带先统计到局部数组再合并
+    public static Histogram compute(final int[] pixels, final int width, int height, final int step) {
+        final Histogram result = new Histogram();
+        TileExecutor.forEachStrip(width, height, 0, (rowStart, rowEnd) -> {
+            Histogram local = new Histogram();
+            int firstRow = (rowStart + step - 1) / step * step;
+            for (int y = firstRow; y < rowEnd; y += step) {
+                int row = y * width;
+                for (int x = 0; x < width; x += step) {
+                    local.add(pixels[row + x]);
+                }
+            }
+            synchronized (result) {
+                result.merge(local);
+            }
+        });
+        return result;
+    }
+
+    // 与 ColorMatrix 灰度系数接近的整数亮度
+    public static int luma(int r, int g, int b) {
+        return (r * 77 + g * 150 + b * 29) >> 8;
+    }
+
+    // 累计比例达到 fraction 时的最小取值
+    public static int percentile(int[] histogram, long count, float fraction) {
+        // 最多取到 count - 1，否则 fraction 为 1 时总是返回 255 而不是最大值
+        long target = Math.min((long) Math.ceil(count * fraction), count - 1);
+        long sum = 0;
+        for (int v = 0; v < 256; v++) {
+            sum += histogram[v];
+            if (sum > target) {
+                return v;
+            }
+        }
+        return 255;
+    }
+
+    // 平均值（0-255）
+    public static float mean(int[] histogram, long count) {
+        if (count == 0) {
+            return 127.5f;
+        }
+        long sum = 0;
+        for (int v = 0; v < 256; v++) {
+            sum += (long) histogram[v] * v;
+        }
+        return (float) sum / count;
+    }
+
+    private void add(int p) {
+        int r = (p >> 16) & 0xFF;
+        int g = (p >> 8) & 0xFF;
+        int b = p & 0xFF;
+        red[r]++;
+        green[g]++;
+        blue[b]++;
+        luma[luma(r, g, b)]++;
+        count++;
+    }
+
+    private void merge(Histogram other) {
+        for (int v = 0; v < 256; v++) {
+            red[v] += other.red[v];
+            green[v] += other.green[v];
+            blue[v] += other.blue[v];
+            luma[v] += other.luma[v];
+        }
+        count += other.count;
+    }
+}
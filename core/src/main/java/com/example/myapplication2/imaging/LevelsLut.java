@@ -0,0 +1,136 @@
+package com.example.myapplication2.imaging;
+
+// 按通道的 256 项查找表：每个像素只需三次查表
+// 由直方图生成自动色阶 / 自动对比度，可附带自动 gamma 把平均亮度拉到中间调
+public class LevelsLut {
+
+    // 自动 gamma 的取值范围，避免极端画面被过度提亮或压暗
+    private static final float MIN_GAMMA = 0.4f;
+    private static final float MAX_GAMMA = 2.5f;
+
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+
+    public LevelsLut(int[] red, int[] green, int[] blue) {
+        if (red.length != 256 || green.length != 256 || blue.length != 256) {
+            throw new IllegalArgumentException("查找表必须是 256 项");
+        }
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+    }
+
+    // 各通道分别拉伸：按 clip 比例裁掉两端后映射到 0-255
+    public static LevelsLut autoLevels(Histogram histogram, float clip, boolean autoGamma) {
+        long count = histogram.getCount();
+        int[] r = stretch(histogram.red, count, clip);
+        int[] g = stretch(histogram.green, count, clip);
+        int[] b = stretch(histogram.blue, count, clip);
+        if (autoGamma) {
+            float gamma = autoGamma(histogram.luma, count, luma(r, g, b));
+            r = applyGamma(r, gamma);
+            g = applyGamma(g, gamma);
+            b = applyGamma(b, gamma);
+        }
+        return new LevelsLut(r, g, b);
+    }
+
+    // 三个通道使用同一条由亮度得到的曲线，不改变色相
+    public static LevelsLut autoContrast(Histogram histogram, float clip, boolean autoGamma) {
+        long count = histogram.getCount();
+        int[] curve = stretch(histogram.luma, count, clip);
+        if (autoGamma) {
+            curve = applyGamma(curve, autoGamma(histogram.luma, count, curve));
+        }
+        return new LevelsLut(curve, curve, curve);
+    }
+
+    // 固定 gamma 曲线
+    public static LevelsLut gamma(float gamma) {
+        int[] identity = new int[256];
+        for (int v = 0; v < 256; v++) {
+            identity[v] = v;
+        }
+        int[] curve = applyGamma(identity, gamma);
+        return new LevelsLut(curve, curve, curve);
+    }
+
+    // 对整帧原地应用，按行条带并行
+    public void applyFrame(final int[] pixels, final int width, int height) {
+        TileExecutor.forEachStrip(width, height, 0,
+                (rowStart, rowEnd) -> apply(pixels, rowStart * width, (rowEnd - rowStart) * width));
+    }
+
+    // 对 pixels[offset, offset+count) 原地应用，保留 alpha
+    public void apply(int[] pixels, int offset, int count) {
+        final int[] r = red;
+        final int[] g = green;
+        final int[] b = blue;
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            int p = pixels[i];
+            pixels[i] = (p & 0xFF000000)
+                    | (r[(p >> 16) & 0xFF] << 16)
+                    | (g[(p >> 8) & 0xFF] << 8)
+                    | b[p & 0xFF];
+        }
+    }
+
+    private static int[] stretch(int[] histogram, long count, float clip) {
+        int low = Histogram.percentile(histogram, count, clip);
+        int high = Histogram.percentile(histogram, count, 1f - clip);
+        int[] lut = new int[256];
+        if (high <= low) {
+            // 几乎单一颜色，保持不变
+            for (int v = 0; v < 256; v++) {
+                lut[v] = v;
+            }
+            return lut;
+        }
+        int range = high - low;
+        for (int v = 0; v < 256; v++) {
+            int mapped = ((v - low) * 255 + range / 2) / range;
+            lut[v] = mapped < 0 ? 0 : (mapped > 255 ? 255 : mapped);
+        }
+        return lut;
+    }
+
+    // 选取 gamma 使拉伸后的平均亮度接近 128
+    private static float autoGamma(int[] lumaHistogram, long count, int[] curve) {
+        if (count == 0) {
+            return 1f;
+        }
+        long sum = 0;
+        for (int v = 0; v < 256; v++) {
+            sum += (long) lumaHistogram[v] * curve[v];
+        }
+        double mean = (double) sum / count / 255.0;
+        if (mean <= 0.001 || mean >= 0.999) {
+            return 1f;
+        }
+        double gamma = Math.log(0.5) / Math.log(mean);
+        return (float) Math.max(MIN_GAMMA, Math.min(MAX_GAMMA, gamma));
+    }
+
+    // out = 255 * (in / 255) ^ gamma
+    private static int[] applyGamma(int[] lut, float gamma) {
+        if (gamma == 1f) {
+            return lut;
+        }
+        int[] out = new int[256];
+        for (int v = 0; v < 256; v++) {
+            out[v] = (int) Math.round(255.0 * Math.pow(lut[v] / 255.0, gamma));
+        }
+        return out;
+    }
+
+    // 拉伸后按亮度近似的单条曲线，用于估计 gamma
+    private static int[] luma(int[] r, int[] g, int[] b) {
+        int[] out = new int[256];
+        for (int v = 0; v < 256; v++) {
+            out[v] = Histogram.luma(r[v], g[v], b[v]);
+        }
+        return out;
+    }
+}
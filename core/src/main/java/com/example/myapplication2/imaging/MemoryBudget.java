@@ -0,0 +1,144 @@
+package com.example.myapplication2.imaging;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 位图内存预算：按阶段统计占用的字节数，总量有上限
+// 计数只是原子加减，不加锁，也不会在计数时触发释放；
+// 新的大块分配前由调用方调用 makeRoom，超过高水位（上限的 3/4）时按登记顺序让释放者腾出空间，
+// 仍然放不下时由调用方降级（例如缩小解码尺寸）
+public class MemoryBudget {
+
+    // 占用内存的阶段
+    public enum Gauge {
+        DECODE,         // 正在处理的解码位图
+        PROCESSED,      // 处理结果（当前照片、内存缓存共享）
+        PREVIEW,        // 界面预览
+        UPLOAD_SCALE,   // 上传前缩放出的临时位图
+        POOL            // 位图池中闲置可复用的位图
+    }
+
+    public enum Level {
+        NORMAL,
+        HIGH,       // 超过高水位
+        CRITICAL    // 超过上限
+    }
+
+    // 释放者：尽量释放 bytes 字节，例如清理池和缓存；在调用 makeRoom 的线程上执行
+    public interface Reclaimer {
+        void reclaim(long bytes);
+    }
+
+    private final AtomicLongArray gauges = new AtomicLongArray(Gauge.values().length);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+    private final CopyOnWriteArrayList<Reclaimer> reclaimers = new CopyOnWriteArrayList<>();
+    private volatile long limit;
+
+    public MemoryBudget(long limit) {
+        setLimit(limit);
+    }
+
+    public void setLimit(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("内存上限无效: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    // 先登记的先执行，应把代价小的（闲置的池）放在前面
+    // 释放者只把字节移到别的阶段时（例如淘汰缓存后位图归还池）总量不变，需要在后面再登记一个真正释放的
+    public void addReclaimer(Reclaimer reclaimer) {
+        reclaimers.add(reclaimer);
+    }
+
+    public void charge(Gauge gauge, long bytes) {
+        gauges.addAndGet(gauge.ordinal(), bytes);
+        updatePeak(total.addAndGet(bytes));
+    }
+
+    public void discharge(Gauge gauge, long bytes) {
+        gauges.addAndGet(gauge.ordinal(), -bytes);
+        total.addAndGet(-bytes);
+    }
+
+    // 由持有方自己统计总量的阶段（例如位图池）直接设置当前值
+    public void set(Gauge gauge, long bytes) {
+        long old = gauges.getAndSet(gauge.ordinal(), bytes);
+        updatePeak(total.addAndGet(bytes - old));
+    }
+
+    public long get(Gauge gauge) {
+        return gauges.get(gauge.ordinal());
+    }
+
+    public long total() {
+        return total.get();
+    }
+
+    public long peak() {
+        return peak.get();
+    }
+
+    public Level level() {
+        long used = total.get();
+        if (used >= limit) {
+            return Level.CRITICAL;
+        }
+        return used >= highWater() ? Level.HIGH : Level.NORMAL;
+    }
+
+    // 准备新分配 bytes 字节：分配后会超过高水位时依次调用释放者，直到回到高水位以下
+    // 返回分配后是否仍在上限以内；返回 false 时调用方应降级
+    public boolean makeRoom(long bytes) {
+        for (Reclaimer reclaimer : reclaimers) {
+            long before = total.get();
+            long excess = before + bytes - highWater();
+            if (excess <= 0) {
+                break;
+            }
+            reclaimer.reclaim(excess);
+            long freed = before - total.get();
+            if (freed > 0) {
+                reclaimed.addAndGet(freed);
+            }
+        }
+        if (total.get() + bytes <= limit) {
+            return true;
+        }
+        denied.incrementAndGet();
+        return false;
+    }
+
+    // 例如 "MemoryBudget{used=12288KB/49152KB, peak=30720KB, DECODE=0KB, ..., reclaimed=8192KB, denied=1}"
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MemoryBudget{used=")
+                .append(total.get() / 1024).append("KB/").append(limit / 1024).append("KB")
+                .append(", peak=").append(peak.get() / 1024).append("KB");
+        for (Gauge gauge : Gauge.values()) {
+            sb.append(", ").append(gauge.name()).append('=').append(get(gauge) / 1024).append("KB");
+        }
+        return sb.append(", reclaimed=").append(reclaimed.get() / 1024).append("KB")
+                .append(", denied=").append(denied.get()).append('}').toString();
+    }
+
+    private long highWater() {
+        long current = limit;
+        return current - current / 4;
+    }
+
+    private void updatePeak(long used) {
+        long current;
+        while (used > (current = peak.get()) && !peak.compareAndSet(current, used)) {
+            // 其他线程更新了峰值，重新比较
+        }
+    }
+}
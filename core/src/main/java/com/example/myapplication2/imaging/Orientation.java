@@ -0,0 +1,119 @@
+package com.example.myapplication2.imaging;
+
+// EXIF 方向变换：在 int[] 上做精确的转置 / 翻转（无插值），支持全部 8 种方向
+// 按输出行条带并行，条带内再按 32 列分块，使源图的跨行读取也落在缓存内
+// 可同时传入一个颜色矩阵，在条带写完后立即处理，省去单独的一遍内存遍历
+public class Orientation {
+
+    // 与 ExifInterface.ORIENTATION_* 取值相同
+    public static final int UNDEFINED = 0;
+    public static final int NORMAL = 1;
+    public static final int FLIP_HORIZONTAL = 2;
+    public static final int ROTATE_180 = 3;
+    public static final int FLIP_VERTICAL = 4;
+    public static final int TRANSPOSE = 5;
+    public static final int ROTATE_90 = 6;
+    public static final int TRANSVERSE = 7;
+    public static final int ROTATE_270 = 8;
+
+    // 分块宽度（像素）
+    private static final int BLOCK = 32;
+
+    private Orientation() {
+    }
+
+    // 是否需要像素变换
+    public static boolean needsTransform(int orientation) {
+        return orientation >= FLIP_HORIZONTAL && orientation <= ROTATE_270;
+    }
+
+    // 变换后宽高是否互换
+    public static boolean swapsDimensions(int orientation) {
+        return orientation >= TRANSPOSE && orientation <= ROTATE_270;
+    }
+
+    public static int orientedWidth(int orientation, int width, int height) {
+        return swapsDimensions(orientation) ? height : width;
+    }
+
+    public static int orientedHeight(int orientation, int width, int height) {
+        return swapsDimensions(orientation) ? width : height;
+    }
+
+    // 把 src（width x height）按 EXIF 方向变换到 dst，dst 不能与 src 相同
+    // fused 不为 null 时，对每个写完的输出条带立即应用该颜色矩阵
+    public static void transform(final int[] src, final int width, final int height, final int orientation,
+                                 final int[] dst, final ColorChain.Compiled fused) {
+        if (src == dst) {
+            throw new IllegalArgumentException("方向变换不支持原地处理");
+        }
+        final int outWidth = orientedWidth(orientation, width, height);
+        final int outHeight = orientedHeight(orientation, width, height);
+
+        // 输出像素 (x, y) 对应的源下标 = origin + x * stepX + y * stepY
+        final int lastRow = (height - 1) * width;
+        final int lastCol = width - 1;
+        final int origin;
+        final int stepX;
+        final int stepY;
+        switch (orientation) {
+            case FLIP_HORIZONTAL:
+                origin = lastCol;
+                stepX = -1;
+                stepY = width;
+                break;
+            case ROTATE_180:
+                origin = lastRow + lastCol;
+                stepX = -1;
+                stepY = -width;
+                break;
+            case FLIP_VERTICAL:
+                origin = lastRow;
+                stepX = 1;
+                stepY = -width;
+                break;
+            case TRANSPOSE:
+                origin = 0;
+                stepX = width;
+                stepY = 1;
+                break;
+            case ROTATE_90:
+                origin = lastRow;
+                stepX = -width;
+                stepY = 1;
+                break;
+            case TRANSVERSE:
+                origin = lastRow + lastCol;
+                stepX = -width;
+                stepY = -1;
+                break;
+            case ROTATE_270:
+                origin = lastCol;
+                stepX = width;
+                stepY = -1;
+                break;
+            default:
+                origin = 0;
+                stepX = 1;
+                stepY = width;
+                break;
+        }
+
+        TileExecutor.forEachStrip(outWidth, outHeight, 0, (rowStart, rowEnd) -> {
+            for (int x0 = 0; x0 < outWidth; x0 += BLOCK) {
+                int x1 = Math.min(x0 + BLOCK, outWidth);
+                for (int y = rowStart; y < rowEnd; y++) {
+                    int s = origin + x0 * stepX + y * stepY;
+                    int d = y * outWidth + x0;
+                    for (int x = x0; x < x1; x++) {
+                        dst[d++] = src[s];
+                        s += stepX;
+                    }
+                }
+            }
+            if (fused != null) {
+                fused.apply(dst, rowStart * outWidth, (rowEnd - rowStart) * outWidth);
+            }
+        });
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.myapplication2.imaging;
+
+// 差值哈希（dHash）：把亮度图按面积平均缩成 9x8，每行相邻两格比较得到 64 位
+// 对缩放、JPEG 压缩和整体亮度变化不敏感；两张图哈希的汉明距离越小越相似
+public class PerceptualHash {
+
+    private static final int COLS = 9;
+    private static final int ROWS = 8;
+    // 最多统计的像素数，足够得到稳定的格子平均值
+    private static final int MAX_SAMPLES = 64 * 1024;
+
+    private PerceptualHash() {
+    }
+
+    public static long dHash(int[] pixels, int width, int height) {
+        int step = 1;
+        while ((long) width * height / ((long) step * step) > MAX_SAMPLES) {
+            step++;
+        }
+
+        // 每列属于哪一格，避免在内层循环做除法
+        int[] cellX = new int[width];
+        for (int x = 0; x < width; x++) {
+            cellX[x] = x * COLS / width;
+        }
+        long[] sums = new long[COLS * ROWS];
+        int[] counts = new int[COLS * ROWS];
+        for (int y = 0; y < height; y += step) {
+            int rowCell = y * ROWS / height * COLS;
+            int row = y * width;
+            for (int x = 0; x < width; x += step) {
+                int p = pixels[row + x];
+                int cell = rowCell + cellX[x];
+                sums[cell] += Histogram.luma((p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLS - 1; c++) {
+                int left = r * COLS + c;
+                // 比较平均值 sums[left]/counts[left] < sums[left+1]/counts[left+1]，交叉相乘避免除法
+                hash <<= 1;
+                if (sums[left] * counts[left + 1] < sums[left + 1] * counts[left]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    // 两个哈希不同的位数（0-64）
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.myapplication2.imaging;
+
+// 图片效果
+public enum ProcessType {
+    GRAYSCALE,      // 灰度化
+    SEPIA,          // 怀旧效果
+    INVERT,         // 反色
+    BLUR,           // 模糊
+    SHARPEN,        // 锐化
+    BRIGHTNESS,     // 亮度调整
+    CONTRAST,       // 对比度调整
+    AUTO_LEVELS,    // 自动色阶（按通道，含自动 gamma）
+    AUTO_CONTRAST   // 自动对比度（按亮度，不改变色相，含自动 gamma）
+}
@@ -0,0 +1,187 @@
+package com.example.myapplication2.imaging;
+
+// 锐化（USM 反锐化掩模）：out = src + amount * (src - blur)，差值小于阈值的不处理
+// radius <= 1 时直接用 3x3 均值核，否则用 BoxBlur 近似高斯模糊
+// 按行条带处理（条带大小由 TileExecutor 决定），条带上下各多读 halo 行，边缘按最近像素延伸，不需要整帧的填充缓冲
+public class Sharpen {
+
+    // amount 的定点精度（8位小数）
+    private static final int AMOUNT_SHIFT = 8;
+    private static final int AMOUNT_ROUND = 1 << (AMOUNT_SHIFT - 1);
+
+    // 锐化参数
+    public static class Params {
+        public final float amount;    // 强度，1.0 表示差值原样叠加
+        public final float radius;    // 模糊半径（高斯标准差，像素）
+        public final int threshold;   // 差值阈值 0-255，小于该值的像素保持不变
+
+        public Params(float amount, float radius, int threshold) {
+            if (amount < 0 || radius < 0 || threshold < 0 || threshold > 255) {
+                throw new IllegalArgumentException("锐化参数无效: amount=" + amount
+                        + ", radius=" + radius + ", threshold=" + threshold);
+            }
+            this.amount = amount;
+            this.radius = radius;
+            this.threshold = threshold;
+        }
+
+        // 适合文档类照片的默认参数
+        public static Params defaults() {
+            return new Params(1.0f, 1.0f, 2);
+        }
+
+        boolean useKernel3x3() {
+            return radius <= 1f;
+        }
+
+        // 条带上下需要额外读取的行数
+        int halo() {
+            if (useKernel3x3()) {
+                return 1;
+            }
+            int halo = 0;
+            for (int r : BoxBlur.gaussianRadii(radius, 3)) {
+                halo += r;
+            }
+            return halo;
+        }
+
+        @Override
+        public String toString() {
+            return "sharpen(" + amount + ", " + radius + ", " + threshold + ")";
+        }
+    }
+
+    private Sharpen() {
+    }
+
+    // 整帧锐化，src 与 dst 不能是同一个数组；条带交给 TileExecutor 并行，每个条带的临时缓冲从 BufferPool 借
+    public static void unsharpMask(final int[] src, final int[] dst, final int width, final int height,
+                                   final Params params) {
+        TileExecutor.forEachStrip(width, height, params.halo(), (rowStart, rowEnd) -> {
+            int size = scratchSize(width, height, rowEnd - rowStart, params);
+            int[] scratch = size > 0 ? BufferPool.shared().acquireInts(size) : null;
+            try {
+                sharpenRows(src, dst, width, height, params, rowStart, rowEnd, scratch);
+            } finally {
+                BufferPool.shared().releaseInts(scratch);
+            }
+        });
+    }
+
+    // 处理 [rowStart, rowEnd) 行所需的临时缓冲大小
+    public static int scratchSize(int width, int height, int tileRows, Params params) {
+        if (params.useKernel3x3()) {
+            return 0;
+        }
+        int rows = Math.min(tileRows + 2 * params.halo(), height);
+        return 2 * rows * width;
+    }
+
+    // 锐化 [rowStart, rowEnd) 行，只读取条带及其上下 halo 行
+    // scratch 至少 scratchSize(width, height, rowEnd - rowStart, params)
+    public static void sharpenRows(int[] src, int[] dst, int width, int height, Params params,
+                                   int rowStart, int rowEnd, int[] scratch) {
+        if (src == dst) {
+            throw new IllegalArgumentException("锐化不支持原地处理");
+        }
+        if (params.useKernel3x3()) {
+            kernel3x3Rows(src, dst, width, height, params, rowStart, rowEnd);
+        } else {
+            gaussianRows(src, dst, width, height, params, rowStart, rowEnd, scratch);
+        }
+    }
+
+    // 3x3 均值核：out = c + amount * (c - mean3x3)
+    private static void kernel3x3Rows(int[] src, int[] dst, int width, int height, Params params,
+                                      int rowStart, int rowEnd) {
+        // 用 9 倍的差值计算，避免除法
+        final int amount = Math.round(params.amount * (1 << AMOUNT_SHIFT) / 9f);
+        final int threshold = params.threshold * 9;
+        final int lastX = width - 1;
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            final int up = Math.max(y - 1, 0) * width;
+            final int row = y * width;
+            final int down = Math.min(y + 1, height - 1) * width;
+
+            for (int x = 0; x < width; x++) {
+                final int xl = x == 0 ? 0 : x - 1;
+                final int xr = x == lastX ? lastX : x + 1;
+
+                int sr = 0;
+                int sg = 0;
+                int sb = 0;
+                int p;
+                p = src[up + xl];   sr += (p >> 16) & 0xFF; sg += (p >> 8) & 0xFF; sb += p & 0xFF;
+                p = src[up + x];    sr += (p >> 16) & 0xFF; sg += (p >> 8) & 0xFF; sb += p & 0xFF;
+                p = src[up + xr];   sr += (p >> 16) & 0xFF; sg += (p >> 8) & 0xFF; sb += p & 0xFF;
+                p = src[row + xl];  sr += (p >> 16) & 0xFF; sg += (p >> 8) & 0xFF; sb += p & 0xFF;
+                p = src[row + xr];  sr += (p >> 16) & 0xFF; sg += (p >> 8) & 0xFF; sb += p & 0xFF;
+                p = src[down + xl]; sr += (p >> 16) & 0xFF; sg += (p >> 8) & 0xFF; sb += p & 0xFF;
+                p = src[down + x];  sr += (p >> 16) & 0xFF; sg += (p >> 8) & 0xFF; sb += p & 0xFF;
+                p = src[down + xr]; sr += (p >> 16) & 0xFF; sg += (p >> 8) & 0xFF; sb += p & 0xFF;
+
+                final int c = src[row + x];
+                final int cr = (c >> 16) & 0xFF;
+                final int cg = (c >> 8) & 0xFF;
+                final int cb = c & 0xFF;
+
+                // 8 个邻居之和 + 中心 = 3x3 之和，差值 = 9c - 3x3之和 = 8c - 邻居之和
+                dst[row + x] = (c & 0xFF000000)
+                        | (boost(cr, 8 * cr - sr, amount, threshold) << 16)
+                        | (boost(cg, 8 * cg - sg, amount, threshold) << 8)
+                        | boost(cb, 8 * cb - sb, amount, threshold);
+            }
+        }
+    }
+
+    // 高斯模糊核：把条带（含 halo）拷到 scratch 中模糊，再与原图合成
+    private static void gaussianRows(int[] src, int[] dst, int width, int height, Params params,
+                                     int rowStart, int rowEnd, int[] scratch) {
+        final int halo = params.halo();
+        final int from = Math.max(rowStart - halo, 0);
+        final int to = Math.min(rowEnd + halo, height);
+        final int rows = to - from;
+        final int size = rows * width;
+        if (scratch == null || scratch.length < 2 * size) {
+            scratch = new int[2 * size];
+        }
+
+        // scratch 前半部分存模糊结果，后半部分给 BoxBlur 做中间缓冲
+        System.arraycopy(src, from * width, scratch, 0, size);
+        for (int radius : BoxBlur.gaussianRadii(params.radius, 3)) {
+            if (radius > 0) {
+                BoxBlur.blurRows(scratch, 0, scratch, size, width, rows, radius, 0, rows);
+                BoxBlur.blurColumns(scratch, size, scratch, 0, width, rows, radius, 0, width);
+            }
+        }
+
+        final int amount = Math.round(params.amount * (1 << AMOUNT_SHIFT));
+        final int threshold = params.threshold;
+        for (int y = rowStart; y < rowEnd; y++) {
+            final int row = y * width;
+            final int blurRow = (y - from) * width;
+            for (int x = 0; x < width; x++) {
+                final int c = src[row + x];
+                final int b = scratch[blurRow + x];
+                final int cr = (c >> 16) & 0xFF;
+                final int cg = (c >> 8) & 0xFF;
+                final int cb = c & 0xFF;
+                dst[row + x] = (c & 0xFF000000)
+                        | (boost(cr, cr - ((b >> 16) & 0xFF), amount, threshold) << 16)
+                        | (boost(cg, cg - ((b >> 8) & 0xFF), amount, threshold) << 8)
+                        | boost(cb, cb - (b & 0xFF), amount, threshold);
+            }
+        }
+    }
+
+    // 单通道：差值超过阈值时叠加 amount * diff，并截断到 0-255
+    private static int boost(int value, int diff, int amount, int threshold) {
+        if (diff < threshold && diff > -threshold) {
+            return value;
+        }
+        int v = value + ((diff * amount + AMOUNT_ROUND) >> AMOUNT_SHIFT);
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.myapplication2.imaging;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// 图像分块调度：把一帧按行切成适合缓存大小的条带，交给共享的 ForkJoinPool 并行处理
+// 各条带读取 src 的任意行（含上下 halo 行），只写自己负责的行，因此结果与单线程完全一致
+public class TileExecutor {
+
+    // 单个条带（含 halo）期望占用的字节数，大致对应 L2 缓存的一部分
+    private static final int TARGET_STRIP_BYTES = 128 * 1024;
+    // 条带最少行数，避免 halo 占比过高
+    private static final int MIN_STRIP_ROWS = 8;
+    // 列带宽度按 16 个像素（一个 64 字节缓存行）对齐
+    private static final int COLUMN_ALIGN = 16;
+
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+    // 强制单线程执行，用于逐位比对结果或排查问题
+    private static volatile boolean singleThreaded = false;
+
+    // 按行处理的内核：处理 [rowStart, rowEnd) 行
+    public interface RowKernel {
+        void apply(int rowStart, int rowEnd);
+    }
+
+    // 按列处理的内核：处理 [colStart, colEnd) 列
+    public interface ColumnKernel {
+        void apply(int colStart, int colEnd);
+    }
+
+    private TileExecutor() {
+    }
+
+    public static void setSingleThreaded(boolean value) {
+        singleThreaded = value;
+    }
+
+    public static boolean isSingleThreaded() {
+        return singleThreaded;
+    }
+
+    public static int getParallelism() {
+        return singleThreaded ? 1 : POOL.getParallelism();
+    }
+
+    // 条带行数：让 (rows + 2 * halo) * width 个像素大约落在 TARGET_STRIP_BYTES 内
+    public static int stripRows(int width, int halo) {
+        int rows = TARGET_STRIP_BYTES / (Math.max(width, 1) * 4) - 2 * halo;
+        return Math.max(rows, MIN_STRIP_ROWS);
+    }
+
+    // 按行条带执行，halo 为内核需要读取的上下额外行数（仅用于决定条带大小）
+    public static void forEachStrip(int width, int height, int halo, RowKernel kernel) {
+        int rows = stripRows(width, halo);
+        int strips = (height + rows - 1) / rows;
+        if (singleThreaded || strips <= 1 || POOL.getParallelism() <= 1) {
+            for (int y = 0; y < height; y += rows) {
+                kernel.apply(y, Math.min(y + rows, height));
+            }
+            return;
+        }
+        POOL.invoke(new StripTask(kernel, rows, height, 0, strips));
+    }
+
+    // 按列带执行，适合在每行内横向推进的垂直方向内核
+    public static void forEachColumnBand(int width, int height, ColumnKernel kernel) {
+        int parallelism = getParallelism();
+        int band = (width + parallelism - 1) / parallelism;
+        band = (band + COLUMN_ALIGN - 1) / COLUMN_ALIGN * COLUMN_ALIGN;
+        int bands = (width + band - 1) / band;
+        if (bands <= 1) {
+            kernel.apply(0, width);
+            return;
+        }
+        POOL.invoke(new BandTask(kernel, band, width, 0, bands));
+    }
+
+    // 二分拆分条带区间 [from, to)
+    private static class StripTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RowKernel kernel;
+        private final int rows;
+        private final int height;
+        private final int from;
+        private final int to;
+
+        StripTask(RowKernel kernel, int rows, int height, int from, int to) {
+            this.kernel = kernel;
+            this.rows = rows;
+            this.height = height;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                int y = from * rows;
+                kernel.apply(y, Math.min(y + rows, height));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StripTask(kernel, rows, height, from, mid),
+                    new StripTask(kernel, rows, height, mid, to));
+        }
+    }
+
+    // 二分拆分列带区间 [from, to)
+    private static class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ColumnKernel kernel;
+        private final int band;
+        private final int width;
+        private final int from;
+        private final int to;
+
+        BandTask(ColumnKernel kernel, int band, int width, int from, int to) {
+            this.kernel = kernel;
+            this.band = band;
+            this.width = width;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                int x = from * band;
+                kernel.apply(x, Math.min(x + band, width));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BandTask(kernel, band, width, from, mid),
+                    new BandTask(kernel, band, width, mid, to));
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.myapplication2.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// 异步日志文件：记日志的线程只把一行放进 LogRing，由一个常驻的写线程格式化并批量写入
+// 写线程把一批行编码进复用的缓冲区，通过一直打开的 FileChannel 写出，定期 force 到存储
+// 文件超过大小或时间上限时轮转：log.txt -> log.1.txt -> ... ，最多保留 maxFiles 个旧文件
+// 缓冲区满时丢弃新行并计数，写线程在文件中记下丢了多少行
+// 写文件出错时计数并通知 ErrorListener，由调用方决定如何提示（文件本身这时可能写不进去）
+public class AsyncFileLog {
+
+    // 写线程遇到 I/O 错误；在写线程上调用，不能再向这个日志写入
+    public interface ErrorListener {
+        void onError(String operation, IOException e);
+    }
+
+    private static final int WRITE_BUFFER_BYTES = 32 * 1024;
+    // 队列空闲时写线程最长睡眠时间，也是检查 force 和轮转的周期
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long FORCE_INTERVAL_MS = 5000;
+
+    private static final class Line {
+        final long time;
+        final String level;
+        final String tag;
+        final String message;
+
+        Line(long time, String level, String tag, String message) {
+            this.time = time;
+            this.level = level;
+            this.tag = tag;
+            this.message = message;
+        }
+    }
+
+    private final File file;
+    private final long maxFileBytes;
+    private final long maxFileAgeMs;
+    private final int maxFiles;
+    private final LogRing<Line> ring;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile ErrorListener errorListener;
+    private final Thread writer;
+    // 写线程准备睡眠时为 true，生产者只在这时唤醒它
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    // 以下只由写线程使用
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder text = new StringBuilder(256);
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+    private long formattedSecond = -1;
+    private String formattedTime;
+    private FileChannel channel;
+    private long fileBytes;
+    private long fileOpenedAt;
+    private long lastForce;
+    private boolean dirty;
+    private long reportedDropped;
+
+    // capacity 为缓冲的行数，必须是 2 的幂
+    public AsyncFileLog(File file, int capacity, long maxFileBytes, long maxFileAgeMs, int maxFiles) {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAgeMs = maxFileAgeMs;
+        this.maxFiles = maxFiles;
+        this.ring = new LogRing<>(capacity);
+        writer = new Thread(this::runWriter, "LogWriter");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    // 任意线程调用，不阻塞；缓冲区已满时丢弃并返回 false
+    public boolean append(String level, String tag, String message) {
+        if (!ring.offer(new Line(System.currentTimeMillis(), level, tag, message))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    // 因缓冲区满或写入失败丢掉的行数
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    // 写文件、force 或关闭文件失败的次数
+    public long errorCount() {
+        return errors.get();
+    }
+
+    public void setErrorListener(ErrorListener listener) {
+        errorListener = listener;
+    }
+
+    // 写完已缓冲的行后关闭文件；用于退出前或测试
+    public void close() throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+
+    private void runWriter() {
+        lastForce = System.currentTimeMillis();
+        while (true) {
+            boolean wrote = drain();
+            long now = System.currentTimeMillis();
+            if (dirty && now - lastForce >= FORCE_INTERVAL_MS) {
+                force(now);
+            }
+            if (wrote) {
+                continue;
+            }
+            if (closed) {
+                closeChannel();
+                return;
+            }
+            // 先声明要睡眠再检查队列，append 放入后看到 sleeping 就会唤醒，不会漏掉
+            sleeping = true;
+            if (ring.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    // 把队列中的行全部写出，没有新行时返回 false
+    private boolean drain() {
+        Line line = ring.poll();
+        if (line == null && dropped.get() == reportedDropped) {
+            return false;
+        }
+        try {
+            ensureOpen(line != null ? line.time : System.currentTimeMillis());
+            long droppedNow = dropped.get();
+            if (droppedNow > reportedDropped) {
+                encode(System.currentTimeMillis(), "WARN", "AsyncFileLog",
+                        "日志缓冲区已满，丢弃了 " + (droppedNow - reportedDropped) + " 行");
+                reportedDropped = droppedNow;
+            }
+            for (; line != null; line = ring.poll()) {
+                encode(line.time, line.level, line.tag, line.message);
+            }
+            flushBuffer();
+        } catch (IOException e) {
+            // 这一批丢弃，稍后重新打开文件；存储不可用时不要空转
+            reportError("写入", e);
+            for (; line != null; line = ring.poll()) {
+                dropped.incrementAndGet();
+            }
+            buffer.clear();
+            closeChannel();
+            if (closed) {
+                // 正在关闭，不再重试；丢掉的行数也无处记录，否则写线程会一直重试，close 无法返回
+                reportedDropped = dropped.get();
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    private void encode(long time, String level, String tag, String message) throws IOException {
+        long second = time / 1000;
+        if (second != formattedSecond) {
+            formattedSecond = second;
+            formattedTime = dateFormat.format(new Date(time));
+        }
+        text.setLength(0);
+        text.append(formattedTime).append(' ').append(level).append('/').append(tag).append(": ")
+                .append(message).append('\n');
+
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true).isOverflow()) {
+            flushBuffer();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+        if (fileBytes + buffer.position() >= maxFileBytes) {
+            flushBuffer();
+            rotate(time);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileBytes += channel.write(buffer);
+        }
+        buffer.clear();
+        dirty = true;
+    }
+
+    private void ensureOpen(long now) throws IOException {
+        if (channel == null) {
+            // 重启后沿用已有文件；不知道它的创建时间，用最后修改时间近似
+            if (file.exists() && (file.length() >= maxFileBytes
+                    || now - file.lastModified() >= maxFileAgeMs)) {
+                shiftFiles();
+            }
+            open(file.exists() ? file.lastModified() : now);
+        } else if (now - fileOpenedAt >= maxFileAgeMs) {
+            rotate(now);
+        }
+    }
+
+    private void open(long openedAt) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        channel = new FileOutputStream(file, true).getChannel();
+        fileBytes = channel.size();
+        fileOpenedAt = openedAt;
+    }
+
+    private void rotate(long now) throws IOException {
+        closeChannel();
+        shiftFiles();
+        open(now);
+    }
+
+    // log.txt 改名为 log.1.txt，原来的 log.1.txt 改为 log.2.txt，超出 maxFiles 的删除
+    private void shiftFiles() {
+        File oldest = rotated(maxFiles);
+        if (oldest.exists()) {
+            oldest.delete();
+        }
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File from = rotated(i);
+            if (from.exists()) {
+                from.renameTo(rotated(i + 1));
+            }
+        }
+        if (maxFiles > 0) {
+            file.renameTo(rotated(1));
+        } else {
+            file.delete();
+        }
+    }
+
+    private File rotated(int index) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String rotatedName = dot > 0
+                ? name.substring(0, dot) + "." + index + name.substring(dot)
+                : name + "." + index;
+        return new File(file.getParentFile(), rotatedName);
+    }
+
+    private void force(long now) {
+        try {
+            if (channel != null) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            reportError("force", e);
+        }
+        lastForce = now;
+        dirty = false;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            reportError("关闭", e);
+        }
+        channel = null;
+        dirty = false;
+    }
+
+    private void reportError(String operation, IOException e) {
+        errors.incrementAndGet();
+        ErrorListener listener = errorListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onError(operation, e);
+        } catch (RuntimeException ignored) {
+            // 监听者出错不能让写线程退出
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.myapplication2.log;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// 运行时可调的日志级别：全局默认级别加按 tag 的覆盖
+// 查询只读一个 volatile 引用和一次 HashMap 查找，不加锁、不分配；修改时整张表复制替换
+public class LogLevels {
+    // 取值与 android.util.Log 相同
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int OFF = Integer.MAX_VALUE;
+
+    private volatile int defaultLevel;
+    private volatile Map<String, Integer> overrides = Collections.emptyMap();
+
+    public LogLevels(int defaultLevel) {
+        this.defaultLevel = defaultLevel;
+    }
+
+    public boolean isEnabled(String tag, int level) {
+        Map<String, Integer> current = overrides;
+        if (current.isEmpty()) {
+            return level >= defaultLevel;
+        }
+        Integer threshold = current.get(tag);
+        return level >= (threshold != null ? threshold : defaultLevel);
+    }
+
+    public void setDefaultLevel(int level) {
+        defaultLevel = level;
+    }
+
+    public synchronized void setLevel(String tag, int level) {
+        Map<String, Integer> copy = new HashMap<>(overrides);
+        copy.put(tag, level);
+        overrides = copy;
+    }
+
+    // 恢复为默认级别
+    public synchronized void clearLevel(String tag) {
+        if (!overrides.containsKey(tag)) {
+            return;
+        }
+        Map<String, Integer> copy = new HashMap<>(overrides);
+        copy.remove(tag);
+        overrides = copy.isEmpty() ? Collections.<String, Integer>emptyMap() : copy;
+    }
+}
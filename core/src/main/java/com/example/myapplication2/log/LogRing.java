@@ -0,0 +1,72 @@
+package com.example.myapplication2.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// 有界的多生产者、单消费者环形队列，不加锁
+// 每个槽位带一个序号：等于写入位置表示可写，等于写入位置 + 1 表示已写好可读（Vyukov 有界队列）
+// 满时 offer 立即返回 false，记日志的线程从不阻塞
+public class LogRing<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // 只由消费者线程读写
+    private long head;
+
+    // capacity 必须是 2 的幂
+    public LogRing(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("容量必须是 2 的幂: " + capacity);
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // 任意线程调用；队列已满时返回 false
+    public boolean offer(T item) {
+        while (true) {
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(index, item);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // 槽位上还是上一圈没读走的元素
+                return false;
+            }
+            // 其他生产者抢先占了这个位置，重新读 tail
+        }
+    }
+
+    // 只能由消费者线程调用；队列为空时返回 null
+    public T poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        T item = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return item;
+    }
+
+    // 只能由消费者线程调用
+    public boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.myapplication2.log;
+
+// 一个日志调用点的限流：每个周期最多输出 maxPerPeriod 条，其余丢弃并计数
+// 以静态常量放在调用点旁边，下一条放行的日志带上此前被抑制的条数
+public class RateLimiter {
+    private final int maxPerPeriod;
+    private final long periodNanos;
+    private long periodStart;
+    private int count;
+    private long suppressed;
+
+    public RateLimiter(int maxPerPeriod, long periodMs) {
+        this.maxPerPeriod = maxPerPeriod;
+        this.periodNanos = periodMs * 1_000_000L;
+        this.periodStart = System.nanoTime() - periodNanos;
+    }
+
+    // 放行时返回此前被抑制的条数（通常为 0），应抑制时返回 -1
+    public synchronized long acquire() {
+        long now = System.nanoTime();
+        if (now - periodStart >= periodNanos) {
+            periodStart = now;
+            count = 0;
+        }
+        if (count >= maxPerPeriod) {
+            suppressed++;
+            return -1;
+        }
+        count++;
+        long result = suppressed;
+        suppressed = 0;
+        return result;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.myapplication2.net;
+
+import java.util.Random;
+
+// 带随机抖动的指数退避：第 n 次失败后等待 base * 2^(n-1)，不超过 max；
+// 实际在 [d/2, d) 内随机，避免多台设备同时重试
+public class Backoff {
+    private final long baseMs;
+    private final long maxMs;
+    private final Random random;
+
+    public Backoff(long baseMs, long maxMs, Random random) {
+        if (baseMs <= 0 || maxMs < baseMs) {
+            throw new IllegalArgumentException("退避参数无效: base=" + baseMs + ", max=" + maxMs);
+        }
+        this.baseMs = baseMs;
+        this.maxMs = maxMs;
+        this.random = random;
+    }
+
+    // attempts 为已失败的次数（从 1 开始）
+    public long delayMs(int attempts) {
+        long delay = Math.min(maxMs, baseMs << Math.min(Math.max(attempts - 1, 0), 20));
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.myapplication2.net;
+
+import java.nio.charset.StandardCharsets;
+
+// 标准 Base64 编码（不换行，带 = 填充），结果与 android.util.Base64.NO_WRAP 一致
+// 不依赖 Android，设备上和 JVM 基准测试中走同一份代码
+public class Base64Encoder {
+
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+                    .getBytes(StandardCharsets.US_ASCII);
+
+    private Base64Encoder() {
+    }
+
+    // len 个字节编码后的长度
+    public static int encodedLength(int len) {
+        return (len + 2) / 3 * 4;
+    }
+
+    public static String encodeToString(byte[] src) {
+        return encodeToString(src, 0, src.length);
+    }
+
+    public static String encodeToString(byte[] src, int offset, int len) {
+        byte[] out = new byte[encodedLength(len)];
+        encode(src, offset, len, out, 0);
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+
+    // 把 src[offset, offset+len) 编码写入 dst[dstOffset...]，返回写入的字节数
+    public static int encode(byte[] src, int offset, int len, byte[] dst, int dstOffset) {
+        final byte[] alphabet = ALPHABET;
+        int s = offset;
+        int d = dstOffset;
+        int fullEnd = offset + len / 3 * 3;
+        while (s < fullEnd) {
+            int bits = (src[s] & 0xFF) << 16 | (src[s + 1] & 0xFF) << 8 | (src[s + 2] & 0xFF);
+            s += 3;
+            dst[d] = alphabet[bits >>> 18];
+            dst[d + 1] = alphabet[(bits >>> 12) & 0x3F];
+            dst[d + 2] = alphabet[(bits >>> 6) & 0x3F];
+            dst[d + 3] = alphabet[bits & 0x3F];
+            d += 4;
+        }
+
+        int remaining = offset + len - s;
+        if (remaining > 0) {
+            int bits = (src[s] & 0xFF) << 16;
+            if (remaining == 2) {
+                bits |= (src[s + 1] & 0xFF) << 8;
+            }
+            dst[d] = alphabet[bits >>> 18];
+            dst[d + 1] = alphabet[(bits >>> 12) & 0x3F];
+            dst[d + 2] = remaining == 2 ? alphabet[(bits >>> 6) & 0x3F] : (byte) '=';
+            dst[d + 3] = (byte) '=';
+            d += 4;
+        }
+        return d - dstOffset;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.myapplication2.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// 边写边做 Base64 编码（不换行，带 = 填充），只占一个固定大小的输出缓冲
+// finish() / close() 写出末尾不足 3 字节的部分，但不会关闭下游流
+public class Base64EncodingStream extends OutputStream {
+
+    // 每次最多编码的输入字节数（3 的倍数），对应 8KB 输出
+    private static final int CHUNK = 6 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[Base64Encoder.encodedLength(CHUNK)];
+    private final byte[] pending = new byte[3];
+    private int pendingCount;
+    private long inputBytes;
+    private boolean finished;
+
+    public Base64EncodingStream(OutputStream out) {
+        this.out = out;
+    }
+
+    // 已写入的原始字节数
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (finished) {
+            throw new IOException("Base64 流已结束");
+        }
+        pending[pendingCount++] = (byte) b;
+        inputBytes++;
+        if (pendingCount == 3) {
+            out.write(buffer, 0, Base64Encoder.encode(pending, 0, 3, buffer, 0));
+            pendingCount = 0;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Base64 流已结束");
+        }
+        inputBytes += len;
+        // 先把上次剩下的凑满 3 字节
+        while (pendingCount > 0 && pendingCount < 3 && len > 0) {
+            pending[pendingCount++] = b[off++];
+            len--;
+        }
+        if (pendingCount == 3) {
+            out.write(buffer, 0, Base64Encoder.encode(pending, 0, 3, buffer, 0));
+            pendingCount = 0;
+        }
+
+        while (len >= 3) {
+            int n = Math.min(len / 3 * 3, CHUNK);
+            out.write(buffer, 0, Base64Encoder.encode(b, off, n, buffer, 0));
+            off += n;
+            len -= n;
+        }
+        for (int i = 0; i < len; i++) {
+            pending[pendingCount++] = b[off + i];
+        }
+    }
+
+    // 写出剩余字节和填充，之后不能再写入
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (pendingCount > 0) {
+            out.write(buffer, 0, Base64Encoder.encode(pending, 0, pendingCount, buffer, 0));
+            pendingCount = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        flush();
+    }
+}
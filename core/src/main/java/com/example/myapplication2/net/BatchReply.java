@@ -0,0 +1,40 @@
+package com.example.myapplication2.net;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// 把多图请求的回复按编号拆回每张图片的结果，编号格式见 RecognitionRequest.BATCH_PROMPT
+public class BatchReply {
+
+    // 行首的 [n]，也接受 [图片n]、【n】 和 Markdown 加粗
+    private static final Pattern MARKER =
+            Pattern.compile("(?m)^[ \\t]*(?:\\*\\*)?[\\[【](?:图片)?[ \\t]*(\\d{1,2})[ \\t]*[\\]】](?:\\*\\*)?[:：]?[ \\t]*");
+
+    private BatchReply() {
+    }
+
+    // 返回长度为 count 的数组，第 i 项为第 i + 1 张图片的结果；回复中找不到的为 null
+    // 同一编号出现多次时只取第一段
+    public static String[] split(String reply, int count) {
+        String[] results = new String[count];
+        Matcher matcher = MARKER.matcher(reply);
+        int index = -1;
+        int start = 0;
+        while (matcher.find()) {
+            take(results, index, reply.substring(start, matcher.start()));
+            int number = Integer.parseInt(matcher.group(1));
+            index = number >= 1 && number <= count && results[number - 1] == null ? number - 1 : -1;
+            start = matcher.end();
+        }
+        take(results, index, reply.substring(start));
+        return results;
+    }
+
+    // index 为 -1（第一个编号之前的开场白、无效或重复的编号）时丢弃
+    private static void take(String[] results, int index, String text) {
+        String trimmed = text.trim();
+        if (index >= 0 && !trimmed.isEmpty()) {
+            results[index] = trimmed;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.myapplication2.net;
+
+// 各类请求的超时（毫秒），派生客户端时四项都按这里设置；callTimeout 为 0 表示整个调用不限时
+// 上传的请求体较大，写超时放宽；纯文本的请求体很小，主要等模型生成；预连接只为建立连接，尽快放弃
+public enum CallTimeouts {
+    DEFAULT(10_000, 30_000, 30_000, 0),
+    UPLOAD(10_000, 60_000, 60_000, 120_000),
+    TEXT(10_000, 10_000, 60_000, 90_000),
+    WARM_UP(5_000, 30_000, 5_000, 10_000);
+
+    public final long connectMs;
+    public final long writeMs;
+    public final long readMs;
+    public final long callMs;
+
+    CallTimeouts(long connectMs, long writeMs, long readMs, long callMs) {
+        this.connectMs = connectMs;
+        this.writeMs = writeMs;
+        this.readMs = readMs;
+        this.callMs = callMs;
+    }
+}
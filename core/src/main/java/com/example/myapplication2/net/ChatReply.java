@@ -0,0 +1,174 @@
+package com.example.myapplication2.net;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// 非流式 chat/completions 响应：只取 choices[0].message.content、error 和 usage
+// 与 ChatStream 一样用 org.json 解析；识别结果只有几百个 token，整个响应读进来也不大，
+// 日志只记录 Capture 留下的开头一段
+public class ChatReply {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    // 本次请求消耗的 token 数，服务器没有给出的项为 -1
+    public static final class Usage {
+        public final long promptTokens;
+        public final long completionTokens;
+        public final long totalTokens;
+
+        private Usage(long promptTokens, long completionTokens, long totalTokens) {
+            this.promptTokens = promptTokens;
+            this.completionTokens = completionTokens;
+            this.totalTokens = totalTokens;
+        }
+
+        @Override
+        public String toString() {
+            return "prompt=" + promptTokens + ", completion=" + completionTokens + ", total=" + totalTokens;
+        }
+    }
+
+    // 响应不是合法的 JSON；与读取时的网络错误区分开
+    public static class MalformedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedException(String message) {
+            super(message);
+        }
+    }
+
+    // 记录读过的前 limit 个字节和读过的总字节数，出错或抽样时只记录这一小段
+    public static final class Capture extends FilterInputStream {
+        private final byte[] head;
+        private int headLength;
+        private long count;
+
+        public Capture(InputStream in, int limit) {
+            super(in);
+            head = new byte[limit];
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                if (headLength < head.length) {
+                    head[headLength++] = (byte) b;
+                }
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                int copy = Math.min(n, head.length - headLength);
+                if (copy > 0) {
+                    System.arraycopy(b, off, head, headLength, copy);
+                    headLength += copy;
+                }
+                count += n;
+            }
+            return n;
+        }
+
+        // 截断处可能拆开多字节字符，解码时替换为占位符
+        public String excerpt() {
+            String s = new String(head, 0, headLength, StandardCharsets.UTF_8);
+            return count > headLength ? s + "…" : s;
+        }
+
+        public long count() {
+            return count;
+        }
+    }
+
+    private String content;
+    private String error;
+    private boolean hasChoices;
+    private Usage usage;
+
+    private ChatReply() {
+    }
+
+    // choices[0].message.content，没有时为 null
+    public String getContent() {
+        return content;
+    }
+
+    // 服务器返回的 error（字符串或 error.message），没有时为 null
+    public String getError() {
+        return error;
+    }
+
+    public boolean hasChoices() {
+        return hasChoices;
+    }
+
+    // 没有 usage 字段时为 null
+    public Usage getUsage() {
+        return usage;
+    }
+
+    // 读完整个响应后解析；不是 JSON 对象时抛出 MalformedException
+    // vLLM 的错误响应没有 error 字段，而是 {"object": "error", "message": "..."}，同样作为 error 返回
+    public static ChatReply parse(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, n);
+        }
+        try {
+            return from(new JSONObject(new String(bytes.toByteArray(), StandardCharsets.UTF_8)));
+        } catch (JSONException e) {
+            throw new MalformedException(e.getMessage());
+        }
+    }
+
+    // content、message 等可能为 JSON null，optString 在设备上会返回 "null"，一律先判断类型
+    private static ChatReply from(JSONObject json) {
+        ChatReply reply = new ChatReply();
+        JSONArray choices = json.optJSONArray("choices");
+        reply.hasChoices = choices != null && choices.length() > 0;
+        if (reply.hasChoices) {
+            JSONObject choice = choices.optJSONObject(0);
+            JSONObject message = choice != null ? choice.optJSONObject("message") : null;
+            Object content = message != null ? message.opt("content") : null;
+            // 多模态格式的 content 数组不是文本，按没有内容处理
+            if (content instanceof String) {
+                reply.content = (String) content;
+            }
+        }
+        if (!json.isNull("error")) {
+            reply.error = errorMessage(json.opt("error"));
+        } else if ("error".equals(json.opt("object"))) {
+            Object message = json.opt("message");
+            reply.error = message instanceof String ? (String) message : "未知错误";
+        }
+        JSONObject usage = json.optJSONObject("usage");
+        if (usage != null) {
+            reply.usage = new Usage(usage.optLong("prompt_tokens", -1), usage.optLong("completion_tokens", -1),
+                    usage.optLong("total_tokens", -1));
+        }
+        return reply;
+    }
+
+    // "error": "..." 或 {"message": "...", ...}
+    private static String errorMessage(Object error) {
+        if (error instanceof String) {
+            return (String) error;
+        }
+        Object message = error instanceof JSONObject ? ((JSONObject) error).opt("message") : null;
+        return message instanceof String ? (String) message : "未知错误";
+    }
+}
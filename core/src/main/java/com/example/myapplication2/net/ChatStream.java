@@ -0,0 +1,133 @@
+package com.example.myapplication2.net;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// 解析 chat/completions 的流式响应（"stream": true，text/event-stream）
+// 边读边解析，每收到一段文本就回调一次，不等整个响应结束
+// 按字节切分行，多字节的 UTF-8 字符不会被拆开
+public class ChatStream {
+
+    private static final String DONE = "[DONE]";
+    private static final int BUFFER_SIZE = 4096;
+
+    // 收到新的文本；text 为到目前为止的完整文本
+    public interface Listener {
+        void onDelta(String delta, String text);
+    }
+
+    // 流中返回了 error 事件
+    public static class ErrorEventException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ErrorEventException(String message) {
+            super(message);
+        }
+    }
+
+    private ChatStream() {
+    }
+
+    // 响应是否为事件流；服务器不支持流式时会返回普通 JSON
+    public static boolean isEventStream(String contentType) {
+        return contentType != null && contentType.toLowerCase().startsWith("text/event-stream");
+    }
+
+    // 读到 [DONE] 为止，返回完整文本；流提前结束时抛出 IOException
+    public static String read(InputStream in, Listener listener) throws IOException {
+        StringBuilder text = new StringBuilder();
+        StringBuilder data = new StringBuilder();
+        boolean hasData = false;
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] != '\n') {
+                    continue;
+                }
+                line.write(buffer, start, i - start);
+                start = i + 1;
+                String current = decodeLine(line);
+                line.reset();
+
+                // 空行表示一个事件结束
+                if (current.isEmpty()) {
+                    if (hasData) {
+                        if (DONE.equals(data.toString().trim())) {
+                            return text.toString();
+                        }
+                        dispatch(data.toString(), text, listener);
+                        data.setLength(0);
+                        hasData = false;
+                    }
+                } else if (current.startsWith("data:")) {
+                    // 同一事件的多行 data 用换行连接
+                    if (hasData) {
+                        data.append('\n');
+                    }
+                    int from = current.startsWith("data: ") ? 6 : 5;
+                    data.append(current, from, current.length());
+                    hasData = true;
+                }
+                // 以冒号开头的注释（心跳）和 event、id 等字段不需要处理
+            }
+            line.write(buffer, start, n - start);
+        }
+        // 部分服务器在 [DONE] 后直接关闭连接，没有结尾的空行甚至换行
+        String last = decodeLine(line);
+        if (!hasData && last.startsWith("data:")) {
+            data.append(last.substring(5));
+            hasData = true;
+        }
+        if (hasData && DONE.equals(data.toString().trim())) {
+            return text.toString();
+        }
+        throw new IOException("响应流意外结束，已收到 " + text.length() + " 个字符");
+    }
+
+    // 去掉行尾的 \r
+    private static String decodeLine(ByteArrayOutputStream line) {
+        String s = new String(line.toByteArray(), StandardCharsets.UTF_8);
+        return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+    }
+
+    // 取出 choices[0].delta.content；只有 role、finish_reason 或 usage 的块没有文本
+    private static void dispatch(String json, StringBuilder text, Listener listener) throws IOException {
+        try {
+            JSONObject chunk = new JSONObject(json);
+            if (chunk.has("error")) {
+                Object error = chunk.get("error");
+                String message = error instanceof JSONObject
+                        ? ((JSONObject) error).optString("message", error.toString()) : error.toString();
+                throw new ErrorEventException("服务器错误: " + message);
+            }
+            JSONArray choices = chunk.optJSONArray("choices");
+            if (choices == null || choices.length() == 0) {
+                return;
+            }
+            JSONObject delta = choices.getJSONObject(0).optJSONObject("delta");
+            // content 可能为 JSON null，optString 在设备上会返回 "null"
+            if (delta == null || delta.isNull("content")) {
+                return;
+            }
+            String content = delta.getString("content");
+            if (content.isEmpty()) {
+                return;
+            }
+            text.append(content);
+            if (listener != null) {
+                listener.onDelta(content, text.toString());
+            }
+        } catch (JSONException e) {
+            throw new IOException("流式响应解析失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.myapplication2.net;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// 多个识别服务器之间的负载均衡
+// 每个节点记录响应延迟的指数加权平均和进行中的请求数，选择时随机取两个健康节点，用代价较低的一个（power of two choices）
+// 连续失败的节点被摘除，由调用方定时探测，探测成功后恢复；延迟的 p95 用作对冲请求的等待时间
+// 每个节点是否有二进制上传接口（RecognitionRequest.BINARY_PATH）由调用方探测后记下，确认支持前只用 Base64
+public class EndpointPool {
+
+    // 指数加权平均的新样本权重
+    private static final double ALPHA = 0.3;
+    // 连续失败多少次后摘除
+    private static final int EJECT_AFTER_FAILURES = 3;
+    private static final long BASE_EJECTION_MS = 10_000;
+    private static final long MAX_EJECTION_MS = 2 * 60 * 1000;
+    // 计算 p95 的最近延迟样本数，以及开始对冲所需的最少样本数
+    private static final int LATENCY_WINDOW = 64;
+    private static final int MIN_HEDGE_SAMPLES = 16;
+    // 还没有任何延迟数据时的估计值
+    private static final double UNKNOWN_LATENCY_MS = 1000;
+    // 延迟数据超过这个时间没有更新就不再可信，按平均值估计，慢过一次的节点之后还能分到请求
+    private static final long STALE_LATENCY_MS = 30_000;
+
+    // 节点对二进制上传的支持情况
+    private enum Binary {
+        UNKNOWN,
+        PROBING,
+        SUPPORTED,
+        UNSUPPORTED
+    }
+
+    public static final class Endpoint {
+        private final String url;
+        private double latencyMs = -1;
+        private long sampledAt;
+        private int inFlight;
+        private int failures;
+        // 被摘除的次数，决定下次探测的间隔；恢复后清零
+        private int ejections;
+        private boolean ejected;
+        private Binary binary = Binary.UNKNOWN;
+
+        private Endpoint(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public String toString() {
+            return url + "{" + (ejected ? "ejected" : (int) latencyMs + "ms") + ", inFlight=" + inFlight
+                    + (binary == Binary.SUPPORTED ? ", binary" : "") + "}";
+        }
+    }
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final long[] window = new long[LATENCY_WINDOW];
+    private int windowSize;
+    private int windowNext;
+    private final Random random = new Random();
+
+    public EndpointPool(List<String> urls) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个服务器地址");
+        }
+        for (String url : urls) {
+            endpoints.add(new Endpoint(url));
+        }
+    }
+
+    public synchronized int size() {
+        return endpoints.size();
+    }
+
+    // 选出下一个请求使用的节点；所有节点都被摘除时仍返回一个，请求总要有地方发
+    public synchronized Endpoint choose() {
+        Endpoint chosen = choose(null);
+        if (chosen != null) {
+            return chosen;
+        }
+        return endpoints.get(random.nextInt(endpoints.size()));
+    }
+
+    // 换节点重试或对冲请求使用的另一个健康节点，没有时返回 null
+    public synchronized Endpoint chooseOther(Endpoint exclude) {
+        return choose(exclude);
+    }
+
+    private Endpoint choose(Endpoint exclude) {
+        List<Endpoint> healthy = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.ejected && endpoint != exclude) {
+                healthy.add(endpoint);
+            }
+        }
+        if (healthy.size() <= 1) {
+            return healthy.isEmpty() ? null : healthy.get(0);
+        }
+        Endpoint a = healthy.get(random.nextInt(healthy.size()));
+        Endpoint b = healthy.get(random.nextInt(healthy.size() - 1));
+        if (b == a) {
+            b = healthy.get(healthy.size() - 1);
+        }
+        return cost(a) <= cost(b) ? a : b;
+    }
+
+    // 预计等待时间：延迟乘以排在前面的请求数；没有数据的节点按全体平均估计，新节点也有机会被选中
+    private double cost(Endpoint endpoint) {
+        boolean fresh = endpoint.latencyMs >= 0 && now() - endpoint.sampledAt <= STALE_LATENCY_MS;
+        double latency = fresh ? endpoint.latencyMs : averageLatency();
+        return latency * (endpoint.inFlight + 1);
+    }
+
+    private double averageLatency() {
+        double sum = 0;
+        int count = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.latencyMs >= 0) {
+                sum += endpoint.latencyMs;
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : UNKNOWN_LATENCY_MS;
+    }
+
+    public synchronized void onStart(Endpoint endpoint) {
+        endpoint.inFlight++;
+    }
+
+    // 请求结束且服务器正常应答；latencyMs 小于 0 表示这次的耗时不参与统计（例如多图请求）
+    public synchronized void onSuccess(Endpoint endpoint, long latencyMs) {
+        endpoint.inFlight--;
+        endpoint.failures = 0;
+        if (latencyMs < 0) {
+            return;
+        }
+        endpoint.latencyMs = endpoint.latencyMs < 0 ? latencyMs
+                : endpoint.latencyMs + ALPHA * (latencyMs - endpoint.latencyMs);
+        endpoint.sampledAt = now();
+        window[windowNext] = latencyMs;
+        windowNext = (windowNext + 1) % LATENCY_WINDOW;
+        windowSize = Math.min(windowSize + 1, LATENCY_WINDOW);
+    }
+
+    // 连接失败、超时或 5xx；这次失败导致节点被摘除时返回探测前应等待的时间，否则返回 0
+    public synchronized long onFailure(Endpoint endpoint) {
+        endpoint.inFlight--;
+        endpoint.failures++;
+        if (endpoint.ejected || endpoint.failures < EJECT_AFTER_FAILURES) {
+            return 0;
+        }
+        endpoint.ejected = true;
+        return ejectionDelay(endpoint);
+    }
+
+    // 请求被取消（对冲中输掉或用户放弃），不说明节点的好坏
+    public synchronized void onCancel(Endpoint endpoint) {
+        endpoint.inFlight--;
+    }
+
+    // 探测成功，节点恢复；旧的延迟数据已不可信，重新统计
+    // 恢复的节点可能换了服务程序，二进制上传也要重新探测
+    public synchronized void restore(Endpoint endpoint) {
+        endpoint.ejected = false;
+        endpoint.failures = 0;
+        endpoint.ejections = 0;
+        endpoint.latencyMs = -1;
+        if (endpoint.binary != Binary.PROBING) {
+            endpoint.binary = Binary.UNKNOWN;
+        }
+    }
+
+    // 探测失败，返回下次探测前应等待的时间（逐次加倍）
+    public synchronized long probeFailed(Endpoint endpoint) {
+        return ejectionDelay(endpoint);
+    }
+
+    private long ejectionDelay(Endpoint endpoint) {
+        long delay = Math.min(MAX_EJECTION_MS, BASE_EJECTION_MS << Math.min(endpoint.ejections, 10));
+        endpoint.ejections++;
+        return delay;
+    }
+
+    // 还不知道是否支持二进制上传的健康节点，标记为探测中后返回，同一节点不会重复返回
+    public synchronized List<Endpoint> startBinaryProbes() {
+        List<Endpoint> unknown = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.ejected && endpoint.binary == Binary.UNKNOWN) {
+                endpoint.binary = Binary.PROBING;
+                unknown.add(endpoint);
+            }
+        }
+        return unknown;
+    }
+
+    // 记录探测结果；请求上传时服务器说没有这个接口（404 等）也记为不支持
+    public synchronized void setBinarySupported(Endpoint endpoint, boolean supported) {
+        endpoint.binary = supported ? Binary.SUPPORTED : Binary.UNSUPPORTED;
+    }
+
+    // 探测没有得到应答（网络错误），以后再探测
+    public synchronized void binaryProbeFailed(Endpoint endpoint) {
+        if (endpoint.binary == Binary.PROBING) {
+            endpoint.binary = Binary.UNKNOWN;
+        }
+    }
+
+    public synchronized boolean supportsBinary(Endpoint endpoint) {
+        return endpoint.binary == Binary.SUPPORTED;
+    }
+
+    public synchronized List<String> healthyUrls() {
+        List<String> urls = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.ejected) {
+                urls.add(endpoint.url);
+            }
+        }
+        return urls;
+    }
+
+    // 发出对冲请求前的等待时间：最近延迟的 p95；节点不足两个或样本太少时返回 -1，不对冲
+    public synchronized long hedgeDelayMs() {
+        if (endpoints.size() < 2 || windowSize < MIN_HEDGE_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(window, windowSize);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(windowSize * 0.95) - 1];
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EndpointPool" + endpoints + ", hedge=" + hedgeDelayMs() + "ms";
+    }
+}
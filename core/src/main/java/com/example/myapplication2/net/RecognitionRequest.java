@@ -0,0 +1,276 @@
+package com.example.myapplication2.net;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// 识别接口（OpenAI chat/completions 格式）的请求体
+// org.json 在设备上由系统提供，JVM 上由调用方提供
+public class RecognitionRequest {
+
+    public static final String MODEL = "qwen2.5-vl-7b";
+    public static final String IMAGE_PROMPT = "描述这张图片的内容";
+    public static final int MAX_TOKENS = 300;
+    public static final double TEMPERATURE = 0.7;
+    // 多图请求：要求模型按编号分段回答，BatchReply 按编号拆回每张图片的结果
+    public static final String BATCH_PROMPT =
+            "下面依次给出 %d 张图片，每张图片前有编号。请分别描述每张图片的内容，按顺序回答，"
+                    + "每张图片的描述另起一段，并以对应的编号开头，例如“[1] ……”。";
+
+    // 二进制上传接口（server_v2.py）：请求体为 JPEG 原始字节，其余参数放在请求头，值按 UTF-8 URL 编码
+    public static final String BINARY_PATH = "/api/recognize/binary";
+    public static final String HEADER_FILENAME = "X-Filename";
+    public static final String HEADER_MODEL = "X-Model";
+    public static final String HEADER_PROMPT = "X-Prompt";
+    public static final String HEADER_MAX_TOKENS = "X-Max-Tokens";
+
+    // 占位符只含字母和下划线，序列化时不会被转义
+    private static final String IMAGE_PLACEHOLDER = "__IMAGE_BASE64__";
+
+    // 下标 0 为普通请求，1 为流式请求
+    private static final byte[][] imagePrefix = new byte[2][];
+    private static final byte[][] imageSuffix = new byte[2][];
+
+    // 把 JPEG 写到给定的流
+    public interface JpegWriter {
+        void writeJpeg(OutputStream out) throws IOException;
+    }
+
+    // 请求超过上限时抛出
+    public static class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public TooLargeException(long limit) {
+            super("请求数据超过 " + (limit / 1024 / 1024) + "MB");
+        }
+    }
+
+    private RecognitionRequest() {
+    }
+
+    // 二进制上传接口的请求头值：按 UTF-8 URL 编码，结果只含 ASCII（OkHttp 不接受其他字符），服务器用 unquote_plus 解码
+    public static String headerValue(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // 图片识别请求，imageBase64 为 JPEG 的 Base64 编码
+    public static JSONObject buildImageJson(String imageBase64) throws JSONException {
+        return buildImageJson(imageBase64, false);
+    }
+
+    // stream 为 true 时服务器以事件流逐段返回结果，见 ChatStream
+    public static JSONObject buildImageJson(String imageBase64, boolean stream) throws JSONException {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", MODEL);
+
+        JSONArray messagesArray = new JSONArray();
+        JSONObject messageObject = new JSONObject();
+        messageObject.put("role", "user");
+
+        JSONArray contentArray = new JSONArray();
+
+        JSONObject textContent = new JSONObject();
+        textContent.put("type", "text");
+        textContent.put("text", IMAGE_PROMPT);
+        contentArray.put(textContent);
+
+        JSONObject imageContent = new JSONObject();
+        imageContent.put("type", "image_url");
+
+        JSONObject imageUrlObject = new JSONObject();
+        imageUrlObject.put("url", "data:image/jpeg;base64," + imageBase64);
+        imageContent.put("image_url", imageUrlObject);
+        contentArray.put(imageContent);
+
+        messageObject.put("content", contentArray);
+        messagesArray.put(messageObject);
+        requestBody.put("messages", messagesArray);
+        requestBody.put("max_tokens", MAX_TOKENS);
+        requestBody.put("temperature", TEMPERATURE);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
+
+        return requestBody;
+    }
+
+    // 纯文本请求
+    public static JSONObject buildTextJson(String prompt) throws JSONException {
+        return buildTextJson(prompt, false);
+    }
+
+    public static JSONObject buildTextJson(String prompt, boolean stream) throws JSONException {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", MODEL);
+
+        JSONArray messagesArray = new JSONArray();
+        JSONObject messageObject = new JSONObject();
+        messageObject.put("role", "user");
+        messageObject.put("content", prompt);
+        messagesArray.put(messageObject);
+
+        requestBody.put("messages", messagesArray);
+        requestBody.put("max_tokens", MAX_TOKENS);
+        requestBody.put("temperature", TEMPERATURE);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
+
+        return requestBody;
+    }
+
+    // 流式写出图片识别请求：JSON 外壳直接写出，JPEG 边编码边做 Base64，
+    // 结果与 buildImageJson(Base64(jpeg)) 是等价的 JSON，但不生成中间的字节数组和字符串
+    // （不保证逐字节相同：设备上的 org.json 会把 Base64 中的 / 转义成 \/，这里原样写出）
+    // JPEG 超过 maxJpegBytes 时抛出 TooLargeException；返回 JPEG 字节数
+    public static long writeImageJson(OutputStream out, JpegWriter jpeg, final long maxJpegBytes)
+            throws IOException {
+        return writeImageJson(out, jpeg, maxJpegBytes, false);
+    }
+
+    // 同上，stream 对应 buildImageJson 的同名参数
+    public static long writeImageJson(OutputStream out, JpegWriter jpeg, final long maxJpegBytes, boolean stream)
+            throws IOException {
+        int mode = stream ? 1 : 0;
+        ensureImageEnvelope(mode);
+        out.write(imagePrefix[mode]);
+        long jpegBytes = writeBase64(out, jpeg, 0, maxJpegBytes);
+        out.write(imageSuffix[mode]);
+        return jpegBytes;
+    }
+
+    // 一条消息中放多张图片：先是 BATCH_PROMPT，然后每张图片前加一段编号文本 [1]、[2]……
+    // 与单图请求共用同一个对话前缀，服务器只需处理一次提示词
+    public static JSONObject buildBatchImageJson(List<String> imagesBase64) throws JSONException {
+        int count = imagesBase64.size();
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", MODEL);
+
+        JSONArray contentArray = new JSONArray();
+        JSONObject promptContent = new JSONObject();
+        promptContent.put("type", "text");
+        promptContent.put("text", String.format(BATCH_PROMPT, count));
+        contentArray.put(promptContent);
+
+        for (int i = 0; i < count; i++) {
+            JSONObject label = new JSONObject();
+            label.put("type", "text");
+            label.put("text", "[" + (i + 1) + "]");
+            contentArray.put(label);
+
+            JSONObject imageUrlObject = new JSONObject();
+            imageUrlObject.put("url", "data:image/jpeg;base64," + imagesBase64.get(i));
+            JSONObject imageContent = new JSONObject();
+            imageContent.put("type", "image_url");
+            imageContent.put("image_url", imageUrlObject);
+            contentArray.put(imageContent);
+        }
+
+        JSONObject messageObject = new JSONObject();
+        messageObject.put("role", "user");
+        messageObject.put("content", contentArray);
+        JSONArray messagesArray = new JSONArray();
+        messagesArray.put(messageObject);
+        requestBody.put("messages", messagesArray);
+        // 每张图片的回答长度与单图请求相同
+        requestBody.put("max_tokens", MAX_TOKENS * count);
+        requestBody.put("temperature", TEMPERATURE);
+
+        return requestBody;
+    }
+
+    // 流式写出多图请求，与 buildBatchImageJson 的结果是等价的 JSON
+    // 所有 JPEG 合计超过 maxJpegBytes 时抛出 TooLargeException；返回 JPEG 总字节数
+    public static long writeBatchImageJson(OutputStream out, List<JpegWriter> jpegs, long maxJpegBytes)
+            throws IOException {
+        int count = jpegs.size();
+        byte[][] parts = batchEnvelope(count);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            out.write(parts[i]);
+            total = writeBase64(out, jpegs.get(i), total, maxJpegBytes);
+        }
+        out.write(parts[count]);
+        return total;
+    }
+
+    // 把一张 JPEG 以 Base64 写出；written 为之前已写出的 JPEG 字节数，返回加上这张后的总数
+    private static long writeBase64(OutputStream out, JpegWriter jpeg, final long written,
+                                    final long maxJpegBytes) throws IOException {
+        final Base64EncodingStream base64 = new Base64EncodingStream(out);
+        jpeg.writeJpeg(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                check(1);
+                base64.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                check(len);
+                base64.write(b, off, len);
+            }
+
+            private void check(int len) throws TooLargeException {
+                if (written + base64.getInputBytes() + len > maxJpegBytes) {
+                    throw new TooLargeException(maxJpegBytes);
+                }
+            }
+        });
+        base64.finish();
+        return written + base64.getInputBytes();
+    }
+
+    // 多图请求的外壳按占位符切成 count + 1 段；张数不固定，每次重新生成
+    private static byte[][] batchEnvelope(int count) throws IOException {
+        List<String> placeholders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            placeholders.add(IMAGE_PLACEHOLDER + i);
+        }
+        String json;
+        try {
+            json = buildBatchImageJson(placeholders).toString();
+        } catch (JSONException e) {
+            throw new IOException("构建请求 JSON 失败: " + e.getMessage());
+        }
+        byte[][] parts = new byte[count + 1][];
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            // 占位符后紧跟的是字符串结尾的引号，不会与更长编号的占位符混淆
+            String placeholder = placeholders.get(i) + "\"";
+            int at = json.indexOf(placeholder, from);
+            parts[i] = json.substring(from, at).getBytes(StandardCharsets.UTF_8);
+            from = at + placeholder.length() - 1;
+        }
+        parts[count] = json.substring(from).getBytes(StandardCharsets.UTF_8);
+        return parts;
+    }
+
+    // 用占位符序列化一次，切出占位符前后的两段
+    private static synchronized void ensureImageEnvelope(int mode) throws IOException {
+        if (imagePrefix[mode] != null) {
+            return;
+        }
+        String json;
+        try {
+            json = buildImageJson(IMAGE_PLACEHOLDER, mode == 1).toString();
+        } catch (JSONException e) {
+            throw new IOException("构建请求 JSON 失败: " + e.getMessage());
+        }
+        int at = json.indexOf(IMAGE_PLACEHOLDER);
+        imagePrefix[mode] = json.substring(0, at).getBytes(StandardCharsets.UTF_8);
+        imageSuffix[mode] = json.substring(at + IMAGE_PLACEHOLDER.length()).getBytes(StandardCharsets.UTF_8);
+    }
+}
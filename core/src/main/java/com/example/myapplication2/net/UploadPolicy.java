@@ -0,0 +1,200 @@
+package com.example.myapplication2.net;
+
+// 按网络状况自适应选择上传图片的最长边和 JPEG 质量
+// 根据最近几次上传测得的吞吐量和服务器耗时（指数加权平均），
+// 在档位表中选出预计总耗时不超过目标的最高一档；还没有测量数据时使用默认档（1024px / 80，即原来的固定值）
+// 上传时间 = 开始发送请求体到收到响应头的时间 - 服务器在 Server-Timing 响应头中报告的处理时间
+// （请求体写完时数据可能还在发送缓冲里，写出耗时不能代表网络）；服务器不报告时无法区分，调用方不应记录
+public class UploadPolicy {
+
+    // 一档编码参数
+    public static final class Params {
+        public final int maxEdge;
+        public final int quality;
+
+        public Params(int maxEdge, int quality) {
+            this.maxEdge = maxEdge;
+            this.quality = quality;
+        }
+
+        @Override
+        public String toString() {
+            return maxEdge + "px/q" + quality;
+        }
+    }
+
+    // 一次上传实际使用的编码，随请求一起传给测量代码
+    public static final class Encoding {
+        public final int width;
+        public final int height;
+        public final int quality;
+
+        public Encoding(int width, int height, int quality) {
+            this.width = width;
+            this.height = height;
+            this.quality = quality;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "/q" + quality;
+        }
+    }
+
+    // 从高到低的档位
+    private static final Params[] LADDER = {
+            new Params(1600, 85),
+            new Params(1280, 85),
+            new Params(1024, 80),
+            new Params(896, 75),
+            new Params(768, 70),
+            new Params(640, 65),
+            new Params(512, 60),
+            new Params(384, 55),
+    };
+    private static final Params DEFAULT = LADDER[2];
+
+    private static final long DEFAULT_TARGET_LATENCY_MS = 4000;
+    // 无论服务器多慢，至少留给上传的时间
+    private static final long MIN_UPLOAD_BUDGET_MS = 300;
+    // 指数加权平均的新样本权重
+    private static final double ALPHA = 0.3;
+
+    private static final UploadPolicy shared = new UploadPolicy();
+
+    private long targetLatencyMs = DEFAULT_TARGET_LATENCY_MS;
+    private Params floor = LADDER[LADDER.length - 2];
+    private Params ceiling = LADDER[1];
+
+    // 字节/毫秒，-1 表示还没有数据
+    private double throughput = -1;
+    private double serverLatencyMs = -1;
+    // 实际请求字节数 / 模型估计字节数，用来校准估算
+    private double sizeFactor = 1;
+    // 短边 / 长边
+    private double aspect = 0.75;
+    private int samples;
+    private Params current = DEFAULT;
+
+    public static UploadPolicy shared() {
+        return shared;
+    }
+
+    // 期望的端到端耗时（上传 + 服务器处理）
+    public synchronized void setTargetLatencyMs(long latencyMs) {
+        targetLatencyMs = latencyMs;
+        current = choose();
+    }
+
+    // 最低和最高档，只在两者之间的档位中选择
+    public synchronized void setLimits(Params floor, Params ceiling) {
+        this.floor = floor;
+        this.ceiling = ceiling;
+        current = choose();
+    }
+
+    // 下一次上传应使用的参数
+    public synchronized Params current() {
+        return current;
+    }
+
+    // 记录一次成功上传：请求体字节数、实际编码、上传耗时和等待响应的耗时
+    public synchronized void record(long requestBytes, Encoding encoding, long uploadMs, long serverMs) {
+        if (requestBytes <= 0 || encoding == null) {
+            return;
+        }
+        double sampleThroughput = (double) requestBytes / Math.max(uploadMs, 1);
+        double sampleFactor = requestBytes / estimateBytes(encoding.width, encoding.height, encoding.quality);
+        int longEdge = Math.max(encoding.width, encoding.height);
+        if (samples == 0) {
+            throughput = sampleThroughput;
+            serverLatencyMs = serverMs;
+            sizeFactor = sampleFactor;
+        } else {
+            throughput += ALPHA * (sampleThroughput - throughput);
+            serverLatencyMs += ALPHA * (serverMs - serverLatencyMs);
+            sizeFactor += ALPHA * (sampleFactor - sizeFactor);
+        }
+        if (longEdge > 0) {
+            aspect = (double) Math.min(encoding.width, encoding.height) / longEdge;
+        }
+        samples++;
+        current = choose();
+    }
+
+    // Server-Timing 响应头中第一项的 dur（毫秒），例如 "app;dur=1234.5"；没有或格式不对时返回 -1
+    public static long serverTimingMs(String header) {
+        if (header == null) {
+            return -1;
+        }
+        String metric = header.split(",", 2)[0];
+        for (String param : metric.split(";")) {
+            param = param.trim();
+            if (param.startsWith("dur=")) {
+                try {
+                    double ms = Double.parseDouble(param.substring(4).trim());
+                    return ms >= 0 && !Double.isInfinite(ms) ? Math.round(ms) : -1;
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // 吞吐量（KB/s），没有数据时返回 -1
+    public synchronized double getThroughputKBps() {
+        return throughput < 0 ? -1 : throughput * 1000 / 1024;
+    }
+
+    public synchronized double getServerLatencyMs() {
+        return serverLatencyMs;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "UploadPolicy{current=" + current + ", throughput=" + (int) getThroughputKBps() + "KB/s"
+                + ", server=" + (int) serverLatencyMs + "ms, target=" + targetLatencyMs + "ms"
+                + ", samples=" + samples + "}";
+    }
+
+    private Params choose() {
+        if (samples == 0) {
+            return clamp(DEFAULT);
+        }
+        long budgetMs = Math.max(MIN_UPLOAD_BUDGET_MS, (long) (targetLatencyMs - serverLatencyMs));
+        double budgetBytes = throughput * budgetMs;
+        Params chosen = null;
+        for (Params params : LADDER) {
+            if (!withinLimits(params)) {
+                continue;
+            }
+            chosen = params;
+            int shortEdge = (int) (params.maxEdge * aspect);
+            if (estimateBytes(params.maxEdge, shortEdge, params.quality) * sizeFactor <= budgetBytes) {
+                break;
+            }
+        }
+        // 限制范围内没有档位时退回到下限
+        return chosen != null ? chosen : floor;
+    }
+
+    private Params clamp(Params params) {
+        if (withinLimits(params)) {
+            return params;
+        }
+        return params.maxEdge > ceiling.maxEdge ? ceiling : floor;
+    }
+
+    private boolean withinLimits(Params params) {
+        return params.maxEdge >= floor.maxEdge && params.maxEdge <= ceiling.maxEdge
+                && params.quality >= floor.quality && params.quality <= ceiling.quality;
+    }
+
+    // 粗略的请求体大小模型：像素数 x 每像素比特数（随质量增长）/ 8，再乘 Base64 的 4/3
+    // 只需单调、比例大致正确，绝对误差由 sizeFactor 校准
+    private static double estimateBytes(int width, int height, int quality) {
+        double bitsPerPixel = 0.3 + 0.02 * quality + (quality > 80 ? 0.05 * (quality - 80) : 0);
+        return (double) width * height * bitsPerPixel / 8 * 4 / 3;
+    }
+}
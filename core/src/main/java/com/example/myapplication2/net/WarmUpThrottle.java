@@ -0,0 +1,26 @@
+package com.example.myapplication2.net;
+
+// 预连接节流：空闲连接已覆盖所有健康节点，或距上次预连接不到 intervalMs 时跳过
+// 拍照界面在 onResume 和按下快门时都会预连接，节流避免短时间内重复建连
+public class WarmUpThrottle {
+    private final long intervalMs;
+    private long lastMs;
+    private boolean started;
+
+    public WarmUpThrottle(long intervalMs) {
+        if (intervalMs < 0) {
+            throw new IllegalArgumentException("预连接间隔无效: " + intervalMs);
+        }
+        this.intervalMs = intervalMs;
+    }
+
+    // 需要预连接时记下本次时间并返回 true；nowMs 取单调时钟
+    public synchronized boolean tryStart(long nowMs, int idleConnections, int healthyEndpoints) {
+        if (idleConnections >= healthyEndpoints || (started && nowMs - lastMs < intervalMs)) {
+            return false;
+        }
+        started = true;
+        lastMs = nowMs;
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.myapplication2.trace;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 一次识别从拍照到显示结果的追踪：各阶段结束时在所在线程调用 mark，时间取单调时钟 System.nanoTime
+// 阶段耗时只在上一阶段也有记录时才计入直方图，跳过的阶段（例如命中缓存）不会把间隔算到下一阶段头上；
+// 从中途开始的追踪（例如重新上传）以 firstStage 为起点
+public class PipelineTrace {
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    private final long id = nextId.getAndIncrement();
+    private final long startNanos = System.nanoTime();
+    private final Stage firstStage;
+    // 各阶段结束的时刻，0 表示没有记录
+    private final AtomicLongArray marks = new AtomicLongArray(Stage.values().length);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public PipelineTrace(Stage firstStage) {
+        this.firstStage = firstStage;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    // 同一阶段只记第一次，换节点重试或对冲时后完成的请求不会覆盖
+    public void mark(Stage stage) {
+        markAt(stage, System.nanoTime());
+    }
+
+    // 事后补记，nanoTime 为 System.nanoTime 的取值
+    public void markAt(Stage stage, long nanoTime) {
+        marks.compareAndSet(stage.ordinal(), 0, nanoTime);
+    }
+
+    // 只对一批追踪记一次时刻（多图请求）
+    public static void markAll(PipelineTrace[] traces, Stage stage) {
+        if (traces == null) {
+            return;
+        }
+        for (PipelineTrace trace : traces) {
+            if (trace != null) {
+                trace.mark(stage);
+            }
+        }
+    }
+
+    // 结束追踪，把各阶段和总耗时计入 stats；已结束或已放弃时返回 false
+    public boolean finish(TraceStats stats) {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        long last = 0;
+        for (Stage stage : Stage.values()) {
+            long duration = durationNanos(stage);
+            if (duration >= 0) {
+                stats.stage(stage).record(duration / 1000);
+            }
+            last = Math.max(last, marks.get(stage.ordinal()));
+        }
+        if (last != 0) {
+            stats.total().record((last - startNanos) / 1000);
+        }
+        return true;
+    }
+
+    // 被新照片取代、失败重试等不具代表性的追踪，不计入统计
+    public void abandon() {
+        closed.set(true);
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    // 阶段耗时；本阶段或上一阶段没有记录时返回 -1
+    public long durationNanos(Stage stage) {
+        long end = marks.get(stage.ordinal());
+        if (end == 0 || stage.ordinal() < firstStage.ordinal()) {
+            return -1;
+        }
+        long begin = stage == firstStage ? startNanos : marks.get(stage.ordinal() - 1);
+        return begin != 0 ? end - begin : -1;
+    }
+
+    // 例如 "#12 拍照 420ms, 写入照片 35ms, ..."
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("#").append(id);
+        String separator = " ";
+        for (Stage stage : Stage.values()) {
+            long duration = durationNanos(stage);
+            if (duration >= 0) {
+                sb.append(separator).append(stage.label).append(' ').append(duration / 1_000_000).append("ms");
+                separator = ", ";
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.myapplication2.trace;
+
+// 一次识别经过的阶段，按先后顺序排列；每个阶段的耗时从上一阶段结束算到本阶段结束
+// 请求体（Base64 / JSON）边编码边写到连接上，编码与发送合在 UPLOAD 里；
+// 流式响应的 SERVER 到开始输出为止，之后的生成时间计入 PARSE
+public enum Stage {
+    CAPTURE("拍照"),
+    JPEG_WRITE("写入照片"),
+    PROCESS("解码/旋转/滤镜"),
+    SAVE("保存到相册"),
+    ENCODE("上传 JPEG 编码"),
+    QUEUE("排队等待"),
+    UPLOAD("编码并发送请求"),
+    SERVER("等待服务器"),
+    PARSE("读取解析响应"),
+    RENDER("界面显示");
+
+    public final String label;
+
+    Stage(String label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.myapplication2.trace;
+
+import java.util.Locale;
+
+// 各阶段和端到端总耗时的直方图
+public class TraceStats {
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    public TraceStats() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    public LatencyHistogram stage(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    public LatencyHistogram total() {
+        return total;
+    }
+
+    // 每个有数据的阶段一行：次数和 p50/p95/p99/最大值（毫秒）
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-14s %5s %7s %7s %7s %7s%n", "stage", "n", "p50", "p95", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            appendRow(sb, stage.name(), stages[stage.ordinal()]);
+        }
+        appendRow(sb, "TOTAL", total);
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, LatencyHistogram histogram) {
+        if (histogram.count() == 0) {
+            return;
+        }
+        sb.append(String.format(Locale.US, "%-14s %5d %7s %7s %7s %7s%n", name, histogram.count(),
+                millis(histogram.percentileMicros(0.50)), millis(histogram.percentileMicros(0.95)),
+                millis(histogram.percentileMicros(0.99)), millis(histogram.maxMicros())));
+    }
+
+    private static String millis(long micros) {
+        return micros < 10_000
+                ? String.format(Locale.US, "%.1f", micros / 1000.0)
+                : String.valueOf(micros / 1000);
+    }
+}
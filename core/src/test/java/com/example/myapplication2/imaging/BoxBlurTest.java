@@ -0,0 +1,127 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BoxBlurTest {
+
+    // 逐像素直接求窗口平均（边缘按最近像素延伸），先水平后垂直，每遍四舍五入
+    private static int[] naiveBox(int[] src, int width, int height, int radius) {
+        int[] horizontal = new int[src.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                horizontal[y * width + x] = average(src, width, height, x, y, radius, true);
+            }
+        }
+        int[] out = new int[src.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                out[y * width + x] = average(horizontal, width, height, x, y, radius, false);
+            }
+        }
+        return out;
+    }
+
+    private static int average(int[] src, int width, int height, int x, int y, int radius, boolean rows) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int sum = 0;
+            for (int d = -radius; d <= radius; d++) {
+                int sx = rows ? Math.max(0, Math.min(width - 1, x + d)) : x;
+                int sy = rows ? y : Math.max(0, Math.min(height - 1, y + d));
+                sum += TestFrames.channel(src[sy * width + sx], shift);
+            }
+            result |= Math.round((float) sum / (radius * 2 + 1)) << shift;
+        }
+        return result;
+    }
+
+    @Test
+    public void matchesNaiveWindowAverage() {
+        int width = 37;
+        int height = 23;
+        for (int radius : new int[] {1, 2, 5, 30}) {
+            int[] pixels = TestFrames.random(width, height, radius);
+            int[] expected = naiveBox(pixels, width, height, radius);
+            BoxBlur.box(pixels, new int[width * height], width, height, radius);
+            for (int i = 0; i < pixels.length; i++) {
+                // 除法换成定点乘法，和逐遍四舍五入的参照最多差 1
+                assertTrue("radius " + radius + " pixel " + i,
+                        TestFrames.maxChannelDiff(expected[i], pixels[i]) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void uniformImageIsUnchanged() {
+        int[] pixels = new int[40 * 30];
+        Arrays.fill(pixels, 0xC0336699);
+        int[] expected = pixels.clone();
+        BoxBlur.gaussian(pixels, new int[pixels.length], 40, 30, 4f);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void zeroRadiusAndSigmaAreNoOps() {
+        int[] pixels = TestFrames.random(16, 16, 7);
+        int[] expected = pixels.clone();
+        BoxBlur.box(pixels, new int[pixels.length], 16, 16, 0);
+        BoxBlur.gaussian(pixels, new int[pixels.length], 16, 16, 0f);
+        assertArrayEquals(expected, pixels);
+        assertArrayEquals(new int[3], BoxBlur.gaussianRadii(0f, 3));
+    }
+
+    @Test
+    public void gaussianRadiiMatchRequestedVariance() {
+        for (float sigma : new float[] {1f, 2.5f, 6f, 20f}) {
+            double variance = 0;
+            for (int radius : BoxBlur.gaussianRadii(sigma, 3)) {
+                int size = radius * 2 + 1;
+                variance += (size * size - 1) / 12.0;
+            }
+            // 半径只能取整数，方差与 sigma^2 的差不超过一次半径变化的量
+            assertEquals("sigma " + sigma, sigma * sigma, variance, 2 * sigma + 1);
+        }
+    }
+
+    @Test
+    public void singleBrightPixelSpreadsSymmetrically() {
+        int size = 21;
+        int[] pixels = new int[size * size];
+        Arrays.fill(pixels, 0xFF000000);
+        pixels[10 * size + 10] = 0xFFFFFFFF;
+        BoxBlur.gaussian(pixels, new int[pixels.length], size, size, 2f);
+        for (int d = 1; d <= 5; d++) {
+            assertEquals(pixels[10 * size + 10 - d], pixels[10 * size + 10 + d]);
+            assertEquals(pixels[(10 - d) * size + 10], pixels[(10 + d) * size + 10]);
+        }
+        assertTrue(TestFrames.channel(pixels[10 * size + 10], 0) > TestFrames.channel(pixels[10 * size + 12], 0));
+    }
+
+    @Test
+    public void columnSumsAreBorrowedFromSharedPool() {
+        // 列累加和用完归还共享池，第二次模糊复用同一批数组，池的占用不再增长
+        BufferPool pool = BufferPool.shared();
+        pool.clear();
+        TileExecutor.setSingleThreaded(true);
+        try {
+            int[] pixels = new int[64 * 32];
+            BoxBlur.box(pixels, new int[pixels.length], 64, 32, 2);
+            long retained = pool.getCurrentBytes();
+            assertTrue(retained >= 4 * 64 * 4);
+            BoxBlur.box(pixels, new int[pixels.length], 64, 32, 2);
+            assertEquals(retained, pool.getCurrentBytes());
+        } finally {
+            TileExecutor.setSingleThreaded(false);
+            pool.clear();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortScratchBuffer() {
+        BoxBlur.box(new int[100], new int[99], 10, 10, 1);
+    }
+}
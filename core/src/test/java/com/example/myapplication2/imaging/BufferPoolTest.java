@@ -0,0 +1,89 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void releasedBufferIsReusedForSameOrSlightlySmallerRequests() {
+        BufferPool pool = new BufferPool(1 << 20);
+        int[] buffer = pool.acquireInts(1000);
+        assertEquals(1000, buffer.length);
+        pool.releaseInts(buffer);
+        assertEquals(4000, pool.getCurrentBytes());
+
+        // 最多多出 1/4：1000 可以满足 800，不能满足 799
+        assertNotSame(buffer, pool.acquireInts(799));
+        assertSame(buffer, pool.acquireInts(800));
+        assertEquals(0, pool.getCurrentBytes());
+    }
+
+    @Test
+    public void smallerBufferNeverServesLargerRequest() {
+        BufferPool pool = new BufferPool(1 << 20);
+        int[] small = new int[100];
+        pool.releaseInts(small);
+        assertNotSame(small, pool.acquireInts(101));
+    }
+
+    @Test
+    public void intAndByteBuffersArePooledSeparately() {
+        BufferPool pool = new BufferPool(1 << 20);
+        byte[] bytes = new byte[64];
+        int[] ints = new int[64];
+        pool.releaseBytes(bytes);
+        pool.releaseInts(ints);
+        assertEquals(64 + 64 * 4, pool.getCurrentBytes());
+        assertSame(ints, pool.acquireInts(64));
+        assertSame(bytes, pool.acquireBytes(64));
+    }
+
+    @Test
+    public void releasingTwiceKeepsOneCopy() {
+        BufferPool pool = new BufferPool(1 << 20);
+        int[] buffer = new int[10];
+        pool.releaseInts(buffer);
+        pool.releaseInts(buffer);
+        assertEquals(40, pool.getCurrentBytes());
+        assertSame(buffer, pool.acquireInts(10));
+        assertNotSame(buffer, pool.acquireInts(10));
+    }
+
+    @Test
+    public void overLimitEvictsLeastRecentlyReleased() {
+        BufferPool pool = new BufferPool(1000);
+        int[] oldest = new int[100];
+        int[] newer = new int[100];
+        pool.releaseInts(oldest);
+        pool.releaseInts(newer);
+        int[] newest = new int[100];
+        pool.releaseInts(newest);
+        assertEquals(800, pool.getCurrentBytes());
+        // 同样长度时先借出最近归还的
+        assertSame(newest, pool.acquireInts(100));
+        assertSame(newer, pool.acquireInts(100));
+        assertNotSame(oldest, pool.acquireInts(100));
+    }
+
+    @Test
+    public void buffersLargerThanLimitAreNotPooled() {
+        BufferPool pool = new BufferPool(100);
+        pool.releaseInts(new int[26]);
+        assertEquals(0, pool.getCurrentBytes());
+    }
+
+    @Test
+    public void shrinkingLimitAndClearDropBuffers() {
+        BufferPool pool = new BufferPool(1 << 20);
+        pool.releaseInts(new int[100]);
+        pool.releaseBytes(new byte[100]);
+        pool.setMaxBytes(150);
+        assertEquals(100, pool.getCurrentBytes());
+        pool.clear();
+        assertEquals(0, pool.getCurrentBytes());
+        pool.releaseInts(null);
+        assertEquals(0, pool.getCurrentBytes());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ColorChainTest {
+
+    // 用浮点按矩阵逐个操作计算，作为定点合成结果的参照；与合成矩阵一样只在最后截断到 [0, 255]
+    private static int reference(int pixel, ColorChain.Op... ops) {
+        float[] c = {
+                TestFrames.channel(pixel, 16), TestFrames.channel(pixel, 8),
+                TestFrames.channel(pixel, 0), TestFrames.channel(pixel, 24)
+        };
+        for (ColorChain.Op op : ops) {
+            float[] m = op.matrix;
+            float[] next = new float[4];
+            for (int row = 0; row < 4; row++) {
+                float v = m[row * 5] * c[0] + m[row * 5 + 1] * c[1] + m[row * 5 + 2] * c[2]
+                        + m[row * 5 + 3] * c[3] + m[row * 5 + 4];
+                next[row] = v;
+            }
+            c = next;
+        }
+        for (int i = 0; i < 4; i++) {
+            c[i] = Math.max(0, Math.min(255, c[i]));
+        }
+        return Math.round(c[3]) << 24 | Math.round(c[0]) << 16 | Math.round(c[1]) << 8 | Math.round(c[2]);
+    }
+
+    @Test
+    public void fusedChainMatchesSequentialFloatApplication() {
+        ColorChain.Op[] ops = {ColorChain.sepia(), ColorChain.contrast(1.2f), ColorChain.saturation(0.7f)};
+        int[] pixels = TestFrames.random(64, 64, 1);
+        int[] fused = pixels.clone();
+        new ColorChain(ops).compile().apply(fused, 0, fused.length);
+
+        for (int i = 0; i < pixels.length; i++) {
+            assertTrue("pixel " + i, TestFrames.maxChannelDiff(reference(pixels[i], ops), fused[i]) <= 1);
+        }
+    }
+
+    @Test
+    public void invertTwiceIsExactIdentity() {
+        int[] pixels = TestFrames.random(32, 32, 2);
+        int[] out = pixels.clone();
+        new ColorChain(ColorChain.invert(), ColorChain.invert()).compile().apply(out, 0, out.length);
+        assertArrayEquals(pixels, out);
+    }
+
+    @Test
+    public void grayscaleKeepsAlphaAndEqualizesChannels() {
+        int[] pixels = {0x80FF0000, 0x4000FF00, 0x000000FF, 0xFF123456};
+        int[] out = pixels.clone();
+        new ColorChain(ColorChain.grayscale()).compile().apply(out, 0, out.length);
+        for (int i = 0; i < out.length; i++) {
+            assertEquals(pixels[i] >>> 24, out[i] >>> 24);
+            assertEquals(TestFrames.channel(out[i], 16), TestFrames.channel(out[i], 8));
+            assertEquals(TestFrames.channel(out[i], 8), TestFrames.channel(out[i], 0));
+        }
+        // 与 ColorMatrix.setSaturation(0) 相同的权重
+        assertEquals(Math.round(0.213f * 255), TestFrames.channel(out[0], 16));
+    }
+
+    @Test
+    public void resultsAreClampedToChannelRange() {
+        int[] out = {0xFFFFFFFF, 0xFF000000};
+        new ColorChain(ColorChain.brightness(3f), ColorChain.contrast(4f)).compile().apply(out, 0, out.length);
+        assertEquals(0xFFFFFFFF, out[0]);
+        assertEquals(0xFF000000, out[1]);
+    }
+
+    @Test
+    public void applyWithOffsetsLeavesOtherPixelsUntouched() {
+        int[] src = TestFrames.random(10, 1, 3);
+        int[] dst = new int[12];
+        new ColorChain(ColorChain.invert()).compile().apply(src, 2, dst, 1, 5);
+        assertEquals(0, dst[0]);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(src[2 + i] ^ 0x00FFFFFF, dst[1 + i]);
+        }
+        assertEquals(0, dst[6]);
+    }
+
+    @Test
+    public void emptyChainComposesToIdentity() {
+        assertTrue(new ColorChain().isEmpty());
+        assertArrayEquals(ColorChain.identity(), new ColorChain().compose(), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void customRejectsWrongMatrixSize() {
+        ColorChain.custom("bad", new float[16]);
+    }
+}
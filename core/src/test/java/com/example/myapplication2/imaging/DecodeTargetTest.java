@@ -0,0 +1,63 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecodeTargetTest {
+
+    @Test
+    public void twelveMegapixelPhotoSamplesByTwoThenScalesToTarget() {
+        DecodeTarget target = DecodeTarget.compute(4000, 3000, 1024, 1024);
+        assertEquals(2, target.sampleSize);
+        assertTrue(target.isScaled());
+        assertEquals(1024, target.outputSize(4000));
+        assertEquals(768, target.outputSize(3000));
+    }
+
+    @Test
+    public void exactPowerOfTwoNeedsNoDensityScaling() {
+        DecodeTarget target = DecodeTarget.compute(4096, 3072, 1024, 1024);
+        assertEquals(4, target.sampleSize);
+        assertFalse(target.isScaled());
+        assertEquals(1024, target.outputSize(4096));
+        assertEquals(768, target.outputSize(3072));
+    }
+
+    @Test
+    public void tighterEdgeDecidesTheScale() {
+        // 竖图：高度受限
+        DecodeTarget target = DecodeTarget.compute(3000, 4000, 2048, 1024);
+        assertEquals(1024, target.outputSize(4000));
+        assertTrue(target.outputSize(3000) <= 2048);
+    }
+
+    @Test
+    public void outputNeverExceedsTargetAndSampleIsLargestPossible() {
+        int[][] sizes = {{4000, 3000}, {4032, 3024}, {1920, 1080}, {1025, 1025}, {5000, 100}, {640, 480}};
+        for (int[] size : sizes) {
+            DecodeTarget target = DecodeTarget.compute(size[0], size[1], 1024, 1024);
+            String label = size[0] + "x" + size[1];
+            assertTrue(label, target.outputSize(size[0]) <= 1024);
+            assertTrue(label, target.outputSize(size[1]) <= 1024);
+            // 再采样一倍就会小于目标尺寸
+            int edge = Math.max(size[0], size[1]);
+            assertTrue(label, edge / (target.sampleSize * 2) < 1024);
+        }
+    }
+
+    @Test
+    public void smallerThanTargetIsDecodedAsIs() {
+        DecodeTarget target = DecodeTarget.compute(640, 480, 1024, 1024);
+        assertEquals(1, target.sampleSize);
+        assertFalse(target.isScaled());
+        assertEquals(640, target.outputSize(640));
+    }
+
+    @Test
+    public void unknownSizeDecodesWithoutScaling() {
+        DecodeTarget target = DecodeTarget.compute(0, -1, 1024, 1024);
+        assertEquals(1, target.sampleSize);
+        assertFalse(target.isScaled());
+    }
+}
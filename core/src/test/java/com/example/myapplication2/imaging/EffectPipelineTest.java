@@ -0,0 +1,89 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class EffectPipelineTest {
+
+    @Test
+    public void describeGivesEachEffectItsOwnKey() {
+        Set<String> keys = new HashSet<>();
+        for (ProcessType processType : ProcessType.values()) {
+            String key = EffectPipeline.describe(processType);
+            assertFalse(processType + " 的描述为空", key.isEmpty());
+            assertTrue(processType + " 与其他效果同名: " + key, keys.add(key));
+        }
+    }
+
+    @Test
+    public void describeDependsOnOrder() {
+        // 颜色矩阵不可交换，顺序不同结果不同，缓存键也必须不同
+        assertNotEquals(EffectPipeline.describe(ProcessType.GRAYSCALE, ProcessType.INVERT),
+                EffectPipeline.describe(ProcessType.INVERT, ProcessType.GRAYSCALE));
+        assertNotEquals(EffectPipeline.describe(ProcessType.BLUR, ProcessType.SHARPEN),
+                EffectPipeline.describe(ProcessType.SHARPEN, ProcessType.BLUR));
+    }
+
+    @Test
+    public void describeDistinguishesRepeatsAndEmptyChain() {
+        assertEquals("", EffectPipeline.describe());
+        assertNotEquals(EffectPipeline.describe(ProcessType.BRIGHTNESS),
+                EffectPipeline.describe(ProcessType.BRIGHTNESS, ProcessType.BRIGHTNESS));
+    }
+
+    @Test
+    public void describeIsStable() {
+        ProcessType[] chain = {ProcessType.AUTO_LEVELS, ProcessType.SEPIA, ProcessType.BLUR, ProcessType.SHARPEN};
+        assertEquals(EffectPipeline.describe(chain), EffectPipeline.describe(chain.clone()));
+    }
+
+    @Test
+    public void cancelledRunStopsBetweenEffects() {
+        int[] pixels = TestFrames.photo(64, 48, 1);
+        final AtomicInteger checks = new AtomicInteger();
+        // 第二次检查时取消：第一个效果已执行，之后的不再执行
+        Cancellation cancellation = () -> checks.incrementAndGet() >= 2;
+        try {
+            EffectPipeline.run(pixels, new int[pixels.length], 64, 48, cancellation,
+                    ProcessType.BLUR, ProcessType.SHARPEN, ProcessType.INVERT);
+            fail();
+        } catch (CancellationException expected) {
+            assertEquals(2, checks.get());
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void alreadyCancelledRunDoesNothing() {
+        EffectPipeline.run(new int[16], null, 4, 4, () -> true, ProcessType.GRAYSCALE);
+    }
+
+    @Test
+    public void trailingColorChainChecksCancellation() {
+        final AtomicInteger checks = new AtomicInteger();
+        int[] pixels = TestFrames.random(8, 8, 2);
+        int[] expected = pixels.clone();
+        try {
+            // 只有颜色类效果时，合并后的矩阵在最后统一执行前也要检查
+            EffectPipeline.run(pixels, null, 8, 8, () -> checks.incrementAndGet() > 2,
+                    ProcessType.GRAYSCALE, ProcessType.INVERT);
+            fail();
+        } catch (CancellationException e) {
+            assertArrayEquals(expected, pixels);
+        }
+    }
+
+    @Test
+    public void noneNeverCancels() {
+        int[] source = TestFrames.random(8, 8, 3);
+        int[] result = EffectPipeline.run(source.clone(), null, 8, 8, Cancellation.NONE, ProcessType.INVERT);
+        for (int i = 0; i < source.length; i++) {
+            assertTrue(TestFrames.maxChannelDiff(source[i] ^ 0x00FFFFFF, result[i]) <= 1);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void computeMatchesSerialCount() {
+        int width = 301;
+        int height = 257;
+        int[] pixels = TestFrames.random(width, height, 9);
+        Histogram histogram = Histogram.compute(pixels, width, height);
+
+        int[] red = new int[256];
+        int[] luma = new int[256];
+        for (int p : pixels) {
+            int r = TestFrames.channel(p, 16);
+            red[r]++;
+            luma[Histogram.luma(r, TestFrames.channel(p, 8), TestFrames.channel(p, 0))]++;
+        }
+        assertEquals(pixels.length, histogram.getCount());
+        assertArrayEquals(red, histogram.red);
+        assertArrayEquals(luma, histogram.luma);
+    }
+
+    @Test
+    public void sampledComputeVisitsEveryStepthRowAndColumn() {
+        int width = 100;
+        int height = 70;
+        int[] pixels = TestFrames.random(width, height, 10);
+        Histogram histogram = Histogram.compute(pixels, width, height, 3);
+
+        int[] green = new int[256];
+        for (int y = 0; y < height; y += 3) {
+            for (int x = 0; x < width; x += 3) {
+                green[TestFrames.channel(pixels[y * width + x], 8)]++;
+            }
+        }
+        assertEquals(34 * 24, histogram.getCount());
+        assertArrayEquals(green, histogram.green);
+    }
+
+    @Test
+    public void percentileAndMean() {
+        int[] histogram = new int[256];
+        histogram[10] = 50;
+        histogram[200] = 50;
+        assertEquals(10, Histogram.percentile(histogram, 100, 0.01f));
+        assertEquals(200, Histogram.percentile(histogram, 100, 0.99f));
+        assertEquals(105f, Histogram.mean(histogram, 100), 1e-3f);
+        assertEquals(127.5f, Histogram.mean(new int[256], 0), 0f);
+    }
+
+    @Test
+    public void lumaOfGrayIsNearlyIdentity() {
+        for (int v = 0; v < 256; v++) {
+            assertTrue(Math.abs(Histogram.luma(v, v, v) - v) <= 1);
+        }
+    }
+}
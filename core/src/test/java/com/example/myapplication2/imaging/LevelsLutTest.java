@@ -0,0 +1,109 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LevelsLutTest {
+
+    // 各通道取值落在 [low, high] 内的渐变
+    private static int[] narrowRange(int width, int height, int low, int high) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            int v = low + i % (high - low + 1);
+            pixels[i] = 0xFF000000 | v << 16 | (high + low - v) << 8 | v;
+        }
+        return pixels;
+    }
+
+    @Test
+    public void autoLevelsStretchesToFullRange() {
+        int[] pixels = narrowRange(101, 100, 50, 150);
+        LevelsLut.autoLevels(Histogram.compute(pixels, 101, 100), 0f, false).applyFrame(pixels, 101, 100);
+        int min = 255;
+        int max = 0;
+        for (int p : pixels) {
+            for (int shift = 0; shift < 24; shift += 8) {
+                min = Math.min(min, TestFrames.channel(p, shift));
+                max = Math.max(max, TestFrames.channel(p, shift));
+            }
+        }
+        assertEquals(0, min);
+        assertEquals(255, max);
+    }
+
+    @Test
+    public void autoContrastKeepsGrayPixelsGray() {
+        int width = 64;
+        int height = 64;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            int v = 80 + i % 60;
+            pixels[i] = 0xFF000000 | v << 16 | v << 8 | v;
+        }
+        LevelsLut.autoContrast(Histogram.compute(pixels, width, height), 0.005f, true)
+                .applyFrame(pixels, width, height);
+        for (int p : pixels) {
+            assertEquals(TestFrames.channel(p, 16), TestFrames.channel(p, 8));
+            assertEquals(TestFrames.channel(p, 8), TestFrames.channel(p, 0));
+        }
+    }
+
+    @Test
+    public void singleColorIsLeftUnchanged() {
+        int[] pixels = new int[32 * 32];
+        java.util.Arrays.fill(pixels, 0xFF336699);
+        int[] expected = pixels.clone();
+        LevelsLut.autoLevels(Histogram.compute(pixels, 32, 32), 0.005f, false).applyFrame(pixels, 32, 32);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void autoGammaLiftsDarkFrameTowardMidtone() {
+        int width = 128;
+        int height = 128;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            // 大部分像素很暗，少量亮像素撑满范围，拉伸后平均亮度仍然偏暗
+            int v = i % 16 == 0 ? 255 : i % 40;
+            pixels[i] = 0xFF000000 | v << 16 | v << 8 | v;
+        }
+        Histogram before = Histogram.compute(pixels, width, height);
+        int[] plain = pixels.clone();
+        LevelsLut.autoContrast(before, 0f, false).applyFrame(plain, width, height);
+        LevelsLut.autoContrast(before, 0f, true).applyFrame(pixels, width, height);
+
+        float plainMean = Histogram.mean(Histogram.compute(plain, width, height).luma, plain.length);
+        float gammaMean = Histogram.mean(Histogram.compute(pixels, width, height).luma, pixels.length);
+        assertTrue(plainMean + " -> " + gammaMean, gammaMean > plainMean);
+        assertTrue(Math.abs(gammaMean - 128) < Math.abs(plainMean - 128));
+    }
+
+    @Test
+    public void gammaCurve() {
+        int[] pixels = {0xFF000000, 0x80808080, 0xFFFFFFFF};
+        LevelsLut.gamma(2f).apply(pixels, 0, pixels.length);
+        assertEquals(0xFF000000, pixels[0]);
+        // 255 * (128 / 255)^2 = 64.25，alpha 不变
+        assertEquals(0x80404040, pixels[1]);
+        assertEquals(0xFFFFFFFF, pixels[2]);
+    }
+
+    @Test
+    public void applyRespectsOffsetAndCount() {
+        int[] pixels = {0xFF101010, 0xFF101010, 0xFF101010};
+        new LevelsLut(constant(7), constant(8), constant(9)).apply(pixels, 1, 1);
+        assertArrayEquals(new int[] {0xFF101010, 0xFF070809, 0xFF101010}, pixels);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortTable() {
+        new LevelsLut(new int[255], new int[256], new int[256]);
+    }
+
+    private static int[] constant(int value) {
+        int[] lut = new int[256];
+        java.util.Arrays.fill(lut, value);
+        return lut;
+    }
+}
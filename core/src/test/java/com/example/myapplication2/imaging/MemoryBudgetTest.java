@@ -0,0 +1,97 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void gaugesSumToTotalAndPeakIsKept() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        budget.charge(MemoryBudget.Gauge.DECODE, 300);
+        budget.charge(MemoryBudget.Gauge.PROCESSED, 200);
+        budget.set(MemoryBudget.Gauge.POOL, 100);
+        assertEquals(600, budget.total());
+        budget.discharge(MemoryBudget.Gauge.DECODE, 300);
+        budget.set(MemoryBudget.Gauge.POOL, 50);
+        assertEquals(0, budget.get(MemoryBudget.Gauge.DECODE));
+        assertEquals(250, budget.total());
+        assertEquals(600, budget.peak());
+    }
+
+    @Test
+    public void levelFollowsHighWaterAndLimit() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        budget.charge(MemoryBudget.Gauge.PREVIEW, 749);
+        assertEquals(MemoryBudget.Level.NORMAL, budget.level());
+        budget.charge(MemoryBudget.Gauge.PREVIEW, 1);
+        assertEquals(MemoryBudget.Level.HIGH, budget.level());
+        budget.charge(MemoryBudget.Gauge.PREVIEW, 250);
+        assertEquals(MemoryBudget.Level.CRITICAL, budget.level());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveLimit() {
+        new MemoryBudget(1000).setLimit(0);
+    }
+
+    @Test
+    public void makeRoomStopsOnceUnderHighWater() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        budget.set(MemoryBudget.Gauge.POOL, 400);
+        budget.charge(MemoryBudget.Gauge.PROCESSED, 300);
+        List<Long> calls = new ArrayList<>();
+        budget.addReclaimer(bytes -> {
+            calls.add(bytes);
+            budget.set(MemoryBudget.Gauge.POOL, Math.max(0, budget.get(MemoryBudget.Gauge.POOL) - bytes));
+        });
+        budget.addReclaimer(bytes -> fail("池已经腾出足够空间，不应再淘汰缓存"));
+
+        // 700 + 200 超过高水位 750 共 150
+        assertTrue(budget.makeRoom(200));
+        assertEquals(1, calls.size());
+        assertEquals(150L, (long) calls.get(0));
+        assertEquals(550, budget.total());
+        assertTrue(budget.toString().contains("reclaimed=0KB, denied=0"));
+    }
+
+    @Test
+    public void noReclaimerRunsBelowHighWater() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        budget.addReclaimer(bytes -> fail("不需要释放"));
+        assertTrue(budget.makeRoom(750));
+    }
+
+    @Test
+    public void deniesWhenNothingCanBeFreed() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        budget.charge(MemoryBudget.Gauge.DECODE, 900);
+        budget.addReclaimer(bytes -> { });
+        assertTrue(budget.makeRoom(100));
+        assertFalse(budget.makeRoom(101));
+        assertTrue(budget.toString().endsWith("denied=1}"));
+    }
+
+    @Test
+    public void reclaimerAfterMovingBytesFreesThem() {
+        // 淘汰缓存只是把位图从 PROCESSED 移到 POOL，要靠后面再清理一次池才真正释放
+        MemoryBudget budget = new MemoryBudget(4096);
+        budget.charge(MemoryBudget.Gauge.PROCESSED, 3072);
+        Runnable trimPool = () -> budget.set(MemoryBudget.Gauge.POOL, 0);
+        budget.addReclaimer(bytes -> trimPool.run());
+        budget.addReclaimer(bytes -> {
+            budget.discharge(MemoryBudget.Gauge.PROCESSED, 2048);
+            budget.set(MemoryBudget.Gauge.POOL, budget.get(MemoryBudget.Gauge.POOL) + 2048);
+        });
+        budget.addReclaimer(bytes -> trimPool.run());
+
+        assertTrue(budget.makeRoom(2048));
+        assertEquals(1024, budget.total());
+        assertEquals(0, budget.get(MemoryBudget.Gauge.POOL));
+        assertTrue(budget.toString().contains("reclaimed=2KB"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OrientationTest {
+
+    // 不是分块宽度 32 的倍数，行数足够拆成多个条带
+    private static final int WIDTH = 67;
+    private static final int HEIGHT = 2100;
+
+    // 按 EXIF 定义逐像素取源坐标
+    private static int[] reference(int[] src, int width, int height, int orientation) {
+        int outWidth = Orientation.orientedWidth(orientation, width, height);
+        int outHeight = Orientation.orientedHeight(orientation, width, height);
+        int[] out = new int[src.length];
+        for (int y = 0; y < outHeight; y++) {
+            for (int x = 0; x < outWidth; x++) {
+                int sx;
+                int sy;
+                switch (orientation) {
+                    case Orientation.FLIP_HORIZONTAL: sx = width - 1 - x; sy = y; break;
+                    case Orientation.ROTATE_180: sx = width - 1 - x; sy = height - 1 - y; break;
+                    case Orientation.FLIP_VERTICAL: sx = x; sy = height - 1 - y; break;
+                    case Orientation.TRANSPOSE: sx = y; sy = x; break;
+                    case Orientation.ROTATE_90: sx = y; sy = height - 1 - x; break;
+                    case Orientation.TRANSVERSE: sx = width - 1 - y; sy = height - 1 - x; break;
+                    case Orientation.ROTATE_270: sx = width - 1 - y; sy = x; break;
+                    default: sx = x; sy = y; break;
+                }
+                out[y * outWidth + x] = src[sy * width + sx];
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void allEightOrientationsMatchExifDefinition() {
+        int[] src = TestFrames.random(WIDTH, HEIGHT, 31);
+        for (int orientation = Orientation.NORMAL; orientation <= Orientation.ROTATE_270; orientation++) {
+            int[] dst = new int[src.length];
+            Orientation.transform(src, WIDTH, HEIGHT, orientation, dst, null);
+            assertArrayEquals("orientation " + orientation, reference(src, WIDTH, HEIGHT, orientation), dst);
+        }
+    }
+
+    @Test
+    public void fourQuarterTurnsRestoreTheImage() {
+        int[] image = TestFrames.random(WIDTH, 45, 32);
+        int width = WIDTH;
+        int height = 45;
+        int[] current = image;
+        for (int i = 0; i < 4; i++) {
+            int[] next = new int[current.length];
+            Orientation.transform(current, width, height, Orientation.ROTATE_90, next, null);
+            int swap = width;
+            width = height;
+            height = swap;
+            current = next;
+        }
+        assertArrayEquals(image, current);
+    }
+
+    @Test
+    public void fusedColorMatchesSeparatePass() {
+        int[] src = TestFrames.random(WIDTH, HEIGHT, 33);
+        ColorChain.Compiled sepia = new ColorChain(ColorChain.sepia()).compile();
+        int[] fused = new int[src.length];
+        Orientation.transform(src, WIDTH, HEIGHT, Orientation.ROTATE_270, fused, sepia);
+
+        int[] separate = new int[src.length];
+        Orientation.transform(src, WIDTH, HEIGHT, Orientation.ROTATE_270, separate, null);
+        sepia.apply(separate, 0, separate.length);
+        assertArrayEquals(separate, fused);
+    }
+
+    @Test
+    public void dimensionHelpers() {
+        assertFalse(Orientation.needsTransform(Orientation.UNDEFINED));
+        assertFalse(Orientation.needsTransform(Orientation.NORMAL));
+        assertTrue(Orientation.needsTransform(Orientation.FLIP_HORIZONTAL));
+        assertFalse(Orientation.swapsDimensions(Orientation.ROTATE_180));
+        assertTrue(Orientation.swapsDimensions(Orientation.ROTATE_90));
+        assertEquals(30, Orientation.orientedWidth(Orientation.ROTATE_270, 40, 30));
+        assertEquals(40, Orientation.orientedHeight(Orientation.TRANSPOSE, 40, 30));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInPlaceTransform() {
+        int[] pixels = new int[4];
+        Orientation.transform(pixels, 2, 2, Orientation.ROTATE_90, pixels, null);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PerceptualHashTest {
+
+    // 按相对坐标生成的平滑画面，不同分辨率下是同一个场景
+    private static int[] scene(int width, int height, long seed) {
+        Random random = new Random(seed);
+        double fx = 2 + random.nextDouble() * 6;
+        double fy = 2 + random.nextDouble() * 6;
+        double phase = random.nextDouble() * Math.PI * 2;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double u = (double) x / width;
+                double v = (double) y / height;
+                int value = (int) (128 + 70 * Math.sin(u * fx + phase) + 40 * Math.cos(v * fy * u - phase));
+                pixels[y * width + x] = 0xFF000000 | value << 16 | value << 8 | value;
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] brighten(int[] pixels, int delta) {
+        int[] out = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int v = TestFrames.clamp(TestFrames.channel(pixels[i], 0) + delta);
+            out[i] = 0xFF000000 | v << 16 | v << 8 | v;
+        }
+        return out;
+    }
+
+    @Test
+    public void horizontalGradientSetsEveryBit() {
+        int[] pixels = new int[180 * 80];
+        for (int i = 0; i < pixels.length; i++) {
+            int v = i % 180;
+            pixels[i] = 0xFF000000 | v << 16 | v << 8 | v;
+        }
+        assertEquals(-1L, PerceptualHash.dHash(pixels, 180, 80));
+    }
+
+    @Test
+    public void sameSceneAtDifferentSizesIsClose() {
+        // 大图超过抽样上限，走按步长抽样的路径
+        for (long seed = 0; seed < 10; seed++) {
+            long large = PerceptualHash.dHash(scene(1600, 1200, seed), 1600, 1200);
+            long small = PerceptualHash.dHash(scene(320, 240, seed), 320, 240);
+            assertTrue("seed " + seed, PerceptualHash.distance(large, small) <= 6);
+        }
+    }
+
+    @Test
+    public void brightnessChangeIsClose() {
+        int[] pixels = scene(400, 300, 42);
+        long hash = PerceptualHash.dHash(pixels, 400, 300);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(brighten(pixels, 25), 400, 300)) <= 6);
+    }
+
+    @Test
+    public void differentScenesAreFar() {
+        int far = 0;
+        for (long seed = 0; seed < 10; seed++) {
+            long a = PerceptualHash.dHash(TestFrames.random(320, 240, seed), 320, 240);
+            long b = PerceptualHash.dHash(scene(320, 240, seed + 100), 320, 240);
+            if (PerceptualHash.distance(a, b) > 16) {
+                far++;
+            }
+        }
+        assertTrue(far >= 9);
+    }
+
+    @Test
+    public void distanceCountsDifferingBits() {
+        assertEquals(0, PerceptualHash.distance(0x1234L, 0x1234L));
+        assertEquals(64, PerceptualHash.distance(0L, -1L));
+        assertEquals(2, PerceptualHash.distance(0b1010L, 0b0110L));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SharpenTest {
+
+    // 参照实现：整帧模糊后逐像素合成 out = c + amount * (c - blur)
+    private static int[] reference(int[] src, int width, int height, Sharpen.Params params) {
+        int[] blurred = src.clone();
+        if (params.radius <= 1f) {
+            blurred = mean3x3(src, width, height);
+        } else {
+            BoxBlur.gaussian(blurred, new int[src.length], width, height, params.radius);
+        }
+        int[] out = new int[src.length];
+        for (int i = 0; i < src.length; i++) {
+            int result = src[i] & 0xFF000000;
+            for (int shift = 0; shift < 24; shift += 8) {
+                int c = TestFrames.channel(src[i], shift);
+                float diff = c - (params.radius <= 1f
+                        ? Float.intBitsToFloat(blurred[i * 3 + shift / 8])
+                        : TestFrames.channel(blurred[i], shift));
+                int v = Math.abs(diff) < params.threshold ? c : TestFrames.clamp(Math.round(c + params.amount * diff));
+                result |= v << shift;
+            }
+            out[i] = result;
+        }
+        return out;
+    }
+
+    // 3x3 均值（浮点，按通道存放），边缘按最近像素延伸
+    private static int[] mean3x3(int[] src, int width, int height) {
+        int[] out = new int[src.length * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int sum = 0;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int sx = Math.max(0, Math.min(width - 1, x + dx));
+                            int sy = Math.max(0, Math.min(height - 1, y + dy));
+                            sum += TestFrames.channel(src[sy * width + sx], shift);
+                        }
+                    }
+                    out[(y * width + x) * 3 + shift / 8] = Float.floatToIntBits(sum / 9f);
+                }
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void gaussianPathMatchesFullFrameReference() {
+        int width = 45;
+        int height = 38;
+        int[] src = TestFrames.photo(width, height, 11);
+        Sharpen.Params params = new Sharpen.Params(1.5f, 2.5f, 0);
+        int[] dst = new int[src.length];
+        Sharpen.unsharpMask(src, dst, width, height, params);
+        assertArrayEquals(reference(src, width, height, params), dst);
+    }
+
+    @Test
+    public void kernel3x3MatchesReferenceWithinRounding() {
+        int width = 30;
+        int height = 20;
+        int[] src = TestFrames.random(width, height, 12);
+        Sharpen.Params params = new Sharpen.Params(0.8f, 1f, 0);
+        int[] dst = new int[src.length];
+        Sharpen.unsharpMask(src, dst, width, height, params);
+        int[] expected = reference(src, width, height, params);
+        for (int i = 0; i < src.length; i++) {
+            // amount/9 用 8 位小数的定点数表示
+            assertTrue("pixel " + i, TestFrames.maxChannelDiff(expected[i], dst[i]) <= 2);
+        }
+    }
+
+    @Test
+    public void stripsWithHaloMatchOneFullStrip() {
+        int width = 33;
+        int height = 50;
+        int[] src = TestFrames.photo(width, height, 13);
+        Sharpen.Params params = new Sharpen.Params(1f, 4f, 1);
+
+        int[] whole = new int[src.length];
+        Sharpen.sharpenRows(src, whole, width, height, params, 0, height, null);
+
+        int[] tiled = new int[src.length];
+        int tileRows = 7;
+        int[] scratch = new int[Sharpen.scratchSize(width, height, tileRows, params)];
+        for (int row = 0; row < height; row += tileRows) {
+            Sharpen.sharpenRows(src, tiled, width, height, params, row, Math.min(row + tileRows, height), scratch);
+        }
+        assertArrayEquals(whole, tiled);
+    }
+
+    @Test
+    public void thresholdLeavesSmallDifferencesAndFlatAreasAlone() {
+        int[] flat = new int[20 * 20];
+        Arrays.fill(flat, 0x80405060);
+        int[] dst = new int[flat.length];
+        Sharpen.unsharpMask(flat, dst, 20, 20, Sharpen.Params.defaults());
+        assertArrayEquals(flat, dst);
+
+        // 噪声幅度 ±8，阈值 255 时什么也不改
+        int[] noisy = TestFrames.photo(20, 20, 14);
+        Sharpen.unsharpMask(noisy, dst, 20, 20, new Sharpen.Params(2f, 3f, 255));
+        assertArrayEquals(noisy, dst);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInPlaceProcessing() {
+        int[] pixels = new int[16];
+        Sharpen.sharpenRows(pixels, pixels, 4, 4, Sharpen.Params.defaults(), 0, 4, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsThresholdOutOfRange() {
+        new Sharpen.Params(1f, 1f, 256);
+    }
+}
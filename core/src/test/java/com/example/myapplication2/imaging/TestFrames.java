@@ -0,0 +1,53 @@
+package com.example.myapplication2.imaging;
+
+import java.util.Random;
+
+// 测试用的帧：固定种子的随机像素，以及逐点比较
+final class TestFrames {
+
+    private TestFrames() {
+    }
+
+    // 不透明的随机像素
+    static int[] random(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    // 渐变加噪声，接近照片的平滑程度
+    static int[] photo(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(17) - 8;
+                pixels[y * width + x] = 0xFF000000
+                        | clamp(x * 255 / width + noise) << 16
+                        | clamp(y * 255 / height + noise) << 8
+                        | clamp(128 + noise);
+            }
+        }
+        return pixels;
+    }
+
+    static int clamp(int v) {
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+
+    static int channel(int pixel, int shift) {
+        return (pixel >>> shift) & 0xFF;
+    }
+
+    // 各通道之差的最大值
+    static int maxChannelDiff(int a, int b) {
+        int max = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            max = Math.max(max, Math.abs(channel(a, shift) - channel(b, shift)));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.myapplication2.imaging;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class TileExecutorTest {
+
+    // 多个条带、多个列带的尺寸
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @After
+    public void restoreThreading() {
+        TileExecutor.setSingleThreaded(false);
+    }
+
+    private static int[] run(boolean singleThreaded, int[] frame, ProcessType... effects) {
+        TileExecutor.setSingleThreaded(singleThreaded);
+        return EffectPipeline.run(frame.clone(), new int[frame.length], WIDTH, HEIGHT, effects).clone();
+    }
+
+    @Test
+    public void multiThreadedOutputIsBitExact() {
+        assumeTrue("需要多核（gradle 测试任务固定为 4 核）", TileExecutor.getParallelism() > 1);
+        int[] frame = TestFrames.photo(WIDTH, HEIGHT, 21);
+        ProcessType[][] chains = {
+                {ProcessType.GRAYSCALE, ProcessType.CONTRAST},
+                {ProcessType.BLUR},
+                {ProcessType.SHARPEN},
+                {ProcessType.SEPIA, ProcessType.BLUR, ProcessType.SHARPEN, ProcessType.AUTO_LEVELS},
+                {ProcessType.AUTO_CONTRAST, ProcessType.INVERT},
+        };
+        for (ProcessType[] chain : chains) {
+            assertArrayEquals(Arrays.toString(chain), run(true, frame, chain), run(false, frame, chain));
+        }
+    }
+
+    @Test
+    public void stripsCoverEveryRowExactlyOnce() {
+        for (int height : new int[] {1, 7, HEIGHT, 1001}) {
+            AtomicIntegerArray hits = new AtomicIntegerArray(height);
+            TileExecutor.forEachStrip(WIDTH, height, 3, (rowStart, rowEnd) -> {
+                assertTrue(rowStart < rowEnd);
+                for (int y = rowStart; y < rowEnd; y++) {
+                    hits.incrementAndGet(y);
+                }
+            });
+            for (int y = 0; y < height; y++) {
+                assertEquals("height " + height + " row " + y, 1, hits.get(y));
+            }
+        }
+    }
+
+    @Test
+    public void columnBandsCoverEveryColumnOnAlignedBoundaries() {
+        for (int width : new int[] {1, 15, 17, WIDTH, 1001}) {
+            AtomicIntegerArray hits = new AtomicIntegerArray(width);
+            TileExecutor.forEachColumnBand(width, 10, (colStart, colEnd) -> {
+                // 除最后一个外，列带边界按 16 像素对齐
+                assertEquals(0, colStart % 16);
+                for (int x = colStart; x < colEnd; x++) {
+                    hits.incrementAndGet(x);
+                }
+            });
+            for (int x = 0; x < width; x++) {
+                assertEquals("width " + width + " column " + x, 1, hits.get(x));
+            }
+        }
+    }
+
+    @Test
+    public void stripRowsShrinkWithHaloButKeepMinimum() {
+        assertTrue(TileExecutor.stripRows(WIDTH, 0) > TileExecutor.stripRows(WIDTH, 10));
+        assertEquals(8, TileExecutor.stripRows(100000, 0));
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.myapplication2.log;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncFileLogTest {
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> lines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void writesLinesInOrder() throws Exception {
+        File file = new File(folder.getRoot(), "log.txt");
+        AsyncFileLog log = new AsyncFileLog(file, 1024, 1 << 20, DAY_MS, 3);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(log.append("DEBUG", "Tag", "第 " + i + " 行"));
+        }
+        log.close();
+
+        List<String> lines = lines(file);
+        assertEquals(500, lines.size());
+        for (int i = 0; i < 500; i++) {
+            assertTrue(lines.get(i),
+                    lines.get(i).matches("\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d DEBUG/Tag: 第 " + i + " 行"));
+        }
+        assertEquals(0, log.droppedCount());
+        assertEquals(0, log.errorCount());
+    }
+
+    @Test
+    public void appendsToExistingFile() throws Exception {
+        File file = new File(folder.getRoot(), "log.txt");
+        AsyncFileLog first = new AsyncFileLog(file, 16, 1 << 20, DAY_MS, 3);
+        first.append("INFO", "A", "before restart");
+        first.close();
+        AsyncFileLog second = new AsyncFileLog(file, 16, 1 << 20, DAY_MS, 3);
+        second.append("INFO", "A", "after restart");
+        second.close();
+
+        List<String> lines = lines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith("before restart"));
+        assertTrue(lines.get(1).endsWith("after restart"));
+    }
+
+    @Test
+    public void rotatesBySizeAndKeepsMaxFiles() throws Exception {
+        File file = new File(folder.getRoot(), "log.txt");
+        AsyncFileLog log = new AsyncFileLog(file, 4096, 2000, DAY_MS, 2);
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 70; i++) {
+            message.append('x');
+        }
+        int total = 300;
+        for (int i = 0; i < total; i++) {
+            log.append("INFO", "T", String.format("%04d %s", i, message));
+        }
+        log.close();
+
+        // 写满一行后才检查大小，单个文件最多超出一行
+        long maxLength = 2000 + 120;
+        assertTrue(file.length() <= maxLength);
+        File older = new File(folder.getRoot(), "log.1.txt");
+        File oldest = new File(folder.getRoot(), "log.2.txt");
+        assertTrue(older.exists());
+        assertTrue(oldest.exists());
+        assertFalse(new File(folder.getRoot(), "log.3.txt").exists());
+        assertTrue(older.length() >= 2000 && older.length() <= maxLength);
+
+        // 留下的三个文件按顺序衔接，且以最后一行结束
+        List<String> kept = lines(oldest);
+        kept.addAll(lines(older));
+        kept.addAll(lines(file));
+        int first = Integer.parseInt(kept.get(0).split(": ")[1].substring(0, 4));
+        for (int i = 0; i < kept.size(); i++) {
+            assertEquals(String.format("%04d", first + i), kept.get(i).split(": ")[1].substring(0, 4));
+        }
+        assertEquals(total - 1, first + kept.size() - 1);
+    }
+
+    @Test
+    public void writeErrorsAreReportedNotPrinted() throws Exception {
+        // 父路径是普通文件，日志文件无法创建
+        File blocker = folder.newFile("not-a-dir");
+        File file = new File(blocker, "log.txt");
+        final AtomicInteger reported = new AtomicInteger();
+        final String[] operation = new String[1];
+        AsyncFileLog log = new AsyncFileLog(file, 16, 1 << 20, DAY_MS, 3);
+        log.setErrorListener((op, e) -> {
+            operation[0] = op;
+            reported.incrementAndGet();
+        });
+        log.append("ERROR", "T", "lost");
+        log.close();
+
+        assertTrue(log.errorCount() >= 1);
+        assertEquals(log.errorCount(), reported.get());
+        assertEquals("写入", operation[0]);
+        assertEquals(1, log.droppedCount());
+    }
+
+    @Test
+    public void throwingListenerDoesNotStopWriter() throws Exception {
+        File file = new File(folder.newFile("blocker"), "log.txt");
+        AsyncFileLog log = new AsyncFileLog(file, 16, 1 << 20, DAY_MS, 3);
+        log.setErrorListener((op, e) -> {
+            throw new IllegalStateException("listener bug");
+        });
+        log.append("ERROR", "T", "lost");
+        log.append("ERROR", "T", "lost too");
+        log.close();
+        assertEquals(2, log.droppedCount());
+    }
+}
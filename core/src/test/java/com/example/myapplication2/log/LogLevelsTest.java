@@ -0,0 +1,45 @@
+package com.example.myapplication2.log;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LogLevelsTest {
+
+    @Test
+    public void defaultThreshold() {
+        LogLevels levels = new LogLevels(LogLevels.INFO);
+        assertFalse(levels.isEnabled("A", LogLevels.DEBUG));
+        assertTrue(levels.isEnabled("A", LogLevels.INFO));
+        assertTrue(levels.isEnabled("A", LogLevels.ERROR));
+        levels.setDefaultLevel(LogLevels.DEBUG);
+        assertTrue(levels.isEnabled("A", LogLevels.DEBUG));
+    }
+
+    @Test
+    public void perTagOverrideAndClear() {
+        LogLevels levels = new LogLevels(LogLevels.INFO);
+        levels.setLevel("Noisy", LogLevels.ERROR);
+        levels.setLevel("Debugging", LogLevels.DEBUG);
+        assertFalse(levels.isEnabled("Noisy", LogLevels.WARN));
+        assertTrue(levels.isEnabled("Debugging", LogLevels.DEBUG));
+        assertFalse(levels.isEnabled("Other", LogLevels.DEBUG));
+
+        levels.clearLevel("Noisy");
+        levels.clearLevel("Unknown");
+        assertTrue(levels.isEnabled("Noisy", LogLevels.WARN));
+        assertTrue(levels.isEnabled("Debugging", LogLevels.DEBUG));
+        levels.clearLevel("Debugging");
+        assertFalse(levels.isEnabled("Debugging", LogLevels.DEBUG));
+    }
+
+    @Test
+    public void offDisablesEverything() {
+        LogLevels levels = new LogLevels(LogLevels.OFF);
+        assertFalse(levels.isEnabled("A", LogLevels.ERROR));
+        levels.setLevel("A", LogLevels.OFF);
+        levels.setDefaultLevel(LogLevels.DEBUG);
+        assertFalse(levels.isEnabled("A", LogLevels.ERROR));
+        assertTrue(levels.isEnabled("B", LogLevels.DEBUG));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.myapplication2.log;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class LogRingTest {
+
+    @Test
+    public void fifoAndFull() {
+        LogRing<Integer> ring = new LogRing<>(4);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(Integer.valueOf(0), ring.poll());
+        assertTrue(ring.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(Integer.valueOf(i), ring.poll());
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void wrapsAroundManyTimes() {
+        LogRing<Integer> ring = new LogRing<>(2);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ring.offer(i));
+            assertEquals(Integer.valueOf(i), ring.poll());
+        }
+    }
+
+    @Test
+    public void rejectsNonPowerOfTwo() {
+        for (int capacity : new int[] {0, -4, 3, 12}) {
+            try {
+                new LogRing<Integer>(capacity);
+                fail("容量 " + capacity);
+            } catch (IllegalArgumentException expected) {
+                // 不是 2 的幂
+            }
+        }
+        assertEquals(8, new LogRing<Integer>(8).capacity());
+    }
+
+    @Test
+    public void concurrentProducersLoseNothingAndKeepPerThreadOrder() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 50_000;
+        final LogRing<long[]> ring = new LogRing<>(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    // 满时重试，这里要求一个都不丢
+                    while (!ring.offer(new long[] {id, i})) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] item = ring.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            int id = (int) item[0];
+            assertEquals(next[id], item[1]);
+            next[id]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(ring.isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.myapplication2.log;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+    @Test
+    public void limitsPerPeriodAndReportsSuppressed() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(3, 300);
+        assertEquals(0, limiter.acquire());
+        assertEquals(0, limiter.acquire());
+        assertEquals(0, limiter.acquire());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(-1, limiter.acquire());
+        }
+
+        Thread.sleep(350);
+        // 新周期的第一条带上此前被抑制的条数，之后清零
+        assertEquals(5, limiter.acquire());
+        assertEquals(0, limiter.acquire());
+    }
+
+    @Test
+    public void firstCallIsAlwaysAllowed() {
+        RateLimiter limiter = new RateLimiter(1, 60_000);
+        assertEquals(0, limiter.acquire());
+        assertEquals(-1, limiter.acquire());
+    }
+
+    @Test
+    public void concurrentCallersShareTheBudget() throws InterruptedException {
+        final RateLimiter limiter = new RateLimiter(100, 60_000);
+        final int[] allowed = new int[4];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (limiter.acquire() >= 0) {
+                        allowed[id]++;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            total += allowed[t];
+        }
+        assertEquals(100, total);
+    }
+}
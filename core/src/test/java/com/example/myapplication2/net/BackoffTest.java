@@ -0,0 +1,50 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BackoffTest {
+
+    @Test
+    public void delayDoublesWithinJitterRange() {
+        Backoff backoff = new Backoff(2000, 300_000, new Random(1));
+        for (int attempts = 1; attempts <= 6; attempts++) {
+            long full = 2000L << (attempts - 1);
+            for (int i = 0; i < 100; i++) {
+                long delay = backoff.delayMs(attempts);
+                assertTrue("attempt " + attempts + ": " + delay, delay >= full / 2 && delay < full);
+            }
+        }
+    }
+
+    @Test
+    public void delayIsCappedAndNeverOverflows() {
+        Backoff backoff = new Backoff(2000, 300_000, new Random(2));
+        for (int attempts : new int[] {9, 30, 64, Integer.MAX_VALUE}) {
+            long delay = backoff.delayMs(attempts);
+            assertTrue(delay >= 150_000 && delay < 300_000);
+        }
+    }
+
+    @Test
+    public void jitterSpreadsRetries() {
+        Backoff backoff = new Backoff(2000, 300_000, new Random(3));
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 1000; i++) {
+            long delay = backoff.delayMs(5);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        // 32 秒的一半区间内应当铺开
+        assertTrue(max - min > 12_000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMaxBelowBase() {
+        new Backoff(1000, 999, new Random());
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Base64EncoderTest {
+
+    @Test
+    public void rfc4648Vectors() {
+        String[][] vectors = {
+                {"", ""}, {"f", "Zg=="}, {"fo", "Zm8="}, {"foo", "Zm9v"},
+                {"foob", "Zm9vYg=="}, {"fooba", "Zm9vYmE="}, {"foobar", "Zm9vYmFy"}
+        };
+        for (String[] vector : vectors) {
+            assertEquals(vector[1], Base64Encoder.encodeToString(vector[0].getBytes(StandardCharsets.US_ASCII)));
+        }
+    }
+
+    @Test
+    public void matchesJdkEncoderForAllLengthsAndByteValues() {
+        Random random = new Random(11);
+        for (int len = 0; len < 200; len++) {
+            byte[] src = new byte[len];
+            random.nextBytes(src);
+            assertEquals("len " + len, Base64.getEncoder().encodeToString(src), Base64Encoder.encodeToString(src));
+        }
+    }
+
+    @Test
+    public void encodesSliceIntoOffset() {
+        byte[] src = {0, 'f', 'o', 'o', 'b', 0};
+        byte[] dst = new byte[10];
+        int written = Base64Encoder.encode(src, 1, 4, dst, 2);
+        assertEquals(8, written);
+        assertEquals(Base64Encoder.encodedLength(4), written);
+        assertEquals("Zm9vYg==", new String(dst, 2, 8, StandardCharsets.US_ASCII));
+        assertEquals(0, dst[0]);
+        assertEquals(0, dst[1]);
+    }
+}
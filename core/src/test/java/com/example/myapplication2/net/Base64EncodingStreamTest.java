@@ -0,0 +1,81 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Base64EncodingStreamTest {
+
+    private static byte[] randomBytes(int len, long seed) {
+        byte[] bytes = new byte[len];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void arbitraryWriteSplitsGiveSameOutput() throws IOException {
+        // 跨过 CHUNK（6KB）边界，每次写入长度随机，夹杂单字节写入
+        byte[] src = randomBytes(20_000, 1);
+        Random random = new Random(2);
+        for (int round = 0; round < 20; round++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Base64EncodingStream base64 = new Base64EncodingStream(out);
+            int off = 0;
+            while (off < src.length) {
+                if (random.nextInt(4) == 0) {
+                    base64.write(src[off++]);
+                    continue;
+                }
+                int len = Math.min(random.nextInt(9000), src.length - off);
+                base64.write(src, off, len);
+                off += len;
+            }
+            base64.close();
+            assertEquals(Base64Encoder.encodeToString(src), new String(out.toByteArray(), StandardCharsets.US_ASCII));
+            assertEquals(src.length, base64.getInputBytes());
+        }
+    }
+
+    @Test
+    public void finishPadsEveryRemainder() throws IOException {
+        for (int len = 0; len < 8; len++) {
+            byte[] src = randomBytes(len, len);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Base64EncodingStream base64 = new Base64EncodingStream(out);
+            for (byte b : src) {
+                base64.write(b);
+            }
+            base64.finish();
+            base64.finish();
+            assertEquals(Base64Encoder.encodeToString(src), new String(out.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void closeLeavesDownstreamOpen() throws IOException {
+        final boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        Base64EncodingStream base64 = new Base64EncodingStream(out);
+        base64.write(new byte[] {1, 2}, 0, 2);
+        base64.close();
+        assertFalse(closed[0]);
+        assertEquals("AQI=", out.toString("US-ASCII"));
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterFinishFails() throws IOException {
+        Base64EncodingStream base64 = new Base64EncodingStream(new ByteArrayOutputStream());
+        base64.finish();
+        base64.write(1);
+    }
+}
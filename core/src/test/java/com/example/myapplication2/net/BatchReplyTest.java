@@ -0,0 +1,85 @@
+package com.example.myapplication2.net;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BatchReplyTest {
+
+    @Test
+    public void splitsNumberedParagraphs() {
+        String reply = "好的，下面依次描述这三张图片。\n\n"
+                + "[1] 一只橘猫趴在窗台上。\n\n"
+                + "[2] 城市街道的夜景，\n路灯很亮。\n\n"
+                + "[3] 一碗拉面。";
+        assertArrayEquals(new String[] {"一只橘猫趴在窗台上。", "城市街道的夜景，\n路灯很亮。", "一碗拉面。"},
+                BatchReply.split(reply, 3));
+    }
+
+    @Test
+    public void acceptsCommonMarkerVariants() {
+        String reply = "**[1]** 猫\n【2】：狗\n  [图片 3]: 鸟\n[4]：鱼";
+        assertArrayEquals(new String[] {"猫", "狗", "鸟", "鱼"}, BatchReply.split(reply, 4));
+    }
+
+    @Test
+    public void missingOutOfRangeAndRepeatedNumbers() {
+        String reply = "[1] 第一张\n[3] 第三张\n[5] 不存在的第五张\n[1] 重复的第一张";
+        assertArrayEquals(new String[] {"第一张", null, "第三张"}, BatchReply.split(reply, 3));
+    }
+
+    @Test
+    public void twoDigitNumbers() {
+        StringBuilder reply = new StringBuilder();
+        for (int i = 1; i <= 12; i++) {
+            reply.append('[').append(i).append("] 图").append(i).append('\n');
+        }
+        String[] results = BatchReply.split(reply.toString(), 12);
+        assertEquals("图10", results[9]);
+        assertEquals("图12", results[11]);
+    }
+
+    @Test
+    public void markersOnlyCountAtLineStart() {
+        assertArrayEquals(new String[] {"见 [2] 的说明", "第二张"},
+                BatchReply.split("[1] 见 [2] 的说明\n[2] 第二张", 2));
+    }
+
+    @Test
+    public void unnumberedReplyGivesNothing() {
+        assertArrayEquals(new String[] {null, null}, BatchReply.split("两张图片都是风景照。", 2));
+    }
+
+    @Test
+    public void streamedBatchBodyIsEquivalentToBuiltJson() throws Exception {
+        Random random = new Random(5);
+        List<RecognitionRequest.JpegWriter> writers = new ArrayList<>();
+        List<String> base64 = new ArrayList<>();
+        for (int len : new int[] {0, 1, 2000, 30_001}) {
+            final byte[] jpeg = new byte[len];
+            random.nextBytes(jpeg);
+            writers.add(out -> out.write(jpeg));
+            base64.add(Base64Encoder.encodeToString(jpeg));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long total = RecognitionRequest.writeBatchImageJson(out, writers, Long.MAX_VALUE);
+        assertEquals(32_002, total);
+        JSONObject actual = new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(RecognitionRequest.buildBatchImageJson(base64).similar(actual));
+    }
+
+    @Test(expected = RecognitionRequest.TooLargeException.class)
+    public void batchLimitCoversAllImages() throws IOException {
+        RecognitionRequest.JpegWriter writer = out -> out.write(new byte[600]);
+        RecognitionRequest.writeBatchImageJson(new ByteArrayOutputStream(), Arrays.asList(writer, writer), 1000);
+    }
+}
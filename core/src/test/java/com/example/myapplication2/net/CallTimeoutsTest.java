@@ -0,0 +1,33 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CallTimeoutsTest {
+
+    @Test
+    public void callTimeoutCoversEachPhase() {
+        for (CallTimeouts t : CallTimeouts.values()) {
+            if (t.callMs == 0) {
+                continue;
+            }
+            assertTrue(t.name(), t.callMs >= t.connectMs);
+            assertTrue(t.name(), t.callMs >= t.readMs);
+        }
+    }
+
+    @Test
+    public void uploadAllowsLongerWritesThanText() {
+        assertTrue(CallTimeouts.UPLOAD.writeMs > CallTimeouts.TEXT.writeMs);
+        assertTrue(CallTimeouts.UPLOAD.writeMs > CallTimeouts.DEFAULT.writeMs);
+    }
+
+    @Test
+    public void warmUpGivesUpSoonerThanRealCalls() {
+        for (CallTimeouts t : new CallTimeouts[] {CallTimeouts.UPLOAD, CallTimeouts.TEXT}) {
+            assertTrue(CallTimeouts.WARM_UP.connectMs < t.connectMs);
+            assertTrue(CallTimeouts.WARM_UP.callMs < t.callMs);
+        }
+    }
+}
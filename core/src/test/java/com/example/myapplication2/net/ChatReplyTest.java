@@ -0,0 +1,211 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ChatReplyTest {
+
+    // vLLM（OpenAI 兼容接口）的非流式响应
+    private static final String VLLM_REPLY = "{\"id\":\"chatcmpl-8f2c1a\",\"object\":\"chat.completion\","
+            + "\"created\":1718000000,\"model\":\"qwen2.5-vl-7b\",\"choices\":[{\"index\":0,"
+            + "\"message\":{\"role\":\"assistant\",\"reasoning_content\":null,"
+            + "\"content\":\"图片中是一只橘猫 \\ud83d\\udc31，趴在窗台上晒太阳。\\n背景是\\\"蓝天\\\"和白云。\","
+            + "\"tool_calls\":[]},\"logprobs\":null,\"finish_reason\":\"stop\",\"stop_reason\":null}],"
+            + "\"usage\":{\"prompt_tokens\":1234,\"total_tokens\":1300,\"completion_tokens\":66,"
+            + "\"prompt_tokens_details\":null},\"prompt_logprobs\":null}";
+
+    // OpenAI 的响应：usage 中有嵌套对象，字段顺序也不同
+    private static final String OPENAI_REPLY = "{\n"
+            + "  \"id\": \"chatcmpl-B9MBs8CjcvOU2jLn4n570S5qMJKcT\",\n"
+            + "  \"object\": \"chat.completion\",\n"
+            + "  \"created\": 1741569952,\n"
+            + "  \"model\": \"gpt-4o-2024-08-06\",\n"
+            + "  \"usage\": {\n"
+            + "    \"prompt_tokens\": 19,\n"
+            + "    \"completion_tokens\": 10,\n"
+            + "    \"total_tokens\": 29,\n"
+            + "    \"prompt_tokens_details\": {\"cached_tokens\": 0, \"audio_tokens\": 0},\n"
+            + "    \"completion_tokens_details\": {\"reasoning_tokens\": 0, \"accepted_prediction_tokens\": 0}\n"
+            + "  },\n"
+            + "  \"choices\": [\n"
+            + "    {\n"
+            + "      \"index\": 0,\n"
+            + "      \"message\": {\n"
+            + "        \"role\": \"assistant\",\n"
+            + "        \"content\": \"Hello! How can I assist you today?\",\n"
+            + "        \"refusal\": null,\n"
+            + "        \"annotations\": []\n"
+            + "      },\n"
+            + "      \"logprobs\": null,\n"
+            + "      \"finish_reason\": \"stop\"\n"
+            + "    }\n"
+            + "  ],\n"
+            + "  \"service_tier\": \"default\",\n"
+            + "  \"system_fingerprint\": \"fp_fc9f1d7035\"\n"
+            + "}\n";
+
+    private static ChatReply parse(String json) throws IOException {
+        return ChatReply.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // 每次只返回一个字节
+    private static ChatReply parseTrickle(String json) throws IOException {
+        final byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        return ChatReply.parse(new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() {
+                return pos < data.length ? data[pos++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (pos >= data.length) {
+                    return -1;
+                }
+                b[off] = data[pos++];
+                return 1;
+            }
+        });
+    }
+
+    private static void assertMalformed(String json) {
+        try {
+            parse(json);
+            fail("应当解析失败: " + json);
+        } catch (ChatReply.MalformedException expected) {
+            // 格式错误
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void parsesVllmReply() throws IOException {
+        String expected = "图片中是一只橘猫 \uD83D\uDC31，趴在窗台上晒太阳。\n背景是\"蓝天\"和白云。";
+        for (ChatReply reply : new ChatReply[] {parse(VLLM_REPLY), parseTrickle(VLLM_REPLY)}) {
+            assertEquals(expected, reply.getContent());
+            assertNull(reply.getError());
+            assertTrue(reply.hasChoices());
+            assertEquals(1234, reply.getUsage().promptTokens);
+            assertEquals(66, reply.getUsage().completionTokens);
+            assertEquals(1300, reply.getUsage().totalTokens);
+        }
+    }
+
+    @Test
+    public void parsesOpenAiReply() throws IOException {
+        ChatReply reply = parseTrickle(OPENAI_REPLY);
+        assertEquals("Hello! How can I assist you today?", reply.getContent());
+        assertEquals(19, reply.getUsage().promptTokens);
+        assertEquals(29, reply.getUsage().totalTokens);
+    }
+
+    @Test
+    public void rawAndEscapedSurrogatePairsDecodeAlike() throws IOException {
+        String raw = parse("{\"choices\":[{\"message\":{\"content\":\"😀𝄞\"}}]}").getContent();
+        String escaped = parse("{\"choices\":[{\"message\":{\"content\":\"\\ud83d\\ude00\\uD834\\uDD1E\"}}]}")
+                .getContent();
+        assertEquals("😀𝄞", raw);
+        assertEquals(raw, escaped);
+        assertEquals(2, raw.codePointCount(0, raw.length()));
+    }
+
+    @Test
+    public void escapes() throws IOException {
+        String content = parse("{\"choices\":[{\"message\":{\"content\":"
+                + "\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\\u4e2D\"}}]}").getContent();
+        assertEquals("\"\\/\b\f\n\r\t\u00e9\u4e2d", content);
+    }
+
+    @Test
+    public void numberForms() throws IOException {
+        ChatReply.Usage usage = parse("{\"usage\":{\"prompt_tokens\":1.5e3,\"completion_tokens\":null,"
+                + "\"total_tokens\":-0}}").getUsage();
+        assertEquals(1500, usage.promptTokens);
+        assertEquals(-1, usage.completionTokens);
+        assertEquals(0, usage.totalTokens);
+        assertEquals(-1, parse("{\"usage\":{}}").getUsage().promptTokens);
+    }
+
+    @Test
+    public void ignoresUnknownFieldsAndLaterChoices() throws IOException {
+        String json = "{\"meta\":{\"a\":[1,[2,{\"b\":\"}]\\\"\"}],{}],\"c\":{\"d\":{\"e\":[]}}},"
+                + "\"choices\":[{\"logprobs\":{\"content\":[{\"token\":\"x\",\"top\":[[\"]\"]]}]},"
+                + "\"message\":{\"content\":\"ok\"}},{\"message\":{\"content\":\"second\"}}],\"tail\":[true,false,null]}";
+        ChatReply reply = parse(json);
+        assertEquals("ok", reply.getContent());
+        assertTrue(reply.hasChoices());
+    }
+
+    @Test
+    public void nullsAndEmptyContainers() throws IOException {
+        assertNull(parse("{\"choices\":[{\"message\":{\"content\":null}}]}").getContent());
+        assertTrue(parse("{\"choices\":[{\"message\":null}]}").hasChoices());
+        assertFalse(parse("{\"choices\":[]}").hasChoices());
+        assertFalse(parse("{\"choices\":null}").hasChoices());
+        assertFalse(parse("{}").hasChoices());
+        assertNull(parse("{\"usage\":null}").getUsage());
+        assertNull(parse("{\"error\":null}").getError());
+        // 多模态格式的 content 数组不是文本，按没有内容处理
+        assertNull(parse("{\"choices\":[{\"message\":{\"content\":[{\"type\":\"text\",\"text\":\"x\"}]}}]}")
+                .getContent());
+    }
+
+    @Test
+    public void errorShapes() throws IOException {
+        assertEquals("model overloaded", parse("{\"error\":\"model overloaded\"}").getError());
+        assertEquals("Rate limit reached", parse("{\"error\":{\"message\":\"Rate limit reached\","
+                + "\"type\":\"requests\",\"param\":null,\"code\":\"rate_limit_exceeded\"}}").getError());
+        assertEquals("未知错误", parse("{\"error\":{\"code\":500}}").getError());
+        assertEquals("未知错误", parse("{\"error\":500}").getError());
+        // vLLM 的错误响应
+        ChatReply vllm = parse("{\"object\":\"error\",\"message\":\"This model's maximum context length is "
+                + "32768 tokens.\",\"type\":\"BadRequestError\",\"param\":null,\"code\":400}");
+        assertEquals("This model's maximum context length is 32768 tokens.", vllm.getError());
+        assertFalse(vllm.hasChoices());
+        assertNull(parse(VLLM_REPLY).getError());
+    }
+
+    @Test
+    public void truncatedInput() {
+        // 在每个位置截断都应当报格式错误，而不是返回部分结果
+        for (int len = 0; len < VLLM_REPLY.length(); len++) {
+            assertMalformed(VLLM_REPLY.substring(0, len));
+        }
+    }
+
+    @Test
+    public void malformedInput() {
+        assertMalformed("");
+        assertMalformed("[]");
+        assertMalformed("<html><body>502 Bad Gateway</body></html>");
+        assertMalformed("{\"choices\":[{\"message\":{\"content\":\"a\"}}]");
+        assertMalformed("{\"choices\" [] }");
+        assertMalformed("{\"a\":1 \"b\":2}");
+        assertMalformed("{\"meta\":[1,2}}");
+        assertMalformed("{\"choices\":[{\"message\":{\"content\":\"bad \\x escape\"}}]}");
+        assertMalformed("{\"choices\":[{\"message\":{\"content\":\"ends with backslash\\");
+    }
+
+    @Test
+    public void captureKeepsHeadAndCount() throws IOException {
+        ChatReply.Capture capture = new ChatReply.Capture(
+                new ByteArrayInputStream(VLLM_REPLY.getBytes(StandardCharsets.UTF_8)), 16);
+        ChatReply.parse(capture);
+        assertEquals(VLLM_REPLY.getBytes(StandardCharsets.UTF_8).length, capture.count());
+        assertEquals("{\"id\":\"chatcmpl-…", capture.excerpt());
+
+        ChatReply.Capture whole = new ChatReply.Capture(
+                new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)), 16);
+        ChatReply.parse(whole);
+        assertEquals("{}", whole.excerpt());
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ChatStreamTest {
+
+    // vLLM 的 OpenAI 兼容接口返回的事件流（截取）
+    private static final String VLLM_STREAM =
+            "data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1718000000,"
+                    + "\"model\":\"qwen2.5-vl-7b\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\","
+                    + "\"content\":\"\"},\"logprobs\":null,\"finish_reason\":null}]}\n\n"
+                    + "data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1718000000,"
+                    + "\"model\":\"qwen2.5-vl-7b\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"图片中\"},"
+                    + "\"logprobs\":null,\"finish_reason\":null}]}\n\n"
+                    + ": ping\n\n"
+                    + "data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1718000000,"
+                    + "\"model\":\"qwen2.5-vl-7b\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"有一只猫 \\ud83d\\udc31。\"},"
+                    + "\"logprobs\":null,\"finish_reason\":null}]}\n\n"
+                    + "data: {\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"created\":1718000000,"
+                    + "\"model\":\"qwen2.5-vl-7b\",\"choices\":[{\"index\":0,\"delta\":{\"content\":null},"
+                    + "\"logprobs\":null,\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":20,"
+                    + "\"completion_tokens\":8,\"total_tokens\":28}}\n\n"
+                    + "data: [DONE]\n\n";
+
+    private static final String EXPECTED = "图片中有一只猫 🐱。";
+
+    private static InputStream bytes(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 每次只返回一个字节，多字节字符一定被拆到不同的 read 中
+    private static InputStream trickle(String s) {
+        final byte[] data = s.getBytes(StandardCharsets.UTF_8);
+        return new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() {
+                return pos < data.length ? data[pos++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (pos >= data.length) {
+                    return -1;
+                }
+                b[off] = data[pos++];
+                return 1;
+            }
+        };
+    }
+
+    @Test
+    public void readsVllmStream() throws IOException {
+        final List<String> deltas = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        String text = ChatStream.read(bytes(VLLM_STREAM), (delta, full) -> {
+            deltas.add(delta);
+            texts.add(full);
+        });
+        assertEquals(EXPECTED, text);
+        assertEquals(2, deltas.size());
+        assertEquals("图片中", deltas.get(0));
+        assertEquals(EXPECTED, texts.get(1));
+    }
+
+    @Test
+    public void byteAtATimeKeepsMultiByteCharacters() throws IOException {
+        assertEquals(EXPECTED, ChatStream.read(trickle(VLLM_STREAM), null));
+    }
+
+    @Test
+    public void crlfLinesAndMultiLineData() throws IOException {
+        String stream = "event: message\r\nid: 1\r\n"
+                + "data: {\"choices\":[{\"delta\":\r\ndata: {\"content\":\"a\\nb\"}}]}\r\n\r\n"
+                + "data:[DONE]\r\n\r\n";
+        assertEquals("a\nb", ChatStream.read(bytes(stream), null));
+    }
+
+    @Test
+    public void doneWithoutTrailingNewline() throws IOException {
+        String stream = "data: {\"choices\":[{\"delta\":{\"content\":\"x\"}}]}\n\ndata: [DONE]";
+        assertEquals("x", ChatStream.read(bytes(stream), null));
+    }
+
+    @Test
+    public void errorEventIsReported() {
+        String stream = "data: {\"choices\":[{\"delta\":{\"content\":\"x\"}}]}\n\n"
+                + "data: {\"error\":{\"message\":\"out of memory\",\"type\":\"InternalServerError\",\"code\":500}}\n\n";
+        try {
+            ChatStream.read(bytes(stream), null);
+            fail();
+        } catch (ChatStream.ErrorEventException e) {
+            assertTrue(e.getMessage().contains("out of memory"));
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void truncatedStreamFails() {
+        String truncated = VLLM_STREAM.substring(0, VLLM_STREAM.indexOf("data: [DONE]"));
+        for (String stream : new String[] {truncated, truncated.substring(0, truncated.length() - 30), ""}) {
+            try {
+                ChatStream.read(bytes(stream), null);
+                fail("应当失败: " + stream.length());
+            } catch (IOException expected) {
+                // 没有收到 [DONE]
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedChunkFails() throws IOException {
+        ChatStream.read(bytes("data: {\"choices\":[{\"delta\":\n\ndata: [DONE]\n\n"), null);
+    }
+
+    @Test
+    public void eventStreamContentType() {
+        assertTrue(ChatStream.isEventStream("text/event-stream"));
+        assertTrue(ChatStream.isEventStream("Text/Event-Stream; charset=utf-8"));
+        assertFalse(ChatStream.isEventStream("application/json"));
+        assertFalse(ChatStream.isEventStream(null));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class EndpointPoolTest {
+
+    private static final String A = "http://a:8000/v1/chat/completions";
+    private static final String B = "http://b:8000/v1/chat/completions";
+    private static final String C = "http://c:8000/v1/chat/completions";
+
+    private static EndpointPool.Endpoint find(EndpointPool pool, String url) {
+        for (int i = 0; i < 1000; i++) {
+            EndpointPool.Endpoint endpoint = pool.choose();
+            if (endpoint.getUrl().equals(url)) {
+                return endpoint;
+            }
+        }
+        throw new AssertionError("选不到 " + url);
+    }
+
+    // 记录一次成功请求
+    private static void sample(EndpointPool pool, EndpointPool.Endpoint endpoint, long latencyMs) {
+        pool.onStart(endpoint);
+        pool.onSuccess(endpoint, latencyMs);
+    }
+
+    @Test
+    public void singleEndpointNeverHedges() {
+        EndpointPool pool = new EndpointPool(Collections.singletonList(A));
+        EndpointPool.Endpoint only = pool.choose();
+        assertEquals(A, only.getUrl());
+        for (int i = 0; i < 50; i++) {
+            sample(pool, only, 100);
+        }
+        assertNull(pool.chooseOther(only));
+        assertEquals(-1, pool.hedgeDelayMs());
+    }
+
+    @Test
+    public void prefersLowerExpectedWait() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(A, B));
+        EndpointPool.Endpoint a = find(pool, A);
+        EndpointPool.Endpoint b = find(pool, B);
+        sample(pool, a, 100);
+        sample(pool, b, 1000);
+        // 两个节点时每次比较的正好是这两个
+        for (int i = 0; i < 100; i++) {
+            assertSame(a, pool.choose());
+        }
+
+        // 快的节点积压了很多请求后，慢的节点预计更早完成
+        for (int i = 0; i < 20; i++) {
+            pool.onStart(a);
+        }
+        assertSame(b, pool.choose());
+        for (int i = 0; i < 20; i++) {
+            pool.onCancel(a);
+        }
+        assertSame(a, pool.choose());
+    }
+
+    @Test
+    public void ejectsAfterRepeatedFailuresAndRestores() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(A, B));
+        EndpointPool.Endpoint a = find(pool, A);
+        EndpointPool.Endpoint b = find(pool, B);
+        for (int i = 0; i < 2; i++) {
+            pool.onStart(a);
+            assertEquals(0, pool.onFailure(a));
+        }
+        pool.onStart(a);
+        assertEquals(10_000, pool.onFailure(a));
+        assertEquals(Collections.singletonList(B), pool.healthyUrls());
+        for (int i = 0; i < 50; i++) {
+            assertSame(b, pool.choose());
+        }
+        assertNull(pool.chooseOther(b));
+
+        // 探测失败的等待时间逐次加倍，有上限
+        assertEquals(20_000, pool.probeFailed(a));
+        assertEquals(40_000, pool.probeFailed(a));
+        for (int i = 0; i < 10; i++) {
+            pool.probeFailed(a);
+        }
+        assertEquals(120_000, pool.probeFailed(a));
+
+        pool.restore(a);
+        assertEquals(Arrays.asList(A, B), pool.healthyUrls());
+        assertSame(a, pool.chooseOther(b));
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(A, B));
+        EndpointPool.Endpoint a = find(pool, A);
+        for (int i = 0; i < 10; i++) {
+            pool.onStart(a);
+            assertEquals(0, pool.onFailure(a));
+            pool.onStart(a);
+            assertEquals(0, pool.onFailure(a));
+            sample(pool, a, -1);
+        }
+        assertEquals(2, pool.healthyUrls().size());
+    }
+
+    @Test
+    public void allEjectedStillChoosesSomething() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(A, B, C));
+        for (String url : new String[] {A, B, C}) {
+            EndpointPool.Endpoint endpoint = find(pool, url);
+            for (int i = 0; i < 3; i++) {
+                pool.onStart(endpoint);
+                pool.onFailure(endpoint);
+            }
+        }
+        assertTrue(pool.healthyUrls().isEmpty());
+        assertNotNull(pool.choose());
+    }
+
+    @Test
+    public void hedgeDelayIsP95OfRecentLatency() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(A, B));
+        EndpointPool.Endpoint a = find(pool, A);
+        for (int i = 1; i <= 15; i++) {
+            sample(pool, a, i);
+        }
+        assertEquals(-1, pool.hedgeDelayMs());
+        for (int i = 16; i <= 20; i++) {
+            sample(pool, a, i);
+        }
+        assertEquals(19, pool.hedgeDelayMs());
+        // 只保留最近 64 个样本
+        for (int i = 0; i < 64; i++) {
+            sample(pool, a, 500);
+        }
+        assertEquals(500, pool.hedgeDelayMs());
+        // 不参与统计的耗时
+        sample(pool, a, -1);
+        assertEquals(500, pool.hedgeDelayMs());
+    }
+
+    @Test
+    public void binaryUploadIsKnownPerEndpointOnlyAfterProbe() {
+        EndpointPool pool = new EndpointPool(Arrays.asList(A, B));
+        EndpointPool.Endpoint a = find(pool, A);
+        EndpointPool.Endpoint b = find(pool, B);
+        assertFalse(pool.supportsBinary(a));
+        assertEquals(2, pool.startBinaryProbes().size());
+        // 探测中的节点不会再次返回
+        assertTrue(pool.startBinaryProbes().isEmpty());
+
+        pool.setBinarySupported(a, true);
+        pool.setBinarySupported(b, false);
+        assertTrue(pool.supportsBinary(a));
+        // 一个节点不支持不影响其他节点
+        assertFalse(pool.supportsBinary(b));
+        assertTrue(pool.startBinaryProbes().isEmpty());
+        assertTrue(a.toString().contains("binary"));
+    }
+
+    @Test
+    public void failedProbeIsRetriedAndRestoreForgetsSupport() {
+        EndpointPool pool = new EndpointPool(Collections.singletonList(A));
+        EndpointPool.Endpoint a = pool.choose();
+        assertEquals(1, pool.startBinaryProbes().size());
+        pool.binaryProbeFailed(a);
+        assertEquals(1, pool.startBinaryProbes().size());
+        pool.setBinarySupported(a, true);
+
+        // 被摘除的节点不探测；恢复后可能换了服务程序，要重新探测
+        for (int i = 0; i < 3; i++) {
+            pool.onStart(a);
+            pool.onFailure(a);
+        }
+        assertTrue(pool.startBinaryProbes().isEmpty());
+        pool.restore(a);
+        assertFalse(pool.supportsBinary(a));
+        assertEquals(1, pool.startBinaryProbes().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyList() {
+        new EndpointPool(Collections.<String>emptyList());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.myapplication2.net;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RecognitionRequestTest {
+
+    private static byte[] fakeJpeg(int len, long seed) {
+        byte[] bytes = new byte[len];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static JSONObject streamed(byte[] jpeg, long limit, boolean stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = RecognitionRequest.writeImageJson(out, o -> o.write(jpeg), limit, stream);
+        assertEquals(jpeg.length, written);
+        return new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void streamedBodyIsEquivalentToBuiltJson() throws Exception {
+        // 随机字节的 Base64 必然含有 '/' 和 '+'
+        for (int len : new int[] {0, 1, 2, 3, 1000, 100_001}) {
+            byte[] jpeg = fakeJpeg(len, len);
+            JSONObject expected = RecognitionRequest.buildImageJson(Base64Encoder.encodeToString(jpeg));
+            JSONObject actual = streamed(jpeg, Long.MAX_VALUE, false);
+            assertTrue("len " + len + ": " + actual, expected.similar(actual));
+        }
+    }
+
+    @Test
+    public void streamFlagIsCarriedOver() throws Exception {
+        byte[] jpeg = fakeJpeg(500, 7);
+        JSONObject actual = streamed(jpeg, Long.MAX_VALUE, true);
+        assertTrue(actual.getBoolean("stream"));
+        assertTrue(RecognitionRequest.buildImageJson(Base64Encoder.encodeToString(jpeg), true).similar(actual));
+        assertFalse(streamed(jpeg, Long.MAX_VALUE, false).has("stream"));
+    }
+
+    @Test
+    public void imageUrlCarriesTheJpeg() throws Exception {
+        byte[] jpeg = fakeJpeg(4096, 3);
+        String url = streamed(jpeg, Long.MAX_VALUE, false).getJSONArray("messages").getJSONObject(0)
+                .getJSONArray("content").getJSONObject(1).getJSONObject("image_url").getString("url");
+        assertEquals("data:image/jpeg;base64," + java.util.Base64.getEncoder().encodeToString(jpeg), url);
+    }
+
+    @Test
+    public void tooLargeJpegIsRejected() throws IOException {
+        byte[] jpeg = fakeJpeg(1025, 4);
+        // 正好等于上限时可以写出
+        streamed(fakeJpeg(1024, 4), 1024, false);
+        try {
+            RecognitionRequest.writeImageJson(new ByteArrayOutputStream(), o -> o.write(jpeg), 1024);
+            fail();
+        } catch (RecognitionRequest.TooLargeException expected) {
+            // 超过上限
+        }
+    }
+
+    @Test
+    public void headerValuesAreAsciiAndRoundTrip() throws Exception {
+        for (String value : new String[] {RecognitionRequest.IMAGE_PROMPT, "IMG_2024 01.jpg", "a+b&c=d%e", ""}) {
+            String encoded = RecognitionRequest.headerValue(value);
+            for (int i = 0; i < encoded.length(); i++) {
+                char c = encoded.charAt(i);
+                assertTrue(encoded, c > 0x20 && c < 0x7F);
+            }
+            // 与服务器的 unquote_plus 相同：+ 表示空格，%2B 表示 +
+            assertEquals(value, java.net.URLDecoder.decode(encoded, "UTF-8"));
+        }
+        assertEquals("IMG_2024+01.jpg", RecognitionRequest.headerValue("IMG_2024 01.jpg"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UploadPolicyTest {
+
+    private static final UploadPolicy.Encoding DEFAULT_ENCODING = new UploadPolicy.Encoding(1024, 768, 80);
+
+    @Test
+    public void startsAtTheOldFixedSettings() {
+        UploadPolicy policy = new UploadPolicy();
+        assertEquals(1024, policy.current().maxEdge);
+        assertEquals(80, policy.current().quality);
+        assertEquals(-1, policy.getThroughputKBps(), 0);
+    }
+
+    @Test
+    public void fastNetworkClimbsToCeiling() {
+        UploadPolicy policy = new UploadPolicy();
+        policy.record(200_000, DEFAULT_ENCODING, 100, 500);
+        assertEquals(1280, policy.current().maxEdge);
+    }
+
+    @Test
+    public void slowNetworkStepsDownAndRecovers() {
+        UploadPolicy policy = new UploadPolicy();
+        policy.record(200_000, DEFAULT_ENCODING, 20_000, 500);
+        int slowEdge = policy.current().maxEdge;
+        assertTrue(slowEdge < 1024);
+
+        // 指数加权平均：网络变快后逐步回升，不会一次跳到最高档
+        int previous = slowEdge;
+        for (int i = 0; i < 20; i++) {
+            policy.record(200_000, DEFAULT_ENCODING, 100, 500);
+            assertTrue(policy.current().maxEdge >= previous);
+            previous = policy.current().maxEdge;
+        }
+        assertEquals(1280, previous);
+    }
+
+    @Test
+    public void slowServerLeavesLessTimeForUpload() {
+        UploadPolicy fastServer = new UploadPolicy();
+        UploadPolicy slowServer = new UploadPolicy();
+        fastServer.record(200_000, DEFAULT_ENCODING, 2_000, 200);
+        slowServer.record(200_000, DEFAULT_ENCODING, 2_000, 3_500);
+        assertTrue(slowServer.current().maxEdge < fastServer.current().maxEdge);
+    }
+
+    @Test
+    public void limitsAreRespected() {
+        UploadPolicy policy = new UploadPolicy();
+        policy.record(200_000, DEFAULT_ENCODING, 1_000_000, 500);
+        // 默认下限是 512px
+        assertEquals(512, policy.current().maxEdge);
+
+        policy.setLimits(new UploadPolicy.Params(768, 70), new UploadPolicy.Params(1600, 85));
+        assertEquals(768, policy.current().maxEdge);
+        for (int i = 0; i < 30; i++) {
+            policy.record(2_000_000, DEFAULT_ENCODING, 1, 0);
+        }
+        assertEquals(1600, policy.current().maxEdge);
+    }
+
+    @Test
+    public void targetLatencyChangesChoice() {
+        UploadPolicy policy = new UploadPolicy();
+        policy.record(200_000, DEFAULT_ENCODING, 4_000, 500);
+        int normal = policy.current().maxEdge;
+        policy.setTargetLatencyMs(60_000);
+        assertEquals(1280, policy.current().maxEdge);
+        policy.setTargetLatencyMs(800);
+        assertTrue(policy.current().maxEdge < normal);
+    }
+
+    @Test
+    public void invalidSamplesAreIgnored() {
+        UploadPolicy policy = new UploadPolicy();
+        policy.record(0, DEFAULT_ENCODING, 100, 100);
+        policy.record(1000, null, 100, 100);
+        assertEquals(-1, policy.getThroughputKBps(), 0);
+        assertEquals(1024, policy.current().maxEdge);
+    }
+
+    @Test
+    public void parsesServerTiming() {
+        assertEquals(1235, UploadPolicy.serverTimingMs("app;dur=1234.5"));
+        assertEquals(80, UploadPolicy.serverTimingMs("app;desc=\"识别\";dur=80, db;dur=5"));
+        assertEquals(0, UploadPolicy.serverTimingMs("app; dur=0"));
+        // 第一项没有 dur 时不取后面的
+        assertEquals(-1, UploadPolicy.serverTimingMs("miss, app;dur=80"));
+        assertEquals(-1, UploadPolicy.serverTimingMs(null));
+        assertEquals(-1, UploadPolicy.serverTimingMs("app;dur=abc"));
+        assertEquals(-1, UploadPolicy.serverTimingMs("app;dur=-3"));
+        assertEquals(-1, UploadPolicy.serverTimingMs("app;dur=NaN"));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.myapplication2.net;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WarmUpThrottleTest {
+
+    @Test
+    public void firstWarmUpRunsEvenAtClockZero() {
+        // elapsedRealtime 刚开机时很小，不能把 0 当作“从未预连接”
+        assertTrue(new WarmUpThrottle(5000).tryStart(0, 0, 1));
+    }
+
+    @Test
+    public void repeatedCallsWithinIntervalAreSkipped() {
+        WarmUpThrottle throttle = new WarmUpThrottle(5000);
+        assertTrue(throttle.tryStart(1000, 0, 2));
+        assertFalse(throttle.tryStart(5999, 0, 2));
+        assertTrue(throttle.tryStart(6000, 0, 2));
+    }
+
+    @Test
+    public void skippedWhenIdleConnectionsCoverEndpoints() {
+        WarmUpThrottle throttle = new WarmUpThrottle(5000);
+        assertFalse(throttle.tryStart(1000, 2, 2));
+        assertFalse(throttle.tryStart(1000, 0, 0));
+        // 跳过不算一次预连接，连接被服务器关掉后马上可以再预连接
+        assertTrue(throttle.tryStart(1001, 1, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeInterval() {
+        new WarmUpThrottle(-1);
+    }
+}
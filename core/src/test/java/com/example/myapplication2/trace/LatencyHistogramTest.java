@@ -0,0 +1,81 @@
+package com.example.myapplication2.trace;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithBoundedError() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long micros = i < 1000 ? i : (random.nextLong() >>> (24 + random.nextInt(40)));
+            int index = LatencyHistogram.indexOf(micros);
+            long upper = LatencyHistogram.upperBound(index);
+            long lower = index == 0 ? 0 : LatencyHistogram.upperBound(index - 1) + 1;
+            assertTrue(micros + " 不在桶 [" + lower + ", " + upper + "] 内", lower <= micros && micros <= upper);
+            // 桶宽不超过下界的 1/16
+            assertTrue(upper - lower <= Math.max(0, lower / 16));
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformMillis() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1000L);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.maxMicros());
+        assertEquals(500_500, histogram.meanMicros());
+        assertEquals(500_000, histogram.percentileMicros(0.50), 500_000 / 16.0);
+        assertEquals(950_000, histogram.percentileMicros(0.95), 950_000 / 16.0);
+        assertEquals(990_000, histogram.percentileMicros(0.99), 990_000 / 16.0);
+        // 不会超过实际最大值
+        assertEquals(1_000_000, histogram.percentileMicros(1.0));
+        assertTrue(histogram.percentileMicros(0.0) <= 1000 + 1000 / 16);
+    }
+
+    @Test
+    public void emptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileMicros(0.5));
+        assertEquals(0, histogram.meanMicros());
+        histogram.record(-5);
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.maxMicros());
+        assertEquals(0, histogram.percentileMicros(0.99));
+    }
+
+    @Test
+    public void hugeValuesGoToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(1, histogram.count());
+        assertEquals(Long.MAX_VALUE / 2, histogram.maxMicros());
+        assertTrue(histogram.percentileMicros(0.5) > 0);
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 25_000; i++) {
+                    histogram.record(id * 1000 + i % 1000);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100_000, histogram.count());
+        assertEquals(3999, histogram.maxMicros());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.myapplication2.trace;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PipelineTraceTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void stageDurationsRunFromPreviousMark() {
+        PipelineTrace trace = new PipelineTrace(Stage.CAPTURE);
+        long t = System.nanoTime();
+        trace.markAt(Stage.CAPTURE, t + 10 * MS);
+        trace.markAt(Stage.JPEG_WRITE, t + 25 * MS);
+        trace.markAt(Stage.PROCESS, t + 125 * MS);
+        assertEquals(15 * MS, trace.durationNanos(Stage.JPEG_WRITE));
+        assertEquals(100 * MS, trace.durationNanos(Stage.PROCESS));
+        assertTrue(trace.durationNanos(Stage.CAPTURE) >= 10 * MS);
+    }
+
+    @Test
+    public void skippedStageIsNotChargedToTheNext() {
+        PipelineTrace trace = new PipelineTrace(Stage.CAPTURE);
+        long t = System.nanoTime();
+        trace.markAt(Stage.CAPTURE, t + MS);
+        trace.markAt(Stage.JPEG_WRITE, t + 2 * MS);
+        trace.markAt(Stage.PROCESS, t + 3 * MS);
+        // 没有 SAVE（例如不保存到相册），ENCODE 不知道从何时开始
+        trace.markAt(Stage.ENCODE, t + 50 * MS);
+        assertEquals(-1, trace.durationNanos(Stage.SAVE));
+        assertEquals(-1, trace.durationNanos(Stage.ENCODE));
+
+        TraceStats stats = new TraceStats();
+        assertTrue(trace.finish(stats));
+        assertEquals(1, stats.stage(Stage.PROCESS).count());
+        assertEquals(0, stats.stage(Stage.ENCODE).count());
+        assertEquals(1, stats.total().count());
+        assertTrue(stats.total().maxMicros() >= 50_000);
+    }
+
+    @Test
+    public void traceStartingMidwayIgnoresEarlierStages() {
+        PipelineTrace trace = new PipelineTrace(Stage.QUEUE);
+        long t = System.nanoTime();
+        trace.markAt(Stage.PROCESS, t + MS);
+        trace.markAt(Stage.QUEUE, t + 2 * MS);
+        trace.markAt(Stage.UPLOAD, t + 7 * MS);
+        assertEquals(-1, trace.durationNanos(Stage.PROCESS));
+        assertEquals(5 * MS, trace.durationNanos(Stage.UPLOAD));
+        assertTrue(trace.durationNanos(Stage.QUEUE) >= 2 * MS);
+    }
+
+    @Test
+    public void onlyFirstMarkCounts() {
+        PipelineTrace trace = new PipelineTrace(Stage.SERVER);
+        long t = System.nanoTime();
+        trace.markAt(Stage.SERVER, t + MS);
+        trace.markAt(Stage.PARSE, t + 3 * MS);
+        // 对冲请求中后完成的一个
+        trace.markAt(Stage.PARSE, t + 9 * MS);
+        assertEquals(2 * MS, trace.durationNanos(Stage.PARSE));
+    }
+
+    @Test
+    public void finishOnceAndAbandon() {
+        TraceStats stats = new TraceStats();
+        PipelineTrace trace = new PipelineTrace(Stage.CAPTURE);
+        trace.mark(Stage.CAPTURE);
+        assertTrue(trace.finish(stats));
+        assertFalse(trace.finish(stats));
+        assertEquals(1, stats.stage(Stage.CAPTURE).count());
+
+        PipelineTrace abandoned = new PipelineTrace(Stage.CAPTURE);
+        abandoned.mark(Stage.CAPTURE);
+        abandoned.abandon();
+        assertTrue(abandoned.isClosed());
+        assertFalse(abandoned.finish(stats));
+        assertEquals(1, stats.stage(Stage.CAPTURE).count());
+    }
+
+    @Test
+    public void markAllSkipsNulls() {
+        PipelineTrace a = new PipelineTrace(Stage.UPLOAD);
+        PipelineTrace b = new PipelineTrace(Stage.UPLOAD);
+        PipelineTrace.markAll(new PipelineTrace[] {a, null, b}, Stage.UPLOAD);
+        PipelineTrace.markAll(null, Stage.SERVER);
+        assertTrue(a.durationNanos(Stage.UPLOAD) >= 0);
+        assertTrue(b.durationNanos(Stage.UPLOAD) >= 0);
+    }
+
+    @Test
+    public void toStringListsMeasuredStages() {
+        PipelineTrace trace = new PipelineTrace(Stage.SERVER);
+        long t = System.nanoTime();
+        trace.markAt(Stage.SERVER, t + 5 * MS);
+        trace.markAt(Stage.PARSE, t + 45 * MS);
+        String text = trace.toString();
+        assertTrue(text, text.startsWith("#" + trace.getId() + " " + Stage.SERVER.label));
+        assertTrue(text, text.endsWith(Stage.PARSE.label + " 40ms"));
+        assertFalse(text, text.contains(Stage.CAPTURE.label));
+    }
+
+    @Test
+    public void summaryHasRowsOnlyForMeasuredStages() {
+        TraceStats stats = new TraceStats();
+        stats.stage(Stage.UPLOAD).record(1500);
+        stats.stage(Stage.UPLOAD).record(250_000);
+        stats.total().record(2_000_000);
+        String[] rows = stats.summary().split("\n");
+        assertEquals(3, rows.length);
+        assertTrue(rows[0].startsWith("stage"));
+        assertTrue(rows[1], rows[1].matches("UPLOAD +2 +1\\.5 +\\d+ +\\d+ +250"));
+        assertTrue(rows[2], rows[2].startsWith("TOTAL"));
+    }
+}
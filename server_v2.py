@@ -8,6 +8,9 @@ import os
 import logging
 from datetime import datetime
 import time
+import json
+from urllib.parse import unquote_plus
+from flask import Response, stream_with_context
 
 # 配置日志
 logging.basicConfig(
@@ -114,6 +117,121 @@ def recognize_image():
         return jsonify({"success": False, "error": str(e)}), 500
 
 
+# 二进制上传的最大长度
+MAX_BINARY_BYTES = 10 * 1024 * 1024
+# 设置后把图片转发给 OpenAI 兼容的 chat/completions 接口，否则返回模拟结果
+UPSTREAM_CHAT_URL = os.environ.get('UPSTREAM_CHAT_URL')
+
+
+@app.route('/api/recognize/binary', methods=['POST'])
+def recognize_binary():
+    """
+    请求体直接是 JPEG 原始字节，省去客户端的 Base64 编码和 1/3 的体积
+    文件名、模型、提示词放在 X-Filename / X-Model / X-Prompt / X-Max-Tokens 请求头，值按 UTF-8 URL 编码
+    返回与 chat/completions 相同格式的结果；Accept 为 text/event-stream 时以事件流返回
+    客户端先发 OPTIONS 探测这个接口（Flask 自动应答，Allow 中带 POST），确认存在后才用二进制上传
+    成功的响应带 Server-Timing，报告收到图片后到返回响应头的处理时间，客户端用它从总耗时中分出上传时间
+    """
+    start_time = time.time()
+    client_ip = request.remote_addr
+
+    content_type = (request.content_type or '').lower()
+    if not (content_type.startswith('image/') or content_type.startswith('application/octet-stream')):
+        return jsonify({"success": False, "error": "Content-Type必须是image/*或application/octet-stream"}), 415
+    if request.content_length is not None and request.content_length > MAX_BINARY_BYTES:
+        return jsonify({"success": False, "error": "图片过大"}), 413
+
+    image_bytes = request.get_data(cache=False)
+    received_at = time.time()
+    if not image_bytes:
+        return jsonify({"success": False, "error": "请求体为空"}), 400
+    if len(image_bytes) > MAX_BINARY_BYTES:
+        return jsonify({"success": False, "error": "图片过大"}), 413
+
+    filename = unquote_plus(request.headers.get('X-Filename', 'unknown'))
+    model = request.headers.get('X-Model', 'qwen2.5-vl-7b')
+    prompt = unquote_plus(request.headers.get('X-Prompt', '描述这张图片的内容'))
+    try:
+        max_tokens = int(request.headers.get('X-Max-Tokens', '300'))
+    except ValueError:
+        max_tokens = 300
+    stream = 'text/event-stream' in request.headers.get('Accept', '')
+
+    logging.info(f"开始处理二进制图像识别 - 客户端IP: {client_ip} | 文件名: {filename} | 数据长度: {len(image_bytes)}")
+
+    try:
+        image = Image.open(io.BytesIO(image_bytes))
+        image.load()
+        save_image_to_local(image, filename, client_ip)
+    except Exception as img_error:
+        logging.error(f"图像解码失败: {str(img_error)}")
+        return jsonify({"success": False, "error": f"图像数据格式错误: {str(img_error)}"}), 400
+
+    if UPSTREAM_CHAT_URL:
+        return forward_to_upstream(image_bytes, model, prompt, max_tokens, stream, received_at)
+
+    # 模拟识别结果
+    objects = ["猫", "沙发", "电视"]
+    content = "图片中有" + "、".join(objects)
+    processing_time = time.time() - start_time
+    logging.info(f"识别完成 - 客户端IP: {client_ip} | 处理时间: {processing_time:.2f}秒 | 识别结果: {objects}")
+
+    if stream:
+        def events():
+            for i in range(0, len(content), 4):
+                chunk = {"object": "chat.completion.chunk", "model": model,
+                         "choices": [{"index": 0, "delta": {"content": content[i:i + 4]}}]}
+                yield f"data: {json.dumps(chunk, ensure_ascii=False)}\n\n"
+            yield "data: [DONE]\n\n"
+        return with_server_timing(Response(stream_with_context(events()), mimetype='text/event-stream'),
+                                  received_at)
+
+    return with_server_timing(jsonify({
+        "object": "chat.completion",
+        "model": model,
+        "choices": [{"index": 0, "message": {"role": "assistant", "content": content}, "finish_reason": "stop"}],
+        "success": True,
+        "objects": objects,
+        "confidence": [0.95, 0.87, 0.76],
+        "processing_time": f"{processing_time:.2f}秒"
+    }), received_at)
+
+
+def with_server_timing(response, received_at):
+    """流式响应在开始生成时就返回响应头，此时的处理时间即开始输出前的耗时"""
+    response.headers['Server-Timing'] = f"app;dur={(time.time() - received_at) * 1000:.1f}"
+    return response
+
+
+def forward_to_upstream(image_bytes, model, prompt, max_tokens, stream, received_at):
+    """在服务器端做 Base64 编码，转发给 OpenAI 兼容接口；流式响应原样转发"""
+    import requests
+
+    image_url = "data:image/jpeg;base64," + base64.b64encode(image_bytes).decode('ascii')
+    body = {
+        "model": model,
+        "messages": [{"role": "user", "content": [
+            {"type": "text", "text": prompt},
+            {"type": "image_url", "image_url": {"url": image_url}}
+        ]}],
+        "max_tokens": max_tokens
+    }
+    if stream:
+        body["stream"] = True
+    try:
+        upstream = requests.post(UPSTREAM_CHAT_URL, json=body, stream=stream, timeout=(10, 120))
+    except requests.RequestException as e:
+        logging.error(f"转发识别请求失败: {str(e)}")
+        return jsonify({"success": False, "error": f"上游服务器不可用: {str(e)}"}), 502
+
+    upstream_type = upstream.headers.get('Content-Type', 'application/json')
+    if stream and upstream.ok:
+        return with_server_timing(Response(stream_with_context(upstream.iter_content(chunk_size=None)),
+                                           status=upstream.status_code, content_type=upstream_type), received_at)
+    return with_server_timing(Response(upstream.content, status=upstream.status_code, content_type=upstream_type),
+                              received_at)
+
+
 @app.route('/api/status', methods=['GET'])
 def get_status():
     """获取服务器状态"""